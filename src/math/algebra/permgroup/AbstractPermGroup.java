@@ -2,8 +2,11 @@ package math.algebra.permgroup;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
+import java.math.BigInteger;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
@@ -13,9 +16,50 @@ import java.util.Set;
 import javax.annotation.Nullable;
 
 import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
 
 public abstract class AbstractPermGroup<E> extends AbstractSet<Permutation<E>>
     implements PermGroup<E> {
+  @Override public PermGroup<E> centralizer(Permutation<E> sigma) {
+    ConjugatesProperty<E> property = ConjugatesProperty.centralizes(sigma);
+    Collection<Permutation<E>> known =
+        contains(sigma) ? ImmutableList.of(sigma) : ImmutableList
+          .<Permutation<E>> of();
+    return Backtrack.create(this, property.base()).subgroup(property, known);
+  }
+
+  @Override public PermGroup<E> centralizer(PermGroup<E> h) {
+    PermGroup<E> c = this;
+    for (Permutation<E> sigma : h.generators()) {
+      c = c.centralizer(sigma);
+    }
+    return c;
+  }
+
+  @Override public PermGroup<E> commutatorSubgroup(PermGroup<E> h) {
+    return NormalSubgroups.commutatorSubgroup(this, h);
+  }
+
+  @Override public List<ConjugacyClass<E>> conjugacyClasses() {
+    return ConjugacyClasses.conjugacyClasses(this);
+  }
+
+  /**
+   * Permutations with different cycle types are never conjugate, so those are
+   * rejected without a search. Otherwise, the search looks for an element
+   * {@code tau} with {@code tau rho tau^-1 = sigma}, over a base made of the
+   * cycles of {@code rho}, so that fixing the image of one point of a cycle
+   * fixes the images of the rest.
+   */
+  @Override @Nullable public Permutation<E> conjugatingElement(
+      Permutation<E> sigma, Permutation<E> rho) {
+    if (!Permutations.cycleType(sigma).equals(Permutations.cycleType(rho))) {
+      return null;
+    }
+    ConjugatesProperty<E> property = ConjugatesProperty.conjugates(rho, sigma);
+    return Backtrack.create(this, property.base()).search(property);
+  }
+
   @Override public boolean equals(@Nullable Object o) {
     if (o instanceof AbstractPermGroup) {
       @SuppressWarnings("unchecked")
@@ -45,15 +89,66 @@ public abstract class AbstractPermGroup<E> extends AbstractSet<Permutation<E>>
     return extend(h.generators());
   }
 
+  @Override public List<PermGroup<E>> derivedSeries() {
+    return NormalSubgroups.derivedSeries(this);
+  }
+
   /* (non-Javadoc)
    * @see math.algebra.permgroup.PermutationGroup#generators()
    */
   @Override public abstract Collection<Permutation<E>> generators();
 
+  /**
+   * Unless one group contains the other, this searches this group for elements
+   * of {@code h}, over a base shared with {@code h}. The points moved by this
+   * group but not by {@code h} come first, since their images are forced.
+   */
+  @Override public PermGroup<E> intersection(PermGroup<E> h) {
+    if (containsAll(h.generators())) {
+      return h;
+    } else if (h.containsAll(generators())) {
+      return this;
+    }
+    Set<E> hSupport = Sets.newHashSet();
+    for (Permutation<E> sigma : h.generators()) {
+      hSupport.addAll(sigma.domain());
+    }
+    Set<E> base = Sets.newLinkedHashSet();
+    Set<E> shared = Sets.newLinkedHashSet();
+    for (Permutation<E> sigma : generators()) {
+      for (E e : sigma.domain()) {
+        (hSupport.contains(e) ? shared : base).add(e);
+      }
+    }
+    base.addAll(shared);
+    List<E> baseList = ImmutableList.copyOf(base);
+    ContainedInProperty<E> property = ContainedInProperty.of(h, baseList);
+    List<Permutation<E>> known = Lists.newArrayList();
+    for (Permutation<E> sigma : generators()) {
+      if (h.contains(sigma)) {
+        known.add(sigma);
+      }
+    }
+    for (Permutation<E> sigma : h.generators()) {
+      if (contains(sigma)) {
+        known.add(sigma);
+      }
+    }
+    return Backtrack.create(this, baseList).subgroup(property, known);
+  }
+
   @Override public boolean isEmpty() {
     return false;
   }
 
+  @Override public boolean isNilpotent() {
+    return NormalSubgroups.isNilpotent(this);
+  }
+
+  @Override public boolean isSolvable() {
+    return NormalSubgroups.isSolvable(this);
+  }
+
   /* (non-Javadoc)
    * @see math.algebra.permgroup.PermutationGroup#isSubgroupOf(math.algebra.permgroup.AbstractPermutationGroup)
    */
@@ -61,6 +156,29 @@ public abstract class AbstractPermGroup<E> extends AbstractSet<Permutation<E>>
     return size() <= g.size() && g.containsAll(generators());
   }
 
+  @Override public List<PermGroup<E>> lowerCentralSeries() {
+    return NormalSubgroups.lowerCentralSeries(this);
+  }
+
+  @Override public PermGroup<E> normalClosure(PermGroup<E> h) {
+    return NormalSubgroups.normalClosure(this, h);
+  }
+
+  @Override public PermGroup<E> normalizer(PermGroup<E> h) {
+    NormalizesProperty<E> property = NormalizesProperty.of(h);
+    List<Permutation<E>> known = Lists.newArrayList();
+    for (Permutation<E> sigma : h.generators()) {
+      if (contains(sigma)) {
+        known.add(sigma);
+      }
+    }
+    return Backtrack.create(this, property.base()).subgroup(property, known);
+  }
+
+  @Override public BigInteger order() {
+    return BigInteger.valueOf(size());
+  }
+
   @Override public boolean stabilizes(Collection<Set<E>> collection) {
     for (Set<E> set : collection) {
       for (Permutation<E> sigma : generators()) {
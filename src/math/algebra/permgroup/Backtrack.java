@@ -0,0 +1,235 @@
+package math.algebra.permgroup;
+
+import static com.google.common.base.Preconditions.checkState;
+import static math.structures.permutation.Permutations.compose;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
+
+/**
+ * Backtrack search for elements of a permutation group with some property,
+ * over the group's coset tables.
+ *
+ * <p>
+ * Every element of the group is a product {@code r_0 r_1 ... r_k} of one
+ * representative from each table, where the {@code i}th table stabilizes the
+ * base point {@code b_i}. Since the later representatives fix {@code b_i}, the
+ * images of {@code b_0, ..., b_i} are determined by the first {@code i + 1}
+ * representatives, and the search prunes every prefix whose base images the
+ * property rules out.
+ */
+final class Backtrack<E> {
+  /**
+   * A property of permutations that can be refined as base images are fixed.
+   */
+  interface Property<E> extends Predicate<Permutation<E>> {
+    /**
+     * Returns {@code false} if no permutation which maps every key of
+     * {@code partial} to its value and {@code point} to {@code image} has this
+     * property.
+     */
+    boolean consistent(Map<E, E> partial, E point, E image);
+  }
+
+  public static <E> Backtrack<E> create(PermGroup<E> g) {
+    CosetTables<E> tables = tables(g);
+    if (tables == null || tables.base() == null) {
+      tables = CosetTables.create(ImmutableList.copyOf(g.generators()));
+    }
+    return new Backtrack<E>(tables);
+  }
+
+  /**
+   * Creates a backtrack search over {@code g} whose base begins with
+   * {@code basePrefix}. Properties are pruned sooner when the points they
+   * constrain most come first.
+   */
+  public static <E> Backtrack<E> create(PermGroup<E> g, List<E> basePrefix) {
+    CosetTables<E> tables =
+        CosetTables.create(basePrefix, ImmutableList.copyOf(g.generators()));
+    checkState(tables.base() != null,
+        "the coset tables for the base prefix %s are not point stabilizers",
+        basePrefix);
+    return new Backtrack<E>(tables);
+  }
+
+  @Nullable static <E> CosetTables<E> tables(PermGroup<E> g) {
+    if (g instanceof RegularPermGroup) {
+      return ((RegularPermGroup<E>) g).cosetTables();
+    } else if (g instanceof ForwardingPermGroup) {
+      return tables(((ForwardingPermGroup<E>) g).delegate());
+    }
+    return null;
+  }
+
+  /**
+   * Returns, for each table of {@code tables}, a map from the images of its
+   * base point to the representatives mapping the base point there.
+   */
+  static <E> List<Map<E, Permutation<E>>> transversals(CosetTables<E> tables) {
+    List<E> base = tables.base();
+    ImmutableList.Builder<Map<E, Permutation<E>>> builder =
+        ImmutableList.builder();
+    for (int i = 0; i < base.size(); i++) {
+      E b = base.get(i);
+      ImmutableMap.Builder<E, Permutation<E>> transversal =
+          ImmutableMap.builder();
+      for (Permutation<E> rep : tables.getTables().get(i)) {
+        transversal.put(rep.apply(b), rep);
+      }
+      builder.add(transversal.build());
+    }
+    return builder.build();
+  }
+
+  private final List<E> base;
+
+  private final List<Map<E, Permutation<E>>> transversals;
+
+  private Backtrack(CosetTables<E> tables) {
+    this.base = tables.base();
+    this.transversals = transversals(tables);
+  }
+
+  public List<E> base() {
+    return base;
+  }
+
+  /**
+   * Returns an element of the group with the specified property, or
+   * {@code null} if there is none.
+   */
+  @Nullable public Permutation<E> search(Property<E> property) {
+    return search(0, null, Maps.<E, E> newHashMap(), property);
+  }
+
+  /**
+   * Returns the subgroup of elements with the specified property, which must
+   * be closed under composition. {@code known} may contain elements of the
+   * group already known to have the property.
+   *
+   * <p>
+   * The tables are processed from the last to the first. Once the subgroup
+   * {@code H} of elements with the property fixing {@code b_0, ..., b_i} is
+   * known, the subgroup fixing {@code b_0, ..., b_{i - 1}} is generated by
+   * {@code H} and one element mapping {@code b_i} to each point of its orbit,
+   * so one element is searched for each point not yet reached by the
+   * generators found so far.
+   */
+  public PermGroup<E> subgroup(Property<E> property,
+      Collection<Permutation<E>> known) {
+    List<Permutation<E>> generators = Lists.newArrayList();
+    Map<E, E> partial = Maps.newHashMap();
+    for (int i = base.size() - 1; i >= 0; i--) {
+      E b = base.get(i);
+      Map<E, Permutation<E>> transversal = transversals.get(i);
+      if (transversal.size() == 1) {
+        continue;
+      }
+      List<Permutation<E>> levelGenerators = Lists.newArrayList(generators);
+      for (Permutation<E> sigma : known) {
+        if (fixesPrefix(sigma, i)) {
+          levelGenerators.add(sigma);
+        }
+      }
+      Set<E> orbit = orbit(levelGenerators, b);
+      partial.clear();
+      for (E fixed : base.subList(0, i)) {
+        partial.put(fixed, fixed);
+      }
+      for (Map.Entry<E, Permutation<E>> entry : transversal.entrySet()) {
+        E image = entry.getKey();
+        if (orbit.contains(image) || !property.consistent(partial, b, image)) {
+          continue;
+        }
+        partial.put(b, image);
+        Permutation<E> sigma =
+            search(i + 1, entry.getValue(), partial, property);
+        partial.remove(b);
+        if (sigma != null) {
+          generators.add(sigma);
+          levelGenerators.add(sigma);
+          orbit = orbit(levelGenerators, b);
+        }
+      }
+    }
+    // the orbits above skipped the points already reached by known elements
+    for (Permutation<E> sigma : known) {
+      if (!sigma.isIdentity()) {
+        generators.add(sigma);
+      }
+    }
+    return generators.isEmpty() ? Groups.<E> trivial() : Groups
+      .generateGroup(generators);
+  }
+
+  private boolean fixesPrefix(Permutation<E> sigma, int k) {
+    for (E b : base.subList(0, k)) {
+      if (!sigma.stabilizes(b)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Set<E> orbit(Collection<Permutation<E>> generators, E b) {
+    if (generators.isEmpty()) {
+      return ImmutableSet.of(b);
+    }
+    return Iterables.getOnlyElement(Orbits.orbits(generators,
+        ImmutableSet.of(b)));
+  }
+
+  /**
+   * Searches the products {@code prefix r_level ... r_k} for one with the
+   * property. {@code partial} maps the base points before {@code level} to
+   * their images under {@code prefix}.
+   */
+  @Nullable private Permutation<E> search(int level,
+      @Nullable Permutation<E> prefix, Map<E, E> partial,
+      Property<E> property) {
+    if (level == base.size()) {
+      Permutation<E> sigma =
+          (prefix == null) ? Permutations.<E> identity() : prefix;
+      return property.apply(sigma) ? sigma : null;
+    }
+    E b = base.get(level);
+    for (Permutation<E> rep : transversals.get(level).values()) {
+      E image = rep.apply(b);
+      if (prefix != null) {
+        image = prefix.apply(image);
+      }
+      if (!property.consistent(partial, b, image)) {
+        continue;
+      }
+      Permutation<E> sigma;
+      if (rep.isIdentity()) {
+        sigma = prefix;
+      } else {
+        sigma = (prefix == null) ? rep : compose(prefix, rep);
+      }
+      partial.put(b, image);
+      Permutation<E> result = search(level + 1, sigma, partial, property);
+      partial.remove(b);
+      if (result != null) {
+        return result;
+      }
+    }
+    return null;
+  }
+}
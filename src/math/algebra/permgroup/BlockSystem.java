@@ -25,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import math.metrics.Metrics.Counter;
+import math.metrics.MetricsRegistry;
 import math.structures.FunctionMap;
 import math.structures.Partition;
 import math.structures.permutation.Permutation;
@@ -81,6 +83,7 @@ public class BlockSystem<E> extends ForwardingMap<E, Object> implements
     if (system.equivalent(a, b) || system.nBlocks() <= 2) {
       return system;
     }
+    MetricsRegistry.current().increment(Counter.BLOCK_REFINEMENTS);
     Map<Object, Partition> fresh =
         Maps.newHashMapWithExpectedSize(system.nBlocks >= 0 ? system.nBlocks
             : 16);
@@ -104,6 +107,7 @@ public class BlockSystem<E> extends ForwardingMap<E, Object> implements
     if (system.equivalent(a, b) || system.nBlocks() <= 2) {
       return system;
     }
+    MetricsRegistry.current().increment(Counter.BLOCK_REFINEMENTS);
     Map<Object, Partition> fresh =
         Maps.newHashMapWithExpectedSize(system.nBlocks >= 0 ? system.nBlocks
             : 16);
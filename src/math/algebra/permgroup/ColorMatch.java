@@ -0,0 +1,67 @@
+package math.algebra.permgroup;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.Set;
+
+import math.structures.IntColoring;
+
+/**
+ * The condition a color-preserving search imposes on each point {@code b} and
+ * its image: the image must have, in a target coloring, the color {@code b}
+ * has in a source coloring. Automorphisms of a coloring use the same coloring
+ * for both; isomorphisms between two colorings use one of each.
+ *
+ * <p>
+ * Both colorings are compiled once over the domain of the search, so each
+ * check compares two integer colors.
+ */
+final class ColorMatch<A> {
+  public static <A> ColorMatch<A> automorphisms(Set<A> domain,
+      Equivalence<? super A> coloring) {
+    IntColoring<A> compiled = IntColoring.of(domain, coloring);
+    return new ColorMatch<A>(compiled, compiled);
+  }
+
+  public static <A> ColorMatch<A> isomorphisms(Set<A> domain,
+      Function<? super A, ?> source, Function<? super A, ?> target) {
+    Map<Object, Integer> palette = Maps.newHashMap();
+    return new ColorMatch<A>(IntColoring.of(domain, source, palette),
+        IntColoring.of(domain, target, palette));
+  }
+
+  private final IntColoring<A> source;
+  private final IntColoring<A> target;
+
+  private ColorMatch(IntColoring<A> source, IntColoring<A> target) {
+    this.source = source;
+    this.target = target;
+  }
+
+  /**
+   * Returns the position of {@code b} in the domain.
+   */
+  int index(A b) {
+    return source.indexOf(b);
+  }
+
+  /**
+   * Returns whether {@code image} has the target color matching the source
+   * color of {@code b}.
+   */
+  boolean matches(A b, A image) {
+    return source.color(b) == target.color(image);
+  }
+
+  /**
+   * Returns the target color of {@code image}. Two coset representatives
+   * mapping every point to images of the same target colors have answers
+   * differing by a translation.
+   */
+  int targetColor(A image) {
+    return target.color(image);
+  }
+}
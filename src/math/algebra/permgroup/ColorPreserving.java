@@ -1,8 +1,10 @@
 package math.algebra.permgroup;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static math.algebra.permgroup.LCoset.precompose;
 
 import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
@@ -12,23 +14,320 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import javax.annotation.Nullable;
 
+import math.metrics.Metrics;
+import math.metrics.Metrics.Counter;
+import math.metrics.MetricsRegistry;
 import math.structures.permutation.Permutation;
 import math.structures.permutation.Permutations;
 
+/**
+ * Computes the subgroup of a permutation group preserving a coloring, or the
+ * coset mapping one coloring to another, by Luks's divide and conquer over
+ * minimal block systems.
+ *
+ * <p>
+ * The cosets of the stabilizer of a block system are searched independently
+ * and only combined in {@link #glue}. The overloads taking a
+ * {@link ForkJoinPool} fork the coset branches of the first levels of this
+ * recursion onto the pool, {@value #PARALLEL_DEPTH} unless a parallel depth is
+ * given, and search deeper levels sequentially, where branches are too small
+ * to be worth a task. Searches whose block systems give few cosets per level
+ * may want more forked levels, and small searches fewer.
+ * Colorings are compiled to integer colors over the domain before the search
+ * starts, so they are only called from the calling thread.
+ *
+ * <p>
+ * The overloads taking a {@link SearchContext} check it once per recursive
+ * call, and abandon the search with a {@link SearchAbortedException} when it
+ * runs out.
+ *
+ * <p>
+ * Each search also caches its subproblems in a {@link SubproblemCache}, so
+ * that sibling cosets inducing the same coloring pattern are answered by
+ * translating an earlier answer.
+ */
 public final class ColorPreserving {
+  private static final int PARALLEL_DEPTH = 3;
+
+  private static final class ColorPreservingTask<E> extends
+      RecursiveTask<LCoset<E>> {
+    private static final long serialVersionUID = 0;
+
+    private final LCoset<E> sigmaG;
+    private final Set<E> bSet;
+    private final ColorMatch<E> coloring;
+    private final int depth;
+    private final int parallelDepth;
+    private final SubproblemCache<E, E> cache;
+    private final SearchContext context;
+
+    ColorPreservingTask(LCoset<E> sigmaG, Set<E> bSet,
+        ColorMatch<E> coloring, int depth, int parallelDepth,
+        SubproblemCache<E, E> cache, SearchContext context) {
+      this.sigmaG = sigmaG;
+      this.bSet = bSet;
+      this.coloring = coloring;
+      this.depth = depth;
+      this.parallelDepth = parallelDepth;
+      this.cache = cache;
+      this.context = context;
+    }
+
+    @Override protected LCoset<E> compute() {
+      return colorPreserving(sigmaG, bSet, coloring, depth, parallelDepth,
+          cache, context);
+    }
+  }
+
+  private static final class ColorPreservingActionTask<E> extends
+      RecursiveTask<LCoset<E>> {
+    private static final long serialVersionUID = 0;
+
+    private final LCoset<E> sigmaG;
+    private final Set<Set<E>> bSet;
+    private final ColorMatch<Set<E>> coloring;
+    private final int depth;
+    private final int parallelDepth;
+    private final SubproblemCache<E, Set<E>> cache;
+    private final SearchContext context;
+
+    ColorPreservingActionTask(LCoset<E> sigmaG, Set<Set<E>> bSet,
+        ColorMatch<Set<E>> coloring, int depth, int parallelDepth,
+        SubproblemCache<E, Set<E>> cache, SearchContext context) {
+      this.sigmaG = sigmaG;
+      this.bSet = bSet;
+      this.coloring = coloring;
+      this.depth = depth;
+      this.parallelDepth = parallelDepth;
+      this.cache = cache;
+      this.context = context;
+    }
+
+    @Override protected LCoset<E> compute() {
+      return colorPreservingAction(sigmaG, bSet, coloring, depth,
+          parallelDepth, cache, context);
+    }
+  }
+
   public static <E, C> PermGroup<E> colorPreserving(PermGroup<E> g,
       Set<E> domain, Equivalence<E> coloring) {
+    return colorPreserving(g, domain, coloring, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <E> PermGroup<E> colorPreserving(PermGroup<E> g,
+      Set<E> domain, Equivalence<E> coloring, SearchContext context) {
+    ColorMatch<E> match = ColorMatch.automorphisms(domain, coloring);
     return colorPreserving(new LCoset<E>(Permutations.<E> identity(), g),
-        domain, coloring).getGroup();
+        domain, match, 0, PARALLEL_DEPTH, SubproblemCache.<E, E> create(match),
+        context).getGroup();
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring}, searching
+   * independent cosets in parallel on {@code pool}.
+   */
+  public static <E> PermGroup<E> colorPreserving(PermGroup<E> g,
+      Set<E> domain, Equivalence<E> coloring, ForkJoinPool pool) {
+    return colorPreserving(g, domain, coloring, pool,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring}, searching
+   * independent cosets in parallel on {@code pool}. Every branch shares
+   * {@code context}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <E> PermGroup<E> colorPreserving(PermGroup<E> g,
+      Set<E> domain, Equivalence<E> coloring, ForkJoinPool pool,
+      SearchContext context) {
+    return colorPreserving(g, domain, coloring, pool, PARALLEL_DEPTH,
+        context);
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring}, forking
+   * the first {@code parallelDepth} levels of the search onto {@code pool}.
+   * Every branch shares {@code context}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <E> PermGroup<E> colorPreserving(PermGroup<E> g,
+      Set<E> domain, Equivalence<E> coloring, ForkJoinPool pool,
+      int parallelDepth, SearchContext context) {
+    checkArgument(parallelDepth >= 0);
+    ColorMatch<E> match = ColorMatch.automorphisms(domain, coloring);
+    return pool.invoke(
+        new ColorPreservingTask<E>(new LCoset<E>(Permutations.<E> identity(),
+            g), domain, match, 0, parallelDepth, SubproblemCache
+          .<E, E> create(match), context)).getGroup();
   }
 
   public static <E> PermGroup<E> colorPreservingAction(PermGroup<E> g,
       Set<Set<E>> domain, Equivalence<Set<E>> coloring) {
+    return colorPreservingAction(g, domain, coloring,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring} in its
+   * action on sets.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <E> PermGroup<E> colorPreservingAction(PermGroup<E> g,
+      Set<Set<E>> domain, Equivalence<Set<E>> coloring,
+      SearchContext context) {
+    ColorMatch<Set<E>> match = ColorMatch.automorphisms(domain, coloring);
     return colorPreservingAction(new LCoset<E>(Permutations.<E> identity(), g),
-        domain, coloring).getGroup();
+        domain, match, 0, PARALLEL_DEPTH, SubproblemCache
+          .<E, Set<E>> create(match), context).getGroup();
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring} in its
+   * action on sets, searching independent cosets in parallel on {@code pool}.
+   */
+  public static <E> PermGroup<E> colorPreservingAction(PermGroup<E> g,
+      Set<Set<E>> domain, Equivalence<Set<E>> coloring, ForkJoinPool pool) {
+    return colorPreservingAction(g, domain, coloring, pool,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring} in its
+   * action on sets, searching independent cosets in parallel on {@code pool}.
+   * Every branch shares {@code context}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <E> PermGroup<E> colorPreservingAction(PermGroup<E> g,
+      Set<Set<E>> domain, Equivalence<Set<E>> coloring, ForkJoinPool pool,
+      SearchContext context) {
+    return colorPreservingAction(g, domain, coloring, pool, PARALLEL_DEPTH,
+        context);
+  }
+
+  /**
+   * Returns the subgroup of {@code g} preserving {@code coloring} in its
+   * action on sets, forking the first {@code parallelDepth} levels of the
+   * search onto {@code pool}. Every branch shares {@code context}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <E> PermGroup<E> colorPreservingAction(PermGroup<E> g,
+      Set<Set<E>> domain, Equivalence<Set<E>> coloring, ForkJoinPool pool,
+      int parallelDepth, SearchContext context) {
+    checkArgument(parallelDepth >= 0);
+    ColorMatch<Set<E>> match = ColorMatch.automorphisms(domain, coloring);
+    return pool.invoke(
+        new ColorPreservingActionTask<E>(new LCoset<E>(Permutations
+          .<E> identity(), g), domain, match, 0, parallelDepth, SubproblemCache
+          .<E, Set<E>> create(match), context)).getGroup();
+  }
+
+  /**
+   * Returns the coset of elements {@code sigma} of {@code g} which map
+   * {@code coloring1} to {@code coloring2} on {@code domain}, that is, with
+   * {@code coloring2(sigma(b))} equal to {@code coloring1(b)} for every
+   * {@code b} in {@code domain}, or {@code null} if there are none. The
+   * coset is a translate of the subgroup of {@code g} preserving
+   * {@code coloring1}, and {@code domain} must be stable under {@code g}.
+   */
+  @Nullable public static <E> LCoset<E> stringIsomorphisms(PermGroup<E> g,
+      Set<E> domain, Function<? super E, ?> coloring1,
+      Function<? super E, ?> coloring2) {
+    return stringIsomorphisms(g, domain, coloring1, coloring2,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the coset of elements of {@code g} which map {@code coloring1} to
+   * {@code coloring2} on {@code domain}, or {@code null} if there are none.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  @Nullable public static <E> LCoset<E> stringIsomorphisms(PermGroup<E> g,
+      Set<E> domain, Function<? super E, ?> coloring1,
+      Function<? super E, ?> coloring2, SearchContext context) {
+    ColorMatch<E> match =
+        ColorMatch.isomorphisms(domain, coloring1, coloring2);
+    return colorPreserving(new LCoset<E>(Permutations.<E> identity(), g),
+        domain, match, 0, PARALLEL_DEPTH, SubproblemCache.<E, E> create(match),
+        context);
+  }
+
+  /**
+   * Returns the coset of elements of {@code g} which map {@code coloring1} to
+   * {@code coloring2} on {@code domain}, or {@code null} if there are none,
+   * searching independent cosets in parallel on {@code pool}. Every branch
+   * shares {@code context}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  @Nullable public static <E> LCoset<E> stringIsomorphisms(PermGroup<E> g,
+      Set<E> domain, Function<? super E, ?> coloring1,
+      Function<? super E, ?> coloring2, ForkJoinPool pool,
+      SearchContext context) {
+    return stringIsomorphisms(g, domain, coloring1, coloring2, pool,
+        PARALLEL_DEPTH, context);
+  }
+
+  /**
+   * Returns the coset of elements of {@code g} which map {@code coloring1} to
+   * {@code coloring2} on {@code domain}, or {@code null} if there are none,
+   * forking the first {@code parallelDepth} levels of the search onto
+   * {@code pool}. Every branch shares {@code context}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  @Nullable public static <E> LCoset<E> stringIsomorphisms(PermGroup<E> g,
+      Set<E> domain, Function<? super E, ?> coloring1,
+      Function<? super E, ?> coloring2, ForkJoinPool pool,
+      int parallelDepth, SearchContext context) {
+    checkArgument(parallelDepth >= 0);
+    ColorMatch<E> match =
+        ColorMatch.isomorphisms(domain, coloring1, coloring2);
+    return pool.invoke(new ColorPreservingTask<E>(new LCoset<E>(Permutations
+      .<E> identity(), g), domain, match, 0, parallelDepth, SubproblemCache
+      .<E, E> create(match), context));
+  }
+
+  /**
+   * Whether the branches below recursion depth {@code depth} should be forked.
+   * They are only forked above {@code parallelDepth}, and when the search was
+   * started on a pool.
+   */
+  private static boolean forks(int depth, int parallelDepth) {
+    return depth < parallelDepth && ForkJoinTask.inForkJoinPool();
+  }
+
+  private static <E> Collection<LCoset<E>> invokeAll(
+      List<? extends ForkJoinTask<LCoset<E>>> tasks) {
+    ForkJoinTask.invokeAll(tasks);
+    List<LCoset<E>> results = Lists.newArrayListWithCapacity(tasks.size());
+    for (ForkJoinTask<LCoset<E>> task : tasks) {
+      results.add(task.join());
+    }
+    return results;
+  }
+
+  private static void record(int depth) {
+    Metrics metrics = MetricsRegistry.current();
+    metrics.increment(Counter.COLOR_PRESERVING_CALLS);
+    metrics.recordDepth(depth);
   }
 
   static <E> LCoset<E> glue(Collection<LCoset<E>> cosets) {
@@ -50,24 +349,44 @@ public final class ColorPreserving {
   }
 
   private static <E> LCoset<E> colorPreserving(@Nullable LCoset<E> sigmaG,
-      Set<E> bSet, Equivalence<E> coloring) {
+      Set<E> bSet, ColorMatch<E> coloring, int depth, int parallelDepth,
+      SubproblemCache<E, E> cache, SearchContext context) {
     if (sigmaG == null) {
       return null;
     }
+    context.step();
+    record(depth);
     Permutation<E> sigma = sigmaG.getRepresentative();
     PermGroup<E> g = sigmaG.getGroup();
     assert g.stabilizes(bSet);
     if (bSet.size() == 1) {
       E b = bSet.iterator().next();
       E bImage = sigma.apply(b);
-      return coloring.equivalent(b, bImage) ? sigmaG : null;
+      return coloring.matches(b, bImage) ? sigmaG : null;
     }
+    SubproblemCache.Key<E> key = cache.key(g, bSet, sigma);
+    SubproblemCache.Entry<E> cached = cache.get(key);
+    if (cached != null) {
+      return cached.translate(sigma);
+    }
+    LCoset<E> answer =
+        split(sigmaG, bSet, coloring, depth, parallelDepth, cache,
+            context);
+    cache.put(key, sigma, answer);
+    return answer;
+  }
 
+  private static <E> LCoset<E> split(LCoset<E> sigmaG, Set<E> bSet,
+      ColorMatch<E> coloring, int depth, int parallelDepth,
+      SubproblemCache<E, E> cache, SearchContext context) {
+    Permutation<E> sigma = sigmaG.getRepresentative();
+    PermGroup<E> g = sigmaG.getGroup();
     Collection<Set<E>> orbits = Orbits.orbits(g, bSet);
     if (orbits.size() > 1) {
       LCoset<E> answer = sigmaG;
       for (Set<E> orbit : orbits) {
-        answer = colorPreserving(answer, orbit, coloring);
+        answer = colorPreserving(answer, orbit, coloring, depth,
+            parallelDepth, cache, context);
         if (answer == null) {
           break;
         }
@@ -77,32 +396,71 @@ public final class ColorPreserving {
 
     BlockSystem<E> system = BlockSystem.minimalBlockSystem(g, bSet);
     PermSubgroup<E> stabilizingSubgroup = system.stabilizingSubgroup(g);
+    Metrics metrics = MetricsRegistry.current();
+    if (forks(depth, parallelDepth)) {
+      List<ColorPreservingTask<E>> tasks = Lists.newArrayList();
+      for (LCoset<E> coset : stabilizingSubgroup.asCosets()) {
+        metrics.increment(Counter.COLOR_PRESERVING_BRANCHES);
+        tasks.add(new ColorPreservingTask<E>(precompose(sigma, coset), bSet,
+            coloring, depth + 1, parallelDepth, cache, context));
+      }
+      return glue(invokeAll(tasks));
+    }
     Collection<LCoset<E>> colorPreservers = Lists.newArrayList();
     for (LCoset<E> coset : stabilizingSubgroup.asCosets()) {
-      colorPreservers.add(colorPreserving(coset, bSet, coloring));
+      metrics.increment(Counter.COLOR_PRESERVING_BRANCHES);
+      colorPreservers.add(colorPreserving(precompose(sigma, coset), bSet,
+          coloring, depth + 1, parallelDepth, cache, context));
     }
     return glue(colorPreservers);
   }
 
-  private static <E> LCoset<E>
-      colorPreservingAction(@Nullable LCoset<E> sigmaG, Set<Set<E>> bSet,
-          Equivalence<Set<E>> coloring) {
+  private static <E> LCoset<E> colorPreservingAction(
+      @Nullable LCoset<E> sigmaG, Set<Set<E>> bSet,
+      ColorMatch<Set<E>> coloring, int depth, int parallelDepth,
+      SubproblemCache<E, Set<E>> cache, SearchContext context) {
     if (sigmaG == null) {
       return null;
     }
-    Permutation<E> sigma = sigmaG.getRepresentative();
+    context.step();
+    record(depth);
+    final Permutation<E> sigma = sigmaG.getRepresentative();
     PermGroup<E> g = sigmaG.getGroup();
     checkArgument(g.stabilizes(bSet));
     if (bSet.size() == 1) {
       Set<E> b = bSet.iterator().next();
       Set<E> bImage = sigma.apply(b);
-      return coloring.equivalent(b, bImage) ? sigmaG : null;
+      return coloring.matches(b, bImage) ? sigmaG : null;
+    }
+    SubproblemCache.Key<E> key =
+        cache.key(g, bSet, new Function<Set<E>, Set<E>>() {
+          @Override public Set<E> apply(Set<E> b) {
+            return sigma.apply(b);
+          }
+        });
+    SubproblemCache.Entry<E> cached = cache.get(key);
+    if (cached != null) {
+      return cached.translate(sigma);
     }
+    LCoset<E> answer =
+        splitAction(sigmaG, bSet, coloring, depth, parallelDepth, cache,
+            context);
+    cache.put(key, sigma, answer);
+    return answer;
+  }
+
+  private static <E> LCoset<E> splitAction(LCoset<E> sigmaG,
+      Set<Set<E>> bSet, ColorMatch<Set<E>> coloring, int depth,
+      int parallelDepth, SubproblemCache<E, Set<E>> cache,
+      SearchContext context) {
+    Permutation<E> sigma = sigmaG.getRepresentative();
+    PermGroup<E> g = sigmaG.getGroup();
     Collection<Set<Set<E>>> orbits = Orbits.actionOrbits(g, bSet);
     if (orbits.size() > 1) {
       LCoset<E> answer = sigmaG;
       for (Set<Set<E>> orbit : orbits) {
-        answer = colorPreservingAction(answer, orbit, coloring);
+        answer = colorPreservingAction(answer, orbit, coloring, depth,
+            parallelDepth, cache, context);
         if (answer == null) {
           break;
         }
@@ -116,9 +474,21 @@ public final class ColorPreserving {
       filters.add(StabilizesPredicate.actionOn(collection));
     }
     PermSubgroup<E> stabilizingSubgroup = g.subgroup(filters);
+    Metrics metrics = MetricsRegistry.current();
+    if (forks(depth, parallelDepth)) {
+      List<ColorPreservingActionTask<E>> tasks = Lists.newArrayList();
+      for (LCoset<E> coset : stabilizingSubgroup.asCosets()) {
+        metrics.increment(Counter.COLOR_PRESERVING_BRANCHES);
+        tasks.add(new ColorPreservingActionTask<E>(precompose(sigma, coset),
+            bSet, coloring, depth + 1, parallelDepth, cache, context));
+      }
+      return glue(invokeAll(tasks));
+    }
     Collection<LCoset<E>> colorPreservers = Lists.newArrayList();
     for (LCoset<E> coset : stabilizingSubgroup.asCosets()) {
-      colorPreservers.add(colorPreservingAction(coset, bSet, coloring));
+      metrics.increment(Counter.COLOR_PRESERVING_BRANCHES);
+      colorPreservers.add(colorPreservingAction(precompose(sigma, coset),
+          bSet, coloring, depth + 1, parallelDepth, cache, context));
     }
     return glue(colorPreservers);
   }
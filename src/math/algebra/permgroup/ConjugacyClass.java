@@ -0,0 +1,41 @@
+package math.algebra.permgroup;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigInteger;
+
+import math.structures.permutation.Permutation;
+
+/**
+ * A conjugacy class of a permutation group, described by a representative and
+ * the order of its centralizer. The size of the class is the index of the
+ * centralizer.
+ */
+public final class ConjugacyClass<E> {
+  private final Permutation<E> representative;
+  private final BigInteger centralizerOrder;
+  private final BigInteger size;
+
+  ConjugacyClass(Permutation<E> representative, BigInteger centralizerOrder,
+      BigInteger size) {
+    this.representative = checkNotNull(representative);
+    this.centralizerOrder = checkNotNull(centralizerOrder);
+    this.size = checkNotNull(size);
+  }
+
+  public BigInteger getCentralizerOrder() {
+    return centralizerOrder;
+  }
+
+  public Permutation<E> getRepresentative() {
+    return representative;
+  }
+
+  public BigInteger getSize() {
+    return size;
+  }
+
+  @Override public String toString() {
+    return representative + "^G (" + size + ")";
+  }
+}
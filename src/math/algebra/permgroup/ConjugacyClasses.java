@@ -0,0 +1,230 @@
+package math.algebra.permgroup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
+
+/**
+ * Computes the conjugacy classes of permutation groups.
+ *
+ * <p>
+ * Small groups are enumerated, their elements bucketed by cycle type, and each
+ * class computed as an orbit under conjugation by the generators. Permutations
+ * of different cycle types are never conjugate, so the buckets are processed
+ * in parallel when the computation runs in a {@link ForkJoinPool}.
+ *
+ * <p>
+ * Larger groups are sampled instead. The center contributes one class per
+ * element. Random elements and their powers are then tested for conjugacy
+ * against the known representatives of the same cycle type, and each new
+ * representative has its centralizer computed, until the class sizes add up to
+ * the order of the group.
+ */
+public final class ConjugacyClasses {
+  private static final class KnownClass<E> {
+    private final ConjugacyClass<E> conjugacyClass;
+    private final PermGroup<E> g;
+    private Backtrack<E> backtrack = null;
+
+    KnownClass(ConjugacyClass<E> conjugacyClass, PermGroup<E> g) {
+      this.conjugacyClass = conjugacyClass;
+      this.g = g;
+    }
+
+    boolean contains(Permutation<E> y) {
+      Permutation<E> x = conjugacyClass.getRepresentative();
+      if (x.equals(y)) {
+        return true;
+      }
+      ConjugatesProperty<E> property = ConjugatesProperty.conjugates(x, y);
+      if (backtrack == null) {
+        backtrack = Backtrack.create(g, property.base());
+      }
+      return backtrack.search(property) != null;
+    }
+  }
+
+  /**
+   * Computes the conjugacy classes of one cycle type as orbits.
+   */
+  private static final class OrbitsTask<E> extends
+      RecursiveTask<List<ConjugacyClass<E>>> {
+    private static final long serialVersionUID = 0;
+
+    private final Collection<Permutation<E>> generators;
+    private final List<Permutation<E>> bucket;
+    private final BigInteger order;
+
+    OrbitsTask(Collection<Permutation<E>> generators,
+        List<Permutation<E>> bucket, BigInteger order) {
+      this.generators = generators;
+      this.bucket = bucket;
+      this.order = order;
+    }
+
+    @Override protected List<ConjugacyClass<E>> compute() {
+      return orbits(generators, bucket, order);
+    }
+  }
+
+  private static final int SMALL_ORDER = 1 << 14;
+
+  /**
+   * Returns the conjugacy classes of {@code g}. When called from a
+   * {@link ForkJoinPool}, the cycle types of small groups are processed in
+   * parallel on that pool.
+   */
+  public static <E> List<ConjugacyClass<E>> conjugacyClasses(PermGroup<E> g) {
+    if (g.order().compareTo(BigInteger.valueOf(SMALL_ORDER)) <= 0) {
+      return byOrbits(g);
+    }
+    return bySampling(g);
+  }
+
+  /**
+   * Returns the conjugacy classes of {@code g}, processing the cycle types of
+   * small groups in parallel on {@code pool}.
+   */
+  public static <E> List<ConjugacyClass<E>> conjugacyClasses(
+      final PermGroup<E> g, ForkJoinPool pool) {
+    return pool.invoke(new RecursiveTask<List<ConjugacyClass<E>>>() {
+      private static final long serialVersionUID = 0;
+
+      @Override protected List<ConjugacyClass<E>> compute() {
+        return conjugacyClasses(g);
+      }
+    });
+  }
+
+  static <E> List<ConjugacyClass<E>> byOrbits(PermGroup<E> g) {
+    BigInteger order = g.order();
+    Map<List<Integer>, List<Permutation<E>>> byCycleType =
+        Maps.newLinkedHashMap();
+    for (Permutation<E> sigma : g) {
+      List<Integer> cycleType = Permutations.cycleType(sigma);
+      List<Permutation<E>> bucket = byCycleType.get(cycleType);
+      if (bucket == null) {
+        byCycleType.put(cycleType, bucket = Lists.newArrayList());
+      }
+      bucket.add(sigma);
+    }
+    List<OrbitsTask<E>> tasks = Lists.newArrayList();
+    for (List<Permutation<E>> bucket : byCycleType.values()) {
+      tasks.add(new OrbitsTask<E>(g.generators(), bucket, order));
+    }
+    ImmutableList.Builder<ConjugacyClass<E>> classes = ImmutableList.builder();
+    if (ForkJoinTask.inForkJoinPool()) {
+      ForkJoinTask.invokeAll(tasks);
+      for (OrbitsTask<E> task : tasks) {
+        classes.addAll(task.join());
+      }
+    } else {
+      for (OrbitsTask<E> task : tasks) {
+        classes.addAll(task.compute());
+      }
+    }
+    return classes.build();
+  }
+
+  static <E> List<ConjugacyClass<E>> bySampling(PermGroup<E> g) {
+    BigInteger order = g.order();
+    Map<List<Integer>, List<KnownClass<E>>> byCycleType =
+        Maps.newLinkedHashMap();
+    ImmutableList.Builder<ConjugacyClass<E>> classes = ImmutableList.builder();
+    BigInteger covered = BigInteger.ZERO;
+    for (Permutation<E> z : g.centralizer(g)) {
+      ConjugacyClass<E> zClass =
+          new ConjugacyClass<E>(z, order, BigInteger.ONE);
+      addClass(byCycleType, new KnownClass<E>(zClass, g));
+      classes.add(zClass);
+      covered = covered.add(BigInteger.ONE);
+    }
+    RandomElements<E> random = RandomElements.create(g);
+    while (covered.compareTo(order) < 0) {
+      Permutation<E> x = random.next();
+      int xOrder = x.order();
+      for (int k = 1; k < xOrder; k++) {
+        if (xOrder % k != 0) {
+          continue;
+        }
+        Permutation<E> y = Permutations.power(x, k);
+        List<Integer> cycleType = Permutations.cycleType(y);
+        if (isKnown(byCycleType.get(cycleType), y)) {
+          continue;
+        }
+        BigInteger centralizerOrder = g.centralizer(y).order();
+        ConjugacyClass<E> yClass =
+            new ConjugacyClass<E>(y, centralizerOrder, order
+              .divide(centralizerOrder));
+        addClass(byCycleType, new KnownClass<E>(yClass, g));
+        classes.add(yClass);
+        covered = covered.add(yClass.getSize());
+      }
+    }
+    return classes.build();
+  }
+
+  private static <E> void addClass(
+      Map<List<Integer>, List<KnownClass<E>>> byCycleType,
+      KnownClass<E> known) {
+    List<Integer> cycleType =
+        Permutations.cycleType(known.conjugacyClass.getRepresentative());
+    List<KnownClass<E>> sameType = byCycleType.get(cycleType);
+    if (sameType == null) {
+      byCycleType.put(cycleType, sameType = Lists.newArrayList());
+    }
+    sameType.add(known);
+  }
+
+  private static <E> boolean isKnown(Collection<KnownClass<E>> candidates,
+      Permutation<E> y) {
+    if (candidates != null) {
+      for (KnownClass<E> known : candidates) {
+        if (known.contains(y)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static <E> List<ConjugacyClass<E>> orbits(
+      Collection<Permutation<E>> generators, List<Permutation<E>> bucket,
+      BigInteger order) {
+    Set<Permutation<E>> todo = Sets.newLinkedHashSet(bucket);
+    ImmutableList.Builder<ConjugacyClass<E>> classes = ImmutableList.builder();
+    while (!todo.isEmpty()) {
+      Permutation<E> x = todo.iterator().next();
+      todo.remove(x);
+      List<Permutation<E>> orbit = Lists.newArrayList();
+      orbit.add(x);
+      for (int i = 0; i < orbit.size(); i++) {
+        for (Permutation<E> tau : generators) {
+          Permutation<E> y = Permutations.conjugate(orbit.get(i), tau);
+          if (todo.remove(y)) {
+            orbit.add(y);
+          }
+        }
+      }
+      BigInteger size = BigInteger.valueOf(orbit.size());
+      classes.add(new ConjugacyClass<E>(x, order.divide(size), size));
+    }
+    return classes.build();
+  }
+
+  private ConjugacyClasses() {
+  }
+}
@@ -0,0 +1,102 @@
+package math.algebra.permgroup;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import math.structures.permutation.Permutation;
+
+/**
+ * The property of conjugating {@code x} to {@code y}, that is, of permutations
+ * {@code sigma} with {@code sigma x sigma^-1 = y}. Such a permutation maps each
+ * cycle of {@code x} onto a cycle of {@code y} of the same length, and once it
+ * maps {@code b} to {@code c}, it must map {@code x(b)} to {@code y(c)}. When
+ * {@code x = y}, these are the elements commuting with {@code x}.
+ */
+final class ConjugatesProperty<E> implements Backtrack.Property<E> {
+  public static <E> ConjugatesProperty<E> centralizes(Permutation<E> x) {
+    return new ConjugatesProperty<E>(x, x);
+  }
+
+  public static <E> ConjugatesProperty<E> conjugates(Permutation<E> x,
+      Permutation<E> y) {
+    return new ConjugatesProperty<E>(x, y);
+  }
+
+  private static <E> int cycleLength(Map<E, Integer> cycleLengths, E e) {
+    Integer length = cycleLengths.get(e);
+    return (length == null) ? 1 : length;
+  }
+
+  private static <E> Map<E, Integer> cycleLengths(Permutation<E> x,
+      List<E> points) {
+    Map<E, Integer> cycleLengths =
+        Maps.newHashMapWithExpectedSize(x.domain().size());
+    Set<E> todo = Sets.newLinkedHashSet(x.domain());
+    while (!todo.isEmpty()) {
+      int start = points.size();
+      for (E e = todo.iterator().next(); todo.remove(e); e = x.apply(e)) {
+        points.add(e);
+      }
+      for (E e : points.subList(start, points.size())) {
+        cycleLengths.put(e, points.size() - start);
+      }
+    }
+    return cycleLengths;
+  }
+
+  private final Permutation<E> x;
+  private final Permutation<E> y;
+  private final Map<E, Integer> xCycleLengths;
+  private final Map<E, Integer> yCycleLengths;
+  private final ImmutableList<E> cyclePoints;
+
+  private ConjugatesProperty(Permutation<E> x, Permutation<E> y) {
+    this.x = checkNotNull(x);
+    this.y = checkNotNull(y);
+    List<E> points = Lists.newArrayListWithCapacity(x.domain().size());
+    this.xCycleLengths = cycleLengths(x, points);
+    this.yCycleLengths =
+        (x == y) ? xCycleLengths : cycleLengths(y, Lists.<E> newArrayList());
+    this.cyclePoints = ImmutableList.copyOf(points);
+  }
+
+  /**
+   * Returns the points moved by {@code x}, one cycle after another. Used as a
+   * base, each base point after the first of its cycle has its image
+   * determined by the previous one.
+   */
+  public List<E> base() {
+    return cyclePoints;
+  }
+
+  @Override public boolean apply(Permutation<E> sigma) {
+    for (E e : Sets.union(x.domain(), sigma.domain())) {
+      if (!Objects.equal(sigma.apply(x.apply(e)), y.apply(sigma.apply(e)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public boolean consistent(Map<E, E> partial, E point, E image) {
+    if (cycleLength(xCycleLengths, point) != cycleLength(yCycleLengths,
+        image)) {
+      return false;
+    }
+    E nextImage = partial.get(x.apply(point));
+    if (nextImage != null && !Objects.equal(nextImage, y.apply(image))) {
+      return false;
+    }
+    E prevImage = partial.get(x.preimage(point));
+    return prevImage == null || Objects.equal(y.apply(prevImage), image);
+  }
+}
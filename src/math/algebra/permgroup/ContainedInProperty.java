@@ -0,0 +1,71 @@
+package math.algebra.permgroup;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+import math.structures.permutation.Permutation;
+
+/**
+ * The property of being an element of a fixed group {@code h}, refined over
+ * coset tables of {@code h} sharing the base of the search. Given images
+ * {@code c_0, ..., c_i} of the base points, the element of {@code h} mapping
+ * them there, if any, is {@code u_0 u_1 ... u_i} with each {@code u_j} taken
+ * from the {@code j}th table, and {@code u_j} is the representative mapping
+ * {@code b_j} to {@code (u_0 ... u_{j - 1})^-1 c_j}. A prefix of base images
+ * is pruned as soon as no representative is found.
+ */
+final class ContainedInProperty<E> implements Backtrack.Property<E> {
+  public static <E> ContainedInProperty<E> of(PermGroup<E> h, List<E> base) {
+    return new ContainedInProperty<E>(h, base);
+  }
+
+  private final PermGroup<E> h;
+  private final ImmutableList<E> base;
+  private final Map<E, Integer> levels;
+  private final List<Map<E, Permutation<E>>> transversals;
+
+  private ContainedInProperty(PermGroup<E> h, List<E> base) {
+    this.h = h;
+    CosetTables<E> tables =
+        CosetTables.create(base, ImmutableList.copyOf(h.generators()));
+    this.base = ImmutableList.copyOf(tables.base());
+    this.levels = Maps.newHashMapWithExpectedSize(this.base.size());
+    for (int i = 0; i < this.base.size(); i++) {
+      levels.put(this.base.get(i), i);
+    }
+    this.transversals = Backtrack.transversals(tables);
+  }
+
+  @Override public boolean apply(Permutation<E> sigma) {
+    return h.contains(sigma);
+  }
+
+  @Override public boolean consistent(Map<E, E> partial, E point, E image) {
+    Integer level = levels.get(point);
+    if (level == null) {
+      // h fixes every point outside its base
+      return Objects.equal(point, image);
+    }
+    List<Permutation<E>> inverses = Lists.newArrayListWithCapacity(level);
+    for (int j = 0; j <= level; j++) {
+      E c = (j < level) ? partial.get(base.get(j)) : image;
+      if (c == null) {
+        return true;
+      }
+      for (Permutation<E> inverse : inverses) {
+        c = inverse.apply(c);
+      }
+      Permutation<E> rep = transversals.get(j).get(c);
+      if (rep == null) {
+        return false;
+      }
+      inverses.add(rep.inverse());
+    }
+    return true;
+  }
+}
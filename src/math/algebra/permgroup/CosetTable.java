@@ -9,6 +9,8 @@ import com.google.common.collect.Sets;
 
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import math.structures.permutation.Permutation;
 import math.structures.permutation.Permutations;
 
@@ -46,6 +48,20 @@ final class CosetTable<E> extends ForwardingSet<Permutation<E>> {
     this.filter = filter;
   }
 
+  /**
+   * Returns the point stabilized by this table's filter, or {@code null} if
+   * the filter is not the stabilizer of a single point.
+   */
+  @SuppressWarnings("unchecked") @Nullable public E basePoint() {
+    if (filter instanceof StabilizesPredicate) {
+      Set<E> set = ((StabilizesPredicate) filter).getSet();
+      if (set.size() == 1) {
+        return set.iterator().next();
+      }
+    }
+    return null;
+  }
+
   public Permutation<E> filter(Permutation<E> alpha) {
     for (Permutation<E> gamma : this) {
       Permutation<E> tmp = compose(gamma.inverse(), alpha);
@@ -12,11 +12,16 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
+import math.metrics.Metrics.Counter;
+import math.metrics.MetricsRegistry;
 import math.structures.permutation.Permutation;
 import math.structures.permutation.Permutations;
 
@@ -38,6 +43,24 @@ final class CosetTables<E> {
     return immutable(tables);
   }
 
+  /**
+   * Creates coset tables for the group generated by {@code generators}, whose
+   * first tables stabilize the points of {@code base} in order.
+   */
+  public static <E> CosetTables<E> create(List<E> base,
+      Collection<Permutation<E>> generators) {
+    CosetTables<E> tables = new CosetTables<E>();
+    for (E e : base) {
+      if (tables.support.add(e)) {
+        tables.addStabilizingTable(e);
+      }
+    }
+    for (Permutation<E> g : generators) {
+      tables.addGenerator(g, true);
+    }
+    return immutable(tables);
+  }
+
   public static <E> CosetTables<E> immutable(CosetTables<E> cTables) {
     ImmutableList.Builder<CosetTable<E>> builder = ImmutableList.builder();
     for (CosetTable<E> table : cTables.tables) {
@@ -164,6 +187,22 @@ final class CosetTables<E> {
     return immutable(result);
   }
 
+  /**
+   * Returns the points stabilized by successive tables, or {@code null} if
+   * some table does not stabilize a single point.
+   */
+  @Nullable public List<E> base() {
+    ImmutableList.Builder<E> builder = ImmutableList.builder();
+    for (CosetTable<E> table : tables) {
+      E point = table.basePoint();
+      if (point == null) {
+        return null;
+      }
+      builder.add(point);
+    }
+    return builder.build();
+  }
+
   public Iterator<Permutation<E>> generatedIterator() {
     return generated().iterator();
   }
@@ -193,6 +232,14 @@ final class CosetTables<E> {
     return tables;
   }
 
+  public BigInteger order() {
+    BigInteger order = BigInteger.ONE;
+    for (CosetTable<E> table : tables) {
+      order = order.multiply(BigInteger.valueOf(table.size()));
+    }
+    return order;
+  }
+
   public int size() {
     return generated().size();
   }
@@ -212,6 +259,7 @@ final class CosetTables<E> {
 
   boolean filter(Permutation<E> sigma, CosetTablesListener<E> listener,
       boolean addTables) {
+    MetricsRegistry.current().increment(Counter.SIFTS);
     if (addTables) {
       for (E e : sigma.domain()) {
         if (support.add(e)) {
@@ -254,6 +302,7 @@ final class CosetTables<E> {
   }
 
   private void addTable(Predicate<? super Permutation<E>> filter) {
+    MetricsRegistry.current().increment(Counter.TABLES_CREATED);
     tables.add(CosetTable.table(tables.size(), filter));
   }
 }
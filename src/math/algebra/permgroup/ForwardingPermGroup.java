@@ -3,14 +3,43 @@ package math.algebra.permgroup;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ForwardingCollection;
 
+import java.math.BigInteger;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import math.structures.permutation.Permutation;
 
 abstract class ForwardingPermGroup<E> extends
     ForwardingCollection<Permutation<E>> implements PermGroup<E> {
 
+  @Override public PermGroup<E> centralizer(Permutation<E> sigma) {
+    return delegate().centralizer(sigma);
+  }
+
+  @Override public PermGroup<E> centralizer(PermGroup<E> h) {
+    return delegate().centralizer(h);
+  }
+
+  @Override public PermGroup<E> commutatorSubgroup(PermGroup<E> h) {
+    return delegate().commutatorSubgroup(h);
+  }
+
+  @Override public List<ConjugacyClass<E>> conjugacyClasses() {
+    return delegate().conjugacyClasses();
+  }
+
+  @Override @Nullable public Permutation<E> conjugatingElement(
+      Permutation<E> sigma, Permutation<E> rho) {
+    return delegate().conjugatingElement(sigma, rho);
+  }
+
+  @Override public List<PermGroup<E>> derivedSeries() {
+    return delegate().derivedSeries();
+  }
+
   @Override public PermGroup<E> extend(Iterable<Permutation<E>> newGenerators) {
     return delegate().extend(newGenerators);
   }
@@ -23,10 +52,38 @@ abstract class ForwardingPermGroup<E> extends
     return delegate().generators();
   }
 
+  @Override public PermGroup<E> intersection(PermGroup<E> h) {
+    return delegate().intersection(h);
+  }
+
+  @Override public boolean isNilpotent() {
+    return delegate().isNilpotent();
+  }
+
+  @Override public boolean isSolvable() {
+    return delegate().isSolvable();
+  }
+
   @Override public boolean isSubgroupOf(PermGroup<E> g) {
     return delegate().isSubgroupOf(g);
   }
 
+  @Override public List<PermGroup<E>> lowerCentralSeries() {
+    return delegate().lowerCentralSeries();
+  }
+
+  @Override public PermGroup<E> normalClosure(PermGroup<E> h) {
+    return delegate().normalClosure(h);
+  }
+
+  @Override public PermGroup<E> normalizer(PermGroup<E> h) {
+    return delegate().normalizer(h);
+  }
+
+  @Override public BigInteger order() {
+    return delegate().order();
+  }
+
   @Override public boolean stabilizes(Collection<Set<E>> collection) {
     return delegate().stabilizes(collection);
   }
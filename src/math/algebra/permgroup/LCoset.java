@@ -43,7 +43,7 @@ public final class LCoset<E> extends AbstractSet<Permutation<E>> {
       @Nullable Object o) {
     if (o instanceof Permutation) {
       Permutation tau = (Permutation) o;
-      return group.contains(compose(sigma.inverse(), tau));
+      return getGroup().contains(compose(sigma.inverse(), tau));
     }
     return false;
   }
@@ -52,12 +52,12 @@ public final class LCoset<E> extends AbstractSet<Permutation<E>> {
       @Nullable Object o) {
     if (o instanceof LCoset) {
       LCoset<?> coset = (LCoset<?>) o;
-      return Objects.equal(group, coset.group)
-          && group
-            .contains(compose(sigma.inverse(), (Permutation) coset.sigma));
+      return Objects.equal(getGroup(), coset.getGroup())
+          && getGroup().contains(
+              compose(sigma.inverse(), (Permutation) coset.sigma));
     } else if (o instanceof RegularPermGroup) {
       RegularPermGroup<?> g = (RegularPermGroup<?>) o;
-      return Objects.equal(group, g) && group.contains(sigma);
+      return Objects.equal(getGroup(), g) && g.contains(sigma);
     } else {
       return super.equals(o);
     }
@@ -76,11 +76,11 @@ public final class LCoset<E> extends AbstractSet<Permutation<E>> {
   }
 
   @Override public boolean isEmpty() {
-    return group.isEmpty();
+    return getGroup().isEmpty();
   }
 
   @Override public Iterator<Permutation<E>> iterator() {
-    return Iterators.transform(group.iterator(),
+    return Iterators.transform(getGroup().iterator(),
         new Function<Permutation<E>, Permutation<E>>() {
           @Override public Permutation<E> apply(Permutation<E> tau) {
             return compose(sigma, tau);
@@ -89,6 +89,6 @@ public final class LCoset<E> extends AbstractSet<Permutation<E>> {
   }
 
   @Override public int size() {
-    return group.size();
+    return getGroup().size();
   }
 }
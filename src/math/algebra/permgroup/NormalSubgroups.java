@@ -0,0 +1,158 @@
+package math.algebra.permgroup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import math.numbertheory.Factorization;
+import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
+
+/**
+ * Normal closures, commutator subgroups and the series built from them.
+ *
+ * <p>
+ * The normal closure of {@code h} in {@code g} starts from the group generated
+ * by {@code h} and extends its coset tables incrementally: one mutable set of
+ * tables is kept for the whole computation, and each new conjugate is sifted
+ * into it in place, rather than copying every table as
+ * {@link PermGroup#extend} does. Conjugates of random elements of the closure
+ * by random elements of {@code g} are added first, which usually reaches the
+ * whole closure after a few extensions. Then the conjugate of every generator
+ * of the closure by every generator of {@code g} is checked, which guarantees
+ * the result is normal.
+ *
+ * <p>
+ * The tables still close each new representative deterministically against
+ * all the others, which takes time quadratic in their total size. A randomized
+ * Schreier-Sims extension would avoid that, but is not implemented.
+ */
+final class NormalSubgroups {
+  private static final int RANDOM_CONJUGATES = 10;
+
+  public static <E> PermGroup<E> normalClosure(PermGroup<E> g, PermGroup<E> h) {
+    List<Permutation<E>> generators = Lists.newArrayList();
+    CosetTables<E> tables = CosetTables.create();
+    for (Permutation<E> sigma : h.generators()) {
+      if (!sigma.isIdentity() && tables.addGenerator(sigma, true)) {
+        generators.add(sigma);
+      }
+    }
+    if (generators.isEmpty()) {
+      return Groups.trivial();
+    }
+    RandomElements<E> gRandom = RandomElements.create(g);
+    RandomElements<E> nRandom = randomElements(generators);
+    for (int misses = 0; misses < RANDOM_CONJUGATES;) {
+      Permutation<E> tau =
+          Permutations.conjugate(nRandom.next(), gRandom.next());
+      if (tables.addGenerator(tau, true)) {
+        generators.add(tau);
+        nRandom = randomElements(generators);
+        misses = 0;
+      } else {
+        misses++;
+      }
+    }
+    for (int i = 0; i < generators.size(); i++) {
+      for (Permutation<E> rho : g.generators()) {
+        Permutation<E> tau = Permutations.conjugate(generators.get(i), rho);
+        if (tables.addGenerator(tau, true)) {
+          generators.add(tau);
+        }
+      }
+    }
+    return new RegularPermGroup<E>(CosetTables.immutable(tables));
+  }
+
+  private static <E> RandomElements<E> randomElements(
+      List<Permutation<E>> generators) {
+    return RandomElements.create(Groups.generateGroup(ImmutableList
+      .copyOf(generators)));
+  }
+
+  /**
+   * Returns {@code [g, h]}, the normal closure in {@code <g, h>} of the
+   * commutators of the generators of {@code g} with those of {@code h}.
+   */
+  public static <E> PermGroup<E> commutatorSubgroup(PermGroup<E> g,
+      PermGroup<E> h) {
+    List<Permutation<E>> commutators = Lists.newArrayList();
+    for (Permutation<E> sigma : g.generators()) {
+      for (Permutation<E> tau : h.generators()) {
+        Permutation<E> commutator = Permutations.commutator(sigma, tau);
+        if (!commutator.isIdentity()) {
+          commutators.add(commutator);
+        }
+      }
+    }
+    if (commutators.isEmpty()) {
+      return Groups.trivial();
+    }
+    return normalClosure(g.extend(h), Groups.generateGroup(commutators));
+  }
+
+  public static <E> List<PermGroup<E>> derivedSeries(PermGroup<E> g) {
+    ImmutableList.Builder<PermGroup<E>> series = ImmutableList.builder();
+    series.add(g);
+    while (!isTrivial(g)) {
+      PermGroup<E> next = commutatorSubgroup(g, g);
+      if (next.order().equals(g.order())) {
+        break;
+      }
+      series.add(g = next);
+    }
+    return series.build();
+  }
+
+  public static <E> List<PermGroup<E>> lowerCentralSeries(PermGroup<E> g) {
+    ImmutableList.Builder<PermGroup<E>> series = ImmutableList.builder();
+    series.add(g);
+    PermGroup<E> gi = g;
+    while (!isTrivial(gi)) {
+      PermGroup<E> next = commutatorSubgroup(gi, g);
+      if (next.order().equals(gi.order())) {
+        break;
+      }
+      series.add(gi = next);
+    }
+    return series.build();
+  }
+
+  /**
+   * Groups whose order has at most two prime factors are solvable by
+   * Burnside's theorem, and groups of odd order by the Feit-Thompson theorem.
+   * Otherwise, this checks the derived series.
+   */
+  public static boolean isSolvable(PermGroup<?> g) {
+    BigInteger order = g.order();
+    if (order.testBit(0) || Factorization.factorize(order).size() <= 2) {
+      return true;
+    }
+    return isTrivial(last(derivedSeries(g)));
+  }
+
+  /**
+   * Groups of prime power order are nilpotent. Otherwise, this checks the
+   * lower central series.
+   */
+  public static boolean isNilpotent(PermGroup<?> g) {
+    if (Factorization.factorize(g.order()).size() <= 1) {
+      return true;
+    }
+    return isTrivial(last(lowerCentralSeries(g)));
+  }
+
+  private static boolean isTrivial(PermGroup<?> g) {
+    return g.order().equals(BigInteger.ONE);
+  }
+
+  private static <E> PermGroup<E> last(List<PermGroup<E>> series) {
+    return series.get(series.size() - 1);
+  }
+
+  private NormalSubgroups() {
+  }
+}
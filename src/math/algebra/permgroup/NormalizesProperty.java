@@ -0,0 +1,86 @@
+package math.algebra.permgroup;
+
+import static math.structures.permutation.Permutations.compose;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import math.structures.permutation.Permutation;
+
+/**
+ * The property of normalizing a fixed group {@code h}. Such an element maps the
+ * orbits of {@code h} onto orbits of {@code h} of the same size, so two points
+ * lie in a common orbit exactly when their images do.
+ */
+final class NormalizesProperty<E> implements Backtrack.Property<E> {
+  public static <E> NormalizesProperty<E> of(PermGroup<E> h) {
+    return new NormalizesProperty<E>(h);
+  }
+
+  private final PermGroup<E> h;
+  private final Map<E, Set<E>> orbits;
+  private final ImmutableList<E> orbitPoints;
+
+  private NormalizesProperty(PermGroup<E> h) {
+    this.h = h;
+    Set<E> support = Sets.newLinkedHashSet();
+    for (Permutation<E> sigma : h.generators()) {
+      support.addAll(sigma.domain());
+    }
+    this.orbits = Maps.newHashMapWithExpectedSize(support.size());
+    List<E> points = Lists.newArrayListWithCapacity(support.size());
+    for (Set<E> orbit : Orbits.orbits(h.generators(), support)) {
+      for (E e : orbit) {
+        orbits.put(e, orbit);
+        points.add(e);
+      }
+    }
+    this.orbitPoints = ImmutableList.copyOf(points);
+  }
+
+  /**
+   * Returns the points moved by {@code h}, one orbit after another.
+   */
+  public List<E> base() {
+    return orbitPoints;
+  }
+
+  @Override public boolean apply(Permutation<E> sigma) {
+    Permutation<E> sigmaInverse = sigma.inverse();
+    for (Permutation<E> tau : h.generators()) {
+      if (!h.contains(compose(sigma, tau, sigmaInverse))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public boolean consistent(Map<E, E> partial, E point, E image) {
+    if (orbitSize(point) != orbitSize(image)) {
+      return false;
+    }
+    for (Map.Entry<E, E> entry : partial.entrySet()) {
+      if (sameOrbit(entry.getKey(), point) != sameOrbit(entry.getValue(),
+          image)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int orbitSize(E e) {
+    Set<E> orbit = orbits.get(e);
+    return (orbit == null) ? 1 : orbit.size();
+  }
+
+  private boolean sameOrbit(E a, E b) {
+    Set<E> orbit = orbits.get(a);
+    return (orbit == null) ? a.equals(b) : orbit.contains(b);
+  }
+}
@@ -2,13 +2,52 @@ package math.algebra.permgroup;
 
 import com.google.common.base.Predicate;
 
+import java.math.BigInteger;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import math.structures.permutation.Permutation;
 
 public interface PermGroup<E> extends Set<Permutation<E>> {
 
+  /**
+   * Returns the subgroup of elements of this group commuting with
+   * {@code sigma}, which need not be an element of this group.
+   */
+  public abstract PermGroup<E> centralizer(Permutation<E> sigma);
+
+  /**
+   * Returns the subgroup of elements of this group commuting with every
+   * element of {@code h}.
+   */
+  public abstract PermGroup<E> centralizer(PermGroup<E> h);
+
+  /**
+   * Returns the commutator subgroup {@code [G, h]} of this group {@code G} and
+   * {@code h}, generated by the commutators of their elements. In particular,
+   * {@code commutatorSubgroup(this)} is the derived subgroup.
+   */
+  public abstract PermGroup<E> commutatorSubgroup(PermGroup<E> h);
+
+  /**
+   * Returns the conjugacy classes of this group, with their sizes and the
+   * orders of the centralizers of their representatives.
+   */
+  public abstract List<ConjugacyClass<E>> conjugacyClasses();
+
+  /**
+   * Returns an element {@code tau} of this group such that
+   * {@code tau^-1 sigma tau = rho}, that is, such that
+   * {@code Permutations.conjugate(sigma, tau)} equals {@code rho}, or
+   * {@code null} if {@code sigma} and {@code rho} are not conjugate in this
+   * group.
+   */
+  @Nullable public abstract Permutation<E> conjugatingElement(
+      Permutation<E> sigma, Permutation<E> rho);
+
   /**
    * Returns the permutation group generated by this group and the specified
    * generators.
@@ -17,10 +56,54 @@ public interface PermGroup<E> extends Set<Permutation<E>> {
 
   public abstract PermGroup<E> extend(PermGroup<E> h);
 
+  /**
+   * Returns the derived series of this group, starting with this group, in
+   * which each group is the derived subgroup of the one before. The series
+   * ends at the first perfect group, which is trivial exactly when this group
+   * is solvable.
+   */
+  public abstract List<PermGroup<E>> derivedSeries();
+
   public abstract Collection<Permutation<E>> generators();
 
+  /**
+   * Returns the subgroup of elements of this group which are also elements of
+   * {@code h}.
+   */
+  public abstract PermGroup<E> intersection(PermGroup<E> h);
+
+  public abstract boolean isNilpotent();
+
+  public abstract boolean isSolvable();
+
   public abstract boolean isSubgroupOf(PermGroup<E> g);
 
+  /**
+   * Returns the lower central series of this group {@code G}, starting with
+   * {@code G}, in which each group {@code G_i} is followed by
+   * {@code [G_i, G]}. The series ends once it stops descending, which is at
+   * the trivial group exactly when this group is nilpotent.
+   */
+  public abstract List<PermGroup<E>> lowerCentralSeries();
+
+  /**
+   * Returns the normal closure of {@code h} in this group: the smallest
+   * subgroup containing {@code h} that is normalized by this group.
+   */
+  public abstract PermGroup<E> normalClosure(PermGroup<E> h);
+
+  /**
+   * Returns the subgroup of elements {@code sigma} of this group such that
+   * {@code sigma h sigma^-1 = h}.
+   */
+  public abstract PermGroup<E> normalizer(PermGroup<E> h);
+
+  /**
+   * Returns the order of this group. Unlike {@link #size()}, this does not
+   * saturate at {@code Integer.MAX_VALUE}.
+   */
+  public abstract BigInteger order();
+
   public abstract boolean stabilizes(Collection<Set<E>> collection);
 
   public abstract boolean stabilizes(Set<E> set);
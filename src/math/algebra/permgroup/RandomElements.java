@@ -0,0 +1,67 @@
+package math.algebra.permgroup;
+
+import static math.structures.permutation.Permutations.compose;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
+
+/**
+ * A source of nearly uniformly distributed random elements of a permutation
+ * group, using the product replacement algorithm with an accumulator ("rattle")
+ * of Celler, Leedham-Green, Murray, Niemeyer and O'Brien.
+ */
+final class RandomElements<E> {
+  private static final int MIN_POOL_SIZE = 10;
+  private static final int SCRAMBLE_ROUNDS = 50;
+
+  public static <E> RandomElements<E> create(PermGroup<E> g) {
+    return new RandomElements<E>(g.generators(), new Random());
+  }
+
+  public static <E> RandomElements<E> create(PermGroup<E> g, Random random) {
+    return new RandomElements<E>(g.generators(), random);
+  }
+
+  private final List<Permutation<E>> pool;
+  private final Random random;
+  private Permutation<E> accumulator = Permutations.identity();
+
+  private RandomElements(Collection<Permutation<E>> generators, Random random) {
+    this.random = random;
+    this.pool = Lists.newArrayList();
+    if (!generators.isEmpty()) {
+      while (pool.size() < MIN_POOL_SIZE) {
+        pool.addAll(generators);
+      }
+      for (int i = 0; i < SCRAMBLE_ROUNDS; i++) {
+        next();
+      }
+    }
+  }
+
+  public Permutation<E> next() {
+    if (pool.isEmpty()) {
+      return Permutations.identity();
+    }
+    int i = random.nextInt(pool.size());
+    int j = random.nextInt(pool.size() - 1);
+    if (j >= i) {
+      j++;
+    }
+    Permutation<E> rho = pool.get(j);
+    if (random.nextBoolean()) {
+      rho = rho.inverse();
+    }
+    Permutation<E> sigma =
+        random.nextBoolean() ? compose(pool.get(i), rho) : compose(rho,
+            pool.get(i));
+    pool.set(i, sigma);
+    return accumulator = compose(accumulator, sigma);
+  }
+}
@@ -4,6 +4,7 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -91,6 +92,10 @@ class RegularPermGroup<E> extends AbstractPermGroup<E> {
     return cosetTables().generatedIterator();
   }
 
+  @Override public BigInteger order() {
+    return cosetTables().order();
+  }
+
   @Override public int size() {
     return cosetTables().size();
   }
@@ -0,0 +1,48 @@
+package math.algebra.permgroup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when a search is stopped by its {@link SearchContext}, with the
+ * progress it had made.
+ */
+public final class SearchAbortedException extends RuntimeException {
+  private static final long serialVersionUID = 0;
+
+  /**
+   * Why a search was stopped.
+   */
+  public enum Reason {
+    CANCELLED, DEADLINE, BUDGET;
+  }
+
+  private final Reason reason;
+  private final long steps;
+  private final long elapsedNanos;
+
+  // Package-private, so that a ForkJoinTask rethrows this instance, rather than
+  // a reflective copy without the statistics.
+  SearchAbortedException(Reason reason, long steps, long elapsedNanos) {
+    super(reason + " after " + steps + " steps and "
+        + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms");
+    this.reason = reason;
+    this.steps = steps;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+
+  /**
+   * Returns the number of steps the search had taken, including the one
+   * which was refused.
+   */
+  public long getSteps() {
+    return steps;
+  }
+
+  public long getElapsed(TimeUnit unit) {
+    return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,139 @@
+package math.algebra.permgroup;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import math.algebra.permgroup.SearchAbortedException.Reason;
+
+/**
+ * Limits on a long-running search: a deadline, a budget of recursion steps,
+ * and a cancellation flag that may be set from another thread.
+ *
+ * <p>
+ * Searches call {@link #step} at each recursion step, which throws a
+ * {@link SearchAbortedException} once any limit is exceeded. A context is
+ * thread-safe, so that the branches of a parallel search share one budget, and
+ * it is meant for a single search: its step count and clock are never reset.
+ * A {@linkplain #child child} context lets part of a search be cancelled on
+ * its own, such as the branches racing for one answer once it is found.
+ */
+public final class SearchContext {
+  private static final SearchContext UNBOUNDED = new SearchContext(
+      Long.MAX_VALUE, Long.MAX_VALUE);
+
+  /**
+   * Returns a context without limits, which can not be cancelled.
+   */
+  public static SearchContext unbounded() {
+    return UNBOUNDED;
+  }
+
+  /**
+   * Returns a cancellable context without a deadline or a budget.
+   */
+  public static SearchContext create() {
+    return new SearchContext(Long.MAX_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a cancellable context which expires {@code timeout} from now.
+   */
+  public static SearchContext withDeadline(long timeout, TimeUnit unit) {
+    return create(timeout, unit, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a cancellable context which allows at most {@code maxSteps}
+   * recursion steps.
+   */
+  public static SearchContext withBudget(long maxSteps) {
+    return new SearchContext(Long.MAX_VALUE, maxSteps);
+  }
+
+  /**
+   * Returns a cancellable context which expires {@code timeout} from now, or
+   * after {@code maxSteps} recursion steps, whichever comes first.
+   */
+  public static SearchContext create(long timeout, TimeUnit unit,
+      long maxSteps) {
+    checkArgument(timeout >= 0, "negative timeout %s", timeout);
+    return new SearchContext(unit.toNanos(timeout), maxSteps);
+  }
+
+  private final long start = System.nanoTime();
+  private final long timeoutNanos;
+  private final long maxSteps;
+  private final AtomicLong steps = new AtomicLong();
+  @Nullable private final SearchContext parent;
+  private volatile boolean cancelled;
+
+  private SearchContext(long timeoutNanos, long maxSteps) {
+    checkArgument(maxSteps >= 0, "negative budget %s", maxSteps);
+    this.timeoutNanos = timeoutNanos;
+    this.maxSteps = maxSteps;
+    this.parent = null;
+  }
+
+  private SearchContext(SearchContext parent) {
+    this.timeoutNanos = Long.MAX_VALUE;
+    this.maxSteps = Long.MAX_VALUE;
+    this.parent = parent;
+  }
+
+  /**
+   * Returns a cancellable context for part of this search. Its steps count
+   * against this context's limits, and it stops when this context does, but
+   * cancelling it leaves this context running.
+   */
+  public SearchContext child() {
+    return new SearchContext(this);
+  }
+
+  /**
+   * Requests that every search running in this context stop at its next
+   * step.
+   */
+  public void cancel() {
+    checkState(this != UNBOUNDED, "the unbounded context can not be cancelled");
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Returns the number of steps taken so far.
+   */
+  public long steps() {
+    return steps.get();
+  }
+
+  /**
+   * Records a recursion step.
+   *
+   * @throws SearchAbortedException if this context was cancelled, its deadline
+   *         has passed, or its budget is spent
+   */
+  public void step() {
+    if (this == UNBOUNDED) {
+      return;
+    } else if (parent != null) {
+      parent.step();
+    }
+    long taken = steps.incrementAndGet();
+    long elapsed = System.nanoTime() - start;
+    if (cancelled) {
+      throw new SearchAbortedException(Reason.CANCELLED, taken, elapsed);
+    } else if (elapsed > timeoutNanos) {
+      throw new SearchAbortedException(Reason.DEADLINE, taken, elapsed);
+    } else if (taken > maxSteps) {
+      throw new SearchAbortedException(Reason.BUDGET, taken, elapsed);
+    }
+  }
+}
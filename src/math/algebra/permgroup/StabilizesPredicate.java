@@ -52,6 +52,10 @@ final class StabilizesPredicate<E> implements Predicate<Permutation<E>> {
     return false;
   }
 
+  ImmutableSet<E> getSet() {
+    return set;
+  }
+
   @Override public int hashCode() {
     return set.hashCode();
   }
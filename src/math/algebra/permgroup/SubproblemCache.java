@@ -0,0 +1,136 @@
+package math.algebra.permgroup;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Function;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
+
+/**
+ * A bounded cache of the color-preserving subproblems of a single
+ * {@link ColorPreserving} search.
+ *
+ * <p>
+ * The elements of {@code sigma G} matching the colors of a {@code G}-stable
+ * set {@code B} are {@code sigma g} for the elements {@code g} of {@code G}
+ * with {@code target(sigma(g(b))) = source(b)}. These depend on {@code sigma}
+ * only through its color pattern, the map from each {@code b} in {@code B} to
+ * the target color of {@code sigma(b)}. If {@code sigma'} has the same
+ * pattern, its answer is that of {@code sigma} translated on the left by
+ * {@code sigma' sigma^-1}. Sibling cosets in the search share their group, so
+ * such repeats are common.
+ *
+ * <p>
+ * Entries are evicted in least recently used order once there are more than
+ * {@value #MAX_ENTRIES} of them.
+ */
+final class SubproblemCache<E, A> {
+  private static final int MAX_ENTRIES = 1024;
+
+  static final class Key<E> {
+    private final PermGroup<E> g;
+    private final long[] pattern;
+    private final int hashCode;
+
+    Key(PermGroup<E> g, long[] pattern) {
+      this.g = g;
+      this.pattern = pattern;
+      this.hashCode = Arrays.hashCode(pattern);
+    }
+
+    @Override public boolean equals(@Nullable Object o) {
+      if (o instanceof Key) {
+        Key<?> key = (Key<?>) o;
+        return hashCode == key.hashCode && Arrays.equals(pattern, key.pattern)
+            && (g == key.g || g.equals(key.g));
+      }
+      return false;
+    }
+
+    @Override public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The answer to a subproblem, for the representative it was computed with.
+   */
+  static final class Entry<E> {
+    private final Permutation<E> sigma;
+    @Nullable private final LCoset<E> answer;
+
+    Entry(Permutation<E> sigma, @Nullable LCoset<E> answer) {
+      this.sigma = sigma;
+      this.answer = answer;
+    }
+
+    /**
+     * Returns the answer to the same subproblem for the representative
+     * {@code tau}.
+     */
+    @Nullable LCoset<E> translate(Permutation<E> tau) {
+      if (answer == null || tau.equals(sigma)) {
+        return answer;
+      }
+      return LCoset.precompose(Permutations.compose(tau, sigma.inverse()),
+          answer);
+    }
+  }
+
+  public static <E, A> SubproblemCache<E, A> create(ColorMatch<A> match) {
+    return new SubproblemCache<E, A>(match);
+  }
+
+  private final ColorMatch<A> match;
+  private final Map<Key<E>, Entry<E>> entries =
+      new LinkedHashMap<Key<E>, Entry<E>>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(
+            Map.Entry<Key<E>, Entry<E>> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+
+  private SubproblemCache(ColorMatch<A> match) {
+    this.match = checkNotNull(match);
+  }
+
+  /**
+   * Returns the key of the subproblem on the {@code g}-stable set
+   * {@code bSet}, for a coset representative acting on it as {@code sigma}.
+   * The pattern packs the position of each point with the target color of
+   * its image, sorted so that it does not depend on the iteration order of
+   * {@code bSet}.
+   */
+  public Key<E> key(PermGroup<E> g, Set<A> bSet, Function<A, A> sigma) {
+    long[] pattern = new long[bSet.size()];
+    int i = 0;
+    for (A b : bSet) {
+      pattern[i++] =
+          ((long) match.index(b) << 32)
+              | (match.targetColor(sigma.apply(b)) & 0xffffffffL);
+    }
+    Arrays.sort(pattern);
+    return new Key<E>(g, pattern);
+  }
+
+  @Nullable public Entry<E> get(Key<E> key) {
+    synchronized (entries) {
+      return entries.get(key);
+    }
+  }
+
+  public void put(Key<E> key, Permutation<E> sigma,
+      @Nullable LCoset<E> answer) {
+    synchronized (entries) {
+      entries.put(key, new Entry<E>(sigma, answer));
+    }
+  }
+}
@@ -5,10 +5,19 @@ import static com.google.common.base.Preconditions.checkArgument;
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import java.math.BigInteger;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 import math.structures.permutation.Permutation;
 import math.structures.permutation.Permutations;
@@ -20,10 +29,12 @@ public class SylowSubgroup<E> extends ForwardingPermGroup<E> implements
     private final PermGroup<E> g;
     private PermGroup<E> pi;
     private final Collection<Permutation<E>> c;
+    private final SearchContext context;
 
-    SylowSubgroupBuilder(int p, PermGroup<E> g) {
+    SylowSubgroupBuilder(int p, PermGroup<E> g, SearchContext context) {
       this.p = p;
       this.g = g;
+      this.context = context;
       pi = Groups.trivial();
       c = Lists.newArrayList();
       c.add(Permutations.<E> identity());
@@ -37,6 +48,7 @@ public class SylowSubgroup<E> extends ForwardingPermGroup<E> implements
     }
 
     private void pBuild(Permutation<E> alpha) {
+      context.step();
       for (Permutation<E> gamma : c) {
         PermGroup<E> tmp =
             pi.extend(ImmutableList.of(Permutations.compose(gamma.inverse(),
@@ -54,7 +66,18 @@ public class SylowSubgroup<E> extends ForwardingPermGroup<E> implements
   }
 
   public static <E> SylowSubgroup<E> sylowSubgroup(PermGroup<E> g, int p) {
-    return new SylowSubgroupBuilder<E>(p, g).build();
+    return sylowSubgroup(g, p, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns a Sylow {@code p}-subgroup of {@code g}, checking {@code context}
+   * once for each element offered to the subgroup built so far.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <E> SylowSubgroup<E> sylowSubgroup(PermGroup<E> g, int p,
+      SearchContext context) {
+    return new SylowSubgroupBuilder<E>(p, g, context).build();
   }
 
   private static int factorOut(int n, int k) {
@@ -65,23 +88,31 @@ public class SylowSubgroup<E> extends ForwardingPermGroup<E> implements
     return (n % k == 0) ? n / k : n;
   }
 
-  private final Collection<Permutation<E>> representatives;
+  @Nullable private Collection<Permutation<E>> representatives;
   private final int p;
   private final PermGroup<E> pi;
 
   private final PermGroup<E> g;
 
-  private SylowSubgroup(Collection<Permutation<E>> representatives, int p,
+  SylowSubgroup(Collection<Permutation<E>> representatives, int p,
       PermGroup<E> pi, PermGroup<E> g) {
+    this(p, pi, g);
     this.representatives = representatives;
+    assert g.containsAll(representatives);
+    assert g.size() == pi.size() * representatives.size();
+  }
+
+  /**
+   * Creates the Sylow subgroup {@code pi} of {@code g}, whose coset
+   * representatives are computed when they are first asked for.
+   */
+  SylowSubgroup(int p, PermGroup<E> pi, PermGroup<E> g) {
     this.p = p;
     this.pi = pi;
     this.g = g;
     checkArgument(BigInteger.valueOf(p).isProbablePrime(10));
-    assert g.containsAll(representatives);
     assert pi.isSubgroupOf(g);
-    assert representatives.size() % p != 0;
-    assert g.size() == pi.size() * representatives.size();
+    assert index() % p != 0;
   }
 
   @Override public Collection<LCoset<E>> asCosets() {
@@ -94,15 +125,71 @@ public class SylowSubgroup<E> extends ForwardingPermGroup<E> implements
   }
 
   @Override public Collection<Permutation<E>> cosetRepresentatives() {
+    if (representatives == null) {
+      representatives = cosetOrbit();
+    }
     return representatives;
   }
 
+  /**
+   * Returns representatives of the left cosets of this subgroup, found as the
+   * orbit of the subgroup under left multiplication by the generators of the
+   * supergroup. All the elements of a coset map each orbit of this subgroup to
+   * the same set, so a new element is only tested for membership in the
+   * cosets of representatives that agree with it on those images.
+   */
+  private Collection<Permutation<E>> cosetOrbit() {
+    Set<E> domain = Sets.newLinkedHashSet();
+    for (Permutation<E> gamma : g.generators()) {
+      domain.addAll(gamma.domain());
+    }
+    Collection<Set<E>> orbits = Orbits.orbits(pi.generators(), domain);
+    Map<List<Set<E>>, List<Permutation<E>>> buckets = Maps.newHashMap();
+    List<Permutation<E>> reps = Lists.newArrayList();
+    reps.add(Permutations.<E> identity());
+    buckets.put(images(reps.get(0), orbits), Lists.newArrayList(reps));
+    for (int i = 0; i < reps.size(); i++) {
+      for (Permutation<E> gamma : g.generators()) {
+        Permutation<E> tau = Permutations.compose(gamma, reps.get(i));
+        List<Set<E>> key = images(tau, orbits);
+        List<Permutation<E>> bucket = buckets.get(key);
+        if (bucket == null) {
+          buckets.put(key, bucket = Lists.newArrayList());
+        }
+        if (!inCosets(tau, bucket)) {
+          bucket.add(tau);
+          reps.add(tau);
+        }
+      }
+    }
+    return Collections.unmodifiableList(reps);
+  }
+
+  private boolean inCosets(Permutation<E> tau,
+      Collection<Permutation<E>> sigmas) {
+    for (Permutation<E> sigma : sigmas) {
+      if (pi.contains(Permutations.compose(sigma.inverse(), tau))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static <E> List<Set<E>> images(Permutation<E> sigma,
+      Collection<Set<E>> orbits) {
+    List<Set<E>> images = Lists.newArrayListWithCapacity(orbits.size());
+    for (Set<E> orbit : orbits) {
+      images.add(ImmutableSet.copyOf(sigma.apply(orbit)));
+    }
+    return images;
+  }
+
   public int getP() {
     return p;
   }
 
   @Override public int index() {
-    return cosetRepresentatives().size();
+    return g.order().divide(pi.order()).intValue();
   }
 
   @Override public PermGroup<E> superGroup() {
@@ -0,0 +1,306 @@
+package math.algebra.permgroup;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import math.numbertheory.Factorization;
+import math.numbertheory.Factorization.Factor;
+import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
+
+/**
+ * A Sylow subgroup of a permutation group for every prime dividing its order,
+ * computed together in a single pass.
+ *
+ * <p>
+ * For each prime {@code p}, the builder maintains a {@code p}-subgroup and
+ * offers it the {@code p}-parts of elements of the group, keeping them whenever
+ * the extended group is still a {@code p}-group. The elements come first from a
+ * shared pool of random elements, which usually finishes the job. A subgroup
+ * that is still too small then grows through its normalizer: while a
+ * {@code p}-subgroup is not Sylow, {@code p} divides its index in its
+ * normalizer, so random elements of the normalizer have {@code p}-parts
+ * outside the subgroup, and any such {@code p}-part generates a larger
+ * {@code p}-group with it. The group itself is never enumerated, and coset
+ * representatives of the Sylow subgroups are only computed when asked for.
+ */
+public final class SylowSystem<E> {
+  private static final class PGroupBuilder<E> {
+    private final int p;
+    private final BigInteger target;
+    private PermGroup<E> pi = Groups.trivial();
+
+    PGroupBuilder(Factor factor) {
+      this.p = factor.getPrime();
+      this.target = factor.getBigProduct();
+    }
+
+    boolean isComplete() {
+      return pi.order().equals(target);
+    }
+
+    /**
+     * Offers the {@code p}-part of {@code sigma}, and its powers, to this
+     * builder.
+     */
+    void offer(Permutation<E> sigma) {
+      int order = sigma.order();
+      if (isComplete() || order % p != 0) {
+        return;
+      }
+      int pPrime = order;
+      while (pPrime % p == 0) {
+        pPrime /= p;
+      }
+      for (Permutation<E> x = Permutations.power(sigma, pPrime); !x
+        .isIdentity(); x = Permutations.power(x, p)) {
+        if (pi.contains(x)) {
+          return;
+        }
+        PermGroup<E> tmp = pi.extend(ImmutableList.of(x));
+        if (isPowerOf(tmp.order(), p)) {
+          pi = tmp;
+          return;
+        }
+      }
+    }
+
+    /**
+     * Extends the subgroup with {@code p}-parts of random elements of its
+     * normalizer in {@code g} until it is a Sylow subgroup of {@code g}. While
+     * it is not, {@code p} divides its index in its normalizer, so the
+     * normalizer has elements whose {@code p}-parts lie outside it.
+     */
+    void grow(PermGroup<E> g) {
+      while (!isComplete()) {
+        PermGroup<E> normalizer =
+            pi.order().equals(BigInteger.ONE) ? g : g.normalizer(pi);
+        RandomElements<E> randomElements = RandomElements.create(normalizer);
+        BigInteger before = pi.order();
+        while (pi.order().equals(before)) {
+          offer(randomElements.next());
+        }
+      }
+    }
+  }
+
+  private static final int RANDOM_ELEMENTS = 64;
+
+  public static <E> SylowSystem<E> sylowSystem(PermGroup<E> g) {
+    return new SylowSystem<E>(g, RandomElements.create(g));
+  }
+
+  private static boolean isPowerOf(BigInteger n, int p) {
+    BigInteger bigP = BigInteger.valueOf(p);
+    while (n.compareTo(BigInteger.ONE) > 0) {
+      BigInteger[] quotRem = n.divideAndRemainder(bigP);
+      if (quotRem[1].signum() != 0) {
+        return false;
+      }
+      n = quotRem[0];
+    }
+    return true;
+  }
+
+  private static <E> boolean allComplete(
+      Collection<PGroupBuilder<E>> builders) {
+    for (PGroupBuilder<E> builder : builders) {
+      if (!builder.isComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private final PermGroup<E> g;
+  private final Factorization order;
+  private final ImmutableMap<Integer, SylowSubgroup<E>> sylowSubgroups;
+  private final RandomElements<E> randomElements;
+
+  private SylowSystem(PermGroup<E> g, RandomElements<E> randomElements) {
+    this.g = g;
+    this.order = Factorization.factorize(g.order());
+    this.randomElements = randomElements;
+    Map<Integer, PGroupBuilder<E>> builders = Maps.newLinkedHashMap();
+    for (Factor factor : order) {
+      builders.put(factor.getPrime(), new PGroupBuilder<E>(factor));
+    }
+    Collection<PGroupBuilder<E>> pending = builders.values();
+    for (int i = 0; i < RANDOM_ELEMENTS && !allComplete(pending); i++) {
+      Permutation<E> sigma = randomElements.next();
+      for (PGroupBuilder<E> builder : pending) {
+        builder.offer(sigma);
+      }
+    }
+    ImmutableMap.Builder<Integer, SylowSubgroup<E>> sylowBuilder =
+        ImmutableMap.builder();
+    for (PGroupBuilder<E> builder : pending) {
+      builder.grow(g);
+      sylowBuilder.put(builder.p, new SylowSubgroup<E>(builder.p, builder.pi,
+          g));
+    }
+    this.sylowSubgroups = sylowBuilder.build();
+  }
+
+  /**
+   * Returns a Hall subgroup for the specified set of primes: a subgroup whose
+   * order is the largest divisor of the order of the group with only those
+   * prime factors. Returns {@code null} if none was found, which never happens
+   * when the group is solvable.
+   *
+   * <p>
+   * The Hall subgroup is built by adding one Sylow subgroup at a time,
+   * conjugated so that it permutes with the subgroup built so far. In a
+   * solvable group, such a conjugate always exists by Hall's theorem. Random
+   * conjugates are tried first, and then, if the group is solvable, each
+   * distinct conjugate once; a group that is not solvable gives up instead.
+   */
+  @Nullable public PermGroup<E> hallSubgroup(Set<Integer> primes) {
+    PermGroup<E> h = Groups.trivial();
+    for (Map.Entry<Integer, SylowSubgroup<E>> entry : sylowSubgroups
+      .entrySet()) {
+      if (primes.contains(entry.getKey())) {
+        h = permutingProduct(h, entry.getValue());
+        if (h == null) {
+          return null;
+        }
+      }
+    }
+    return h;
+  }
+
+  public Factorization orderFactorization() {
+    return order;
+  }
+
+  public PermGroup<E> group() {
+    return g;
+  }
+
+  /**
+   * Returns the Sylow {@code p}-subgroup of this system.
+   *
+   * @throws IllegalArgumentException if {@code p} does not divide the order of
+   *         the group
+   */
+  public SylowSubgroup<E> sylowSubgroup(int p) {
+    SylowSubgroup<E> sylow = sylowSubgroups.get(p);
+    checkArgument(sylow != null, "%s does not divide the order of %s", p, g);
+    return sylow;
+  }
+
+  public Map<Integer, SylowSubgroup<E>> sylowSubgroups() {
+    return sylowSubgroups;
+  }
+
+  @Nullable private PermGroup<E> permutingProduct(PermGroup<E> h,
+      PermGroup<E> sylow) {
+    BigInteger expected = h.order().multiply(sylow.order());
+    PermGroup<E> product = h.extend(sylow);
+    if (product.order().equals(expected)) {
+      return product;
+    }
+    for (int i = 0; i < RANDOM_ELEMENTS; i++) {
+      product = h.extend(conjugate(sylow, randomElements.next()));
+      if (product.order().equals(expected)) {
+        return product;
+      }
+    }
+    if (!g.isSolvable()) {
+      // Hall's theorem promises nothing, so do not try every conjugate
+      return null;
+    }
+    for (Permutation<E> tau : conjugators(sylow)) {
+      product = h.extend(conjugate(sylow, tau));
+      if (product.order().equals(expected)) {
+        return product;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns an element of each left coset of the normalizer of
+   * {@code sylow}, so that conjugating {@code sylow} by them gives each of its
+   * conjugates once. They are found as the orbit of the normalizer under left
+   * multiplication by the generators of the group. The conjugate by an element
+   * of a coset maps the orbits of {@code sylow} to the same sets, so a new
+   * element is only tested against the cosets that agree with it on those.
+   */
+  private List<Permutation<E>> conjugators(PermGroup<E> sylow) {
+    PermGroup<E> normalizer = g.normalizer(sylow);
+    Set<E> domain = Sets.newLinkedHashSet();
+    for (Permutation<E> gamma : g.generators()) {
+      domain.addAll(gamma.domain());
+    }
+    Collection<Set<E>> orbits = Orbits.orbits(sylow.generators(), domain);
+    Map<Set<Set<E>>, List<Permutation<E>>> buckets = Maps.newHashMap();
+    List<Permutation<E>> reps = Lists.newArrayList();
+    reps.add(Permutations.<E> identity());
+    buckets.put(images(reps.get(0), orbits), Lists.newArrayList(reps));
+    for (int i = 0; i < reps.size(); i++) {
+      for (Permutation<E> gamma : g.generators()) {
+        Permutation<E> tau = Permutations.compose(gamma, reps.get(i));
+        Set<Set<E>> key = images(tau, orbits);
+        List<Permutation<E>> bucket = buckets.get(key);
+        if (bucket == null) {
+          buckets.put(key, bucket = Lists.newArrayList());
+        }
+        if (!inCosets(tau, bucket, normalizer)) {
+          bucket.add(tau);
+          reps.add(tau);
+        }
+      }
+    }
+    return reps;
+  }
+
+  private static <E> boolean inCosets(Permutation<E> tau,
+      Collection<Permutation<E>> sigmas, PermGroup<E> normalizer) {
+    for (Permutation<E> sigma : sigmas) {
+      if (normalizer.contains(Permutations.compose(sigma.inverse(), tau))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the images of {@code orbits} under {@code sigma}, as a set, since
+   * the normalizer may permute the orbits.
+   */
+  private static <E> Set<Set<E>> images(Permutation<E> sigma,
+      Collection<Set<E>> orbits) {
+    ImmutableSet.Builder<Set<E>> images = ImmutableSet.builder();
+    for (Set<E> orbit : orbits) {
+      images.add(ImmutableSet.copyOf(sigma.apply(orbit)));
+    }
+    return images.build();
+  }
+
+  private Iterable<Permutation<E>> conjugate(PermGroup<E> h,
+      final Permutation<E> tau) {
+    return ImmutableList.copyOf(Collections2.transform(h.generators(),
+        new Function<Permutation<E>, Permutation<E>>() {
+          @Override public Permutation<E> apply(Permutation<E> sigma) {
+            return Permutations.conjugate(sigma, tau);
+          }
+        }));
+  }
+}
@@ -1,10 +1,13 @@
 package math.algebra.permgroup;
 
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import java.math.BigInteger;
 import java.util.Collection;
@@ -38,6 +41,64 @@ final class SymmetricGroup<E> extends AbstractPermGroup<E> {
     this.size = factorial(this.domain.size());
   }
 
+  /**
+   * The centralizer of {@code sigma} in the symmetric group is the direct
+   * product, over each cycle length, of the wreath product of the cyclic group
+   * of that length with the symmetric group on the cycles of that length.
+   */
+  @Override public PermGroup<E> centralizer(Permutation<E> sigma) {
+    if (!domain.containsAll(sigma.domain())) {
+      return super.centralizer(sigma);
+    }
+    ListMultimap<Integer, List<E>> cycles = cycles(sigma);
+    List<Permutation<E>> generators = Lists.newArrayList();
+    for (Integer length : cycles.keySet()) {
+      List<List<E>> sameLength = cycles.get(length);
+      for (List<E> cycle : sameLength) {
+        if (cycle.size() > 1) {
+          generators.add(Permutations.cycle(cycle));
+        }
+      }
+      if (sameLength.size() > 1) {
+        generators.add(blockPermutation(sameLength.subList(0, 2)));
+      }
+      if (sameLength.size() > 2) {
+        generators.add(blockPermutation(sameLength));
+      }
+    }
+    return generators.isEmpty() ? Groups.<E> trivial() : Groups
+      .generateGroup(generators);
+  }
+
+  /**
+   * Permutations of the domain are conjugate in the symmetric group exactly
+   * when they have the same cycle type, and the conjugating element maps each
+   * cycle of {@code rho} onto a cycle of {@code sigma} of the same length.
+   */
+  @Override @Nullable public Permutation<E> conjugatingElement(
+      Permutation<E> sigma, Permutation<E> rho) {
+    if (!domain.containsAll(sigma.domain())
+        || !domain.containsAll(rho.domain())) {
+      return super.conjugatingElement(sigma, rho);
+    }
+    ListMultimap<Integer, List<E>> sigmaCycles = cycles(sigma);
+    ListMultimap<Integer, List<E>> rhoCycles = cycles(rho);
+    Map<E, E> tau = Maps.newHashMapWithExpectedSize(domain.size());
+    for (Integer length : rhoCycles.keySet()) {
+      List<List<E>> from = rhoCycles.get(length);
+      List<List<E>> to = sigmaCycles.get(length);
+      if (from.size() != to.size()) {
+        return null;
+      }
+      for (int i = 0; i < from.size(); i++) {
+        for (int j = 0; j < length; j++) {
+          tau.put(from.get(i).get(j), to.get(i).get(j));
+        }
+      }
+    }
+    return Permutations.permutation(tau);
+  }
+
   @Override public boolean contains(@Nullable Object o) {
     if (o instanceof Permutation) {
       Permutation<?> sigma = (Permutation<?>) o;
@@ -76,6 +137,10 @@ final class SymmetricGroup<E> extends AbstractPermGroup<E> {
     };
   }
 
+  @Override public BigInteger order() {
+    return size;
+  }
+
   @Override public int size() {
     if (size.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) >= 0) {
       return Integer.MAX_VALUE;
@@ -83,6 +148,39 @@ final class SymmetricGroup<E> extends AbstractPermGroup<E> {
     return size.intValue();
   }
 
+  /**
+   * Returns the cycles of {@code sigma} on the domain, including fixed points,
+   * indexed by length.
+   */
+  private ListMultimap<Integer, List<E>> cycles(Permutation<E> sigma) {
+    ListMultimap<Integer, List<E>> cycles = ArrayListMultimap.create();
+    Set<E> todo = Sets.newLinkedHashSet(domain);
+    while (!todo.isEmpty()) {
+      List<E> cycle = Lists.newArrayList();
+      for (E e = todo.iterator().next(); todo.remove(e); e = sigma.apply(e)) {
+        cycle.add(e);
+      }
+      cycles.put(cycle.size(), cycle);
+    }
+    return cycles;
+  }
+
+  /**
+   * Returns the permutation mapping the {@code j}th point of each cycle to the
+   * {@code j}th point of the next, cyclically.
+   */
+  private static <E> Permutation<E> blockPermutation(List<List<E>> cycles) {
+    Map<E, E> map = Maps.newHashMap();
+    for (int i = 0; i < cycles.size(); i++) {
+      List<E> from = cycles.get(i);
+      List<E> to = cycles.get((i + 1) % cycles.size());
+      for (int j = 0; j < from.size(); j++) {
+        map.put(from.get(j), to.get(j));
+      }
+    }
+    return Permutations.permutation(map);
+  }
+
   private Permutation<E> unrank(BigInteger d) {
     List<E> output = Lists.newArrayList(domain.asList());
     for (int n = output.size(); n > 0; n--) {
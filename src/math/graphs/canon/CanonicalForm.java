@@ -0,0 +1,72 @@
+package math.graphs.canon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+
+import math.algebra.permgroup.Groups;
+import math.algebra.permgroup.PermGroup;
+import math.structures.permutation.Permutation;
+
+/**
+ * The result of canonically labelling a graph: the canonical labelling, the
+ * certificate of the graph it labels, and generators of the automorphism group
+ * found along the way.
+ */
+public final class CanonicalForm<V> {
+  private final ImmutableList<V> order;
+  private final ImmutableMap<V, Integer> labelling;
+  private final Certificate certificate;
+  private final ImmutableList<Permutation<V>> generators;
+  private PermGroup<V> automorphismGroup;
+
+  CanonicalForm(List<V> order, Certificate certificate,
+      List<Permutation<V>> generators) {
+    this.order = ImmutableList.copyOf(order);
+    ImmutableMap.Builder<V, Integer> builder = ImmutableMap.builder();
+    for (int i = 0; i < order.size(); i++) {
+      builder.put(order.get(i), i);
+    }
+    this.labelling = builder.build();
+    this.certificate = certificate;
+    this.generators = ImmutableList.copyOf(generators);
+  }
+
+  /**
+   * Returns the vertices in canonical order.
+   */
+  public List<V> getOrder() {
+    return order;
+  }
+
+  /**
+   * Returns the canonical label of each vertex, from {@code 0} to
+   * {@code n - 1}. Relabelling isomorphic graphs this way gives identical
+   * graphs.
+   */
+  public Map<V, Integer> getLabelling() {
+    return labelling;
+  }
+
+  public Certificate getCertificate() {
+    return certificate;
+  }
+
+  /**
+   * Returns generators of the color-preserving automorphism group.
+   */
+  public List<Permutation<V>> getGenerators() {
+    return generators;
+  }
+
+  public synchronized PermGroup<V> getAutomorphismGroup() {
+    if (automorphismGroup == null) {
+      automorphismGroup =
+          generators.isEmpty() ? Groups.<V> trivial() : Groups
+            .generateGroup(generators);
+    }
+    return automorphismGroup;
+  }
+}
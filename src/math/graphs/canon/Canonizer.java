@@ -0,0 +1,130 @@
+package math.graphs.canon;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+import math.algebra.permgroup.SearchAbortedException;
+import math.algebra.permgroup.SearchContext;
+import math.graphs.iso.IntGraph;
+import math.structures.permutation.Permutation;
+import math.structures.permutation.Permutations;
+
+import org.jgrapht.graph.SimpleGraph;
+
+/**
+ * Canonical labelling of colored graphs by individualization and refinement,
+ * in the style of nauty and bliss.
+ *
+ * <p>
+ * Unlike an isomorphism test between two graphs, a canonical form is computed
+ * once per graph: isomorphic graphs have equal {@linkplain Certificate
+ * certificates}, so many graphs can be classified by hashing. Colors must be
+ * comparable, since the canonical order of the vertices respects the order of
+ * their colors.
+ */
+public final class Canonizer {
+  public static <V, E> CanonicalForm<V> canonicalForm(SimpleGraph<V, E> g) {
+    return canonicalForm(g, Functions.constant(0));
+  }
+
+  public static <V, E, C extends Comparable<? super C>> CanonicalForm<V>
+      canonicalForm(SimpleGraph<V, E> g,
+          Function<? super V, ? extends C> coloring) {
+    return canonicalForm(g, coloring, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the canonical form of {@code g}, whose vertices are colored by
+   * {@code coloring}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V, E, C extends Comparable<? super C>> CanonicalForm<V>
+      canonicalForm(SimpleGraph<V, E> g,
+          Function<? super V, ? extends C> coloring, SearchContext context) {
+    List<V> vertices = ImmutableList.copyOf(g.vertexSet());
+    int n = vertices.size();
+    SortedSet<C> palette = Sets.newTreeSet();
+    for (V v : vertices) {
+      palette.add(coloring.apply(v));
+    }
+    Map<C, Integer> ranks = Maps.newHashMapWithExpectedSize(palette.size());
+    for (C c : palette) {
+      ranks.put(c, ranks.size());
+    }
+    int[] colors = new int[n];
+    for (int i = 0; i < n; i++) {
+      colors[i] = ranks.get(coloring.apply(vertices.get(i)));
+    }
+
+    SearchTree tree =
+        new SearchTree(IntGraph.of(g, vertices), colors, context);
+    tree.search(OrderedPartition.create(colors));
+    List<V> order = Lists.newArrayListWithCapacity(n);
+    for (int i : tree.canonicalLab()) {
+      order.add(vertices.get(i));
+    }
+    List<Permutation<V>> generators = Lists.newArrayList();
+    for (int[] gamma : tree.generators()) {
+      Map<V, V> map = Maps.newHashMap();
+      for (int i = 0; i < n; i++) {
+        if (gamma[i] != i) {
+          map.put(vertices.get(i), vertices.get(gamma[i]));
+        }
+      }
+      generators.add(Permutations.permutation(map));
+    }
+    return new CanonicalForm<V>(order, new Certificate(
+      ImmutableList.copyOf(palette), n, tree.canonicalCode()), generators);
+  }
+
+  /**
+   * Returns the certificate of {@code g}, without the labelling or the
+   * automorphisms.
+   */
+  static Certificate certificate(IntGraph g) {
+    int n = g.vertexCount();
+    int[] colors = new int[n];
+    SearchTree tree = new SearchTree(g, colors, SearchContext.unbounded());
+    tree.search(OrderedPartition.create(colors));
+    List<Integer> palette =
+        (n == 0) ? ImmutableList.<Integer> of() : ImmutableList.of(0);
+    return new Certificate(palette, n, tree.canonicalCode());
+  }
+
+  /**
+   * Returns {@code g} relabelled canonically, so that graphs are isomorphic if
+   * and only if their canonical graphs are equal, as are their graph6 lines.
+   */
+  public static IntGraph canonicalGraph(IntGraph g) {
+    return canonicalGraph(g, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns {@code g} relabelled canonically.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static IntGraph canonicalGraph(IntGraph g, SearchContext context) {
+    int[] colors = new int[g.vertexCount()];
+    SearchTree tree = new SearchTree(g, colors, context);
+    tree.search(OrderedPartition.create(colors));
+    int[] lab = tree.canonicalLab();
+    int[] images = new int[lab.length];
+    for (int i = 0; i < lab.length; i++) {
+      images[lab[i]] = i;
+    }
+    return g.relabel(images);
+  }
+
+  private Canonizer() {
+  }
+}
@@ -0,0 +1,73 @@
+package math.graphs.canon;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * A complete isomorphism invariant of a colored graph: two graphs have equal
+ * certificates if and only if there is a color-preserving isomorphism between
+ * them.
+ *
+ * <p>
+ * A certificate lists the distinct colors in order, the color of each vertex
+ * in canonical order, as an index into that list, and the edges between the
+ * canonical positions.
+ */
+public final class Certificate {
+  private final ImmutableList<Object> colors;
+  private final int vertexCount;
+  private final long[] code;
+  private final int hashCode;
+
+  Certificate(List<?> colors, int vertexCount, long[] code) {
+    this.colors = ImmutableList.copyOf(colors);
+    this.vertexCount = vertexCount;
+    this.code = code;
+    this.hashCode =
+        31 * (31 * this.colors.hashCode() + vertexCount)
+            + Arrays.hashCode(code);
+  }
+
+  /**
+   * Returns the distinct vertex colors, in increasing order.
+   */
+  public List<Object> getColors() {
+    return colors;
+  }
+
+  /**
+   * Returns the number of vertices of the graph.
+   */
+  public int vertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * Returns the number of edges of the graph.
+   */
+  public int edgeCount() {
+    return code.length - vertexCount;
+  }
+
+  @Override public boolean equals(@Nullable Object obj) {
+    if (obj instanceof Certificate) {
+      Certificate other = (Certificate) obj;
+      // edges are coded by the vertex count, so it must agree first
+      return hashCode == other.hashCode && vertexCount == other.vertexCount
+          && Arrays.equals(code, other.code) && colors.equals(other.colors);
+    }
+    return false;
+  }
+
+  @Override public int hashCode() {
+    return hashCode;
+  }
+
+  @Override public String toString() {
+    return colors + Arrays.toString(code);
+  }
+}
@@ -0,0 +1,337 @@
+package math.graphs.canon;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.Nullable;
+
+import math.graphs.iso.IntGraph;
+
+import org.jgrapht.graph.SimpleGraph;
+
+/**
+ * A list of graphs, grouped into isomorphism classes.
+ *
+ * <p>
+ * Each graph is first hashed by cheap invariants: its order and size, its
+ * degree sequence, and the cell sizes and trace of its color refinement. A
+ * graph whose invariants no other graph shares is alone in its class, so only
+ * the graphs in shared buckets are canonically labelled, and a bucket splits
+ * into classes by {@linkplain Certificate certificate}. Both passes treat every
+ * graph independently, so they can be split across a {@link ForkJoinPool}.
+ * Graphs are processed in batches, and the first graph of a bucket is only
+ * labelled once a later batch adds to the bucket.
+ */
+public final class IsomorphismClasses<G> {
+  /**
+   * The number of graphs below which a parallel pass does not split a range
+   * further.
+   */
+  private static final int GRAIN = 64;
+
+  /**
+   * The number of graphs read from an iterable before they are processed.
+   */
+  private static final int BATCH = 4096;
+
+  public static <G extends SimpleGraph<?, ?>> IsomorphismClasses<G> classify(
+      List<G> graphs) {
+    return classify(graphs, null);
+  }
+
+  /**
+   * Groups {@code graphs} into isomorphism classes, processing them in
+   * parallel on {@code pool} if it is not {@code null}.
+   */
+  public static <G extends SimpleGraph<?, ?>> IsomorphismClasses<G> classify(
+      List<G> graphs, @Nullable ForkJoinPool pool) {
+    return classify(graphs, new Function<G, IntGraph>() {
+      @Override public IntGraph apply(G g) {
+        SimpleGraph<?, ?> graph = g;
+        return intGraph(graph);
+      }
+    }, pool);
+  }
+
+  public static IsomorphismClasses<IntGraph> classify(
+      Iterable<IntGraph> graphs) {
+    return classify(graphs, null);
+  }
+
+  /**
+   * Groups {@code graphs}, such as those read by a
+   * {@link math.graphs.io.Graph6Reader}, into isomorphism classes. The graphs
+   * are read {@value #BATCH} at a time, and each batch is processed in
+   * parallel on {@code pool} if it is not {@code null}. Only the
+   * representatives of the classes are kept, so {@code graphs} may be
+   * streamed from a file far larger than memory.
+   */
+  public static IsomorphismClasses<IntGraph> classify(
+      Iterable<IntGraph> graphs, @Nullable ForkJoinPool pool) {
+    return classify(graphs, Functions.<IntGraph> identity(), pool);
+  }
+
+  /**
+   * A set of graphs sharing their invariants. Until a second graph joins, the
+   * first one is kept without a certificate, and it is only canonically
+   * labelled then.
+   */
+  private static final class Bucket {
+    @Nullable private IntGraph first;
+    private final int firstClass;
+    @Nullable private Certificate certificate;
+    @Nullable private Map<Certificate, Integer> classes;
+
+    Bucket(IntGraph first, int firstClass) {
+      this.first = first;
+      this.firstClass = firstClass;
+    }
+  }
+
+  private static <G> IsomorphismClasses<G> classify(Iterable<G> graphs,
+      final Function<? super G, IntGraph> toIntGraph,
+      @Nullable ForkJoinPool pool) {
+    Map<Invariant, Bucket> buckets = Maps.newHashMap();
+    ImmutableList.Builder<G> representatives = ImmutableList.builder();
+    List<List<Integer>> members = Lists.newArrayList();
+    int[] classOf = new int[0];
+    int count = 0;
+    Iterator<G> iterator = graphs.iterator();
+    while (iterator.hasNext()) {
+      final List<G> batch = Lists.newArrayListWithCapacity(BATCH);
+      while (batch.size() < BATCH && iterator.hasNext()) {
+        batch.add(iterator.next());
+      }
+      int size = batch.size();
+      final IntGraph[] intGraphs = new IntGraph[size];
+      final Invariant[] invariants = new Invariant[size];
+      run(pool, size, new Batch() {
+        @Override void process(int i) {
+          intGraphs[i] = toIntGraph.apply(batch.get(i));
+          invariants[i] = invariant(intGraphs[i]);
+        }
+      });
+
+      // a graph is labelled once its bucket has another graph, and then so is
+      // the first graph of the bucket
+      final List<IntGraph> toLabel = Lists.newArrayList();
+      List<Bucket> labelFirsts = Lists.newArrayList();
+      int[] labelIndex = new int[size];
+      Arrays.fill(labelIndex, -1);
+      Map<Invariant, Integer> firstInBatch = Maps.newHashMap();
+      for (int i = 0; i < size; i++) {
+        Bucket bucket = buckets.get(invariants[i]);
+        Integer j = firstInBatch.get(invariants[i]);
+        if (bucket == null && j == null) {
+          firstInBatch.put(invariants[i], i);
+          continue;
+        }
+        if (bucket != null && bucket.first != null
+            && bucket.certificate == null && !labelFirsts.contains(bucket)) {
+          labelFirsts.add(bucket);
+        }
+        if (j != null && labelIndex[j] < 0) {
+          labelIndex[j] = toLabel.size();
+          toLabel.add(intGraphs[j]);
+        }
+        labelIndex[i] = toLabel.size();
+        toLabel.add(intGraphs[i]);
+      }
+      int nLabelled = toLabel.size();
+      for (Bucket bucket : labelFirsts) {
+        toLabel.add(bucket.first);
+      }
+      final Certificate[] certificates = new Certificate[toLabel.size()];
+      run(pool, toLabel.size(), new Batch() {
+        @Override void process(int k) {
+          certificates[k] = Canonizer.certificate(toLabel.get(k));
+        }
+      });
+      for (int k = 0; k < labelFirsts.size(); k++) {
+        labelFirsts.get(k).certificate = certificates[nLabelled + k];
+      }
+
+      // the first graph of each class leads the class
+      classOf = Arrays.copyOf(classOf, count + size);
+      for (int i = 0; i < size; i++) {
+        Certificate certificate =
+            (labelIndex[i] < 0) ? null : certificates[labelIndex[i]];
+        Bucket bucket = buckets.get(invariants[i]);
+        Integer c;
+        if (bucket == null) {
+          c = members.size();
+          bucket = new Bucket(intGraphs[i], c);
+          bucket.certificate = certificate;
+          buckets.put(invariants[i], bucket);
+        } else {
+          if (bucket.classes == null) {
+            bucket.classes = Maps.newHashMap();
+            bucket.classes.put(bucket.certificate, bucket.firstClass);
+            bucket.first = null;
+          }
+          c = bucket.classes.get(certificate);
+          if (c == null) {
+            bucket.classes.put(certificate, c = members.size());
+          }
+        }
+        if (c == members.size()) {
+          representatives.add(batch.get(i));
+          members.add(Lists.<Integer> newArrayList());
+        }
+        classOf[count + i] = c;
+        members.get(c).add(count + i);
+      }
+      count += size;
+    }
+    ImmutableList.Builder<List<Integer>> memberLists = ImmutableList.builder();
+    for (List<Integer> m : members) {
+      memberLists.add(ImmutableList.copyOf(m));
+    }
+    return new IsomorphismClasses<G>(representatives.build(), classOf,
+      memberLists.build());
+  }
+
+  private static <V, E> IntGraph intGraph(SimpleGraph<V, E> g) {
+    return IntGraph.of(g, ImmutableList.copyOf(g.vertexSet()));
+  }
+
+  /**
+   * Returns the invariants of {@code g} which are compared before its
+   * certificate.
+   */
+  private static Invariant invariant(IntGraph graph) {
+    int n = graph.vertexCount();
+    OrderedPartition p = OrderedPartition.create(new int[n]);
+    long trace = p.refine(graph, p.cellStarts());
+    int[] starts = p.cellStarts();
+    long[] values = new long[3 + n + starts.length];
+    values[0] = n;
+    values[1] = graph.edgeCount();
+    values[2] = trace;
+    int[] degrees = new int[n];
+    for (int i = 0; i < n; i++) {
+      degrees[i] = graph.degree(i);
+    }
+    Arrays.sort(degrees);
+    for (int i = 0; i < n; i++) {
+      values[3 + i] = degrees[i];
+    }
+    for (int i = 0; i < starts.length; i++) {
+      int end = (i + 1 < starts.length) ? starts[i + 1] : n;
+      values[3 + n + i] = end - starts[i];
+    }
+    return new Invariant(values);
+  }
+
+  private static final class Invariant {
+    private final long[] values;
+    private final int hashCode;
+
+    Invariant(long[] values) {
+      this.values = values;
+      this.hashCode = Arrays.hashCode(values);
+    }
+
+    @Override public boolean equals(@Nullable Object obj) {
+      return obj instanceof Invariant && hashCode == obj.hashCode()
+          && Arrays.equals(values, ((Invariant) obj).values);
+    }
+
+    @Override public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * An operation on each of the indices {@code 0, ..., size - 1}.
+   */
+  private abstract static class Batch {
+    abstract void process(int i);
+  }
+
+  private static final class Range extends RecursiveAction {
+    private static final long serialVersionUID = 0;
+
+    private final Batch batch;
+    private final int from;
+    private final int to;
+
+    Range(Batch batch, int from, int to) {
+      this.batch = batch;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected void compute() {
+      if (to - from <= GRAIN) {
+        for (int i = from; i < to; i++) {
+          batch.process(i);
+        }
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Range(batch, from, mid), new Range(batch, mid, to));
+      }
+    }
+  }
+
+  private static void run(@Nullable ForkJoinPool pool, int size, Batch batch) {
+    if (pool == null) {
+      for (int i = 0; i < size; i++) {
+        batch.process(i);
+      }
+    } else {
+      pool.invoke(new Range(batch, 0, size));
+    }
+  }
+
+  private final List<G> representatives;
+  private final int[] classOf;
+  private final List<List<Integer>> members;
+
+  private IsomorphismClasses(List<G> representatives, int[] classOf,
+      List<List<Integer>> members) {
+    this.representatives = representatives;
+    this.classOf = classOf;
+    this.members = members;
+  }
+
+  /**
+   * Returns the number of isomorphism classes.
+   */
+  public int size() {
+    return representatives.size();
+  }
+
+  /**
+   * Returns the first graph of each class, with the classes numbered in order
+   * of their first graphs.
+   */
+  public List<G> representatives() {
+    return representatives;
+  }
+
+  /**
+   * Returns the number of the class of the graph at {@code index} in the
+   * classified list.
+   */
+  public int classOf(int index) {
+    return classOf[index];
+  }
+
+  /**
+   * Returns the indices of the graphs in class {@code c}, in increasing order.
+   */
+  public List<Integer> members(int c) {
+    return members.get(c);
+  }
+}
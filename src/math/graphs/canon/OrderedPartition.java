@@ -0,0 +1,262 @@
+package math.graphs.canon;
+
+import java.util.Arrays;
+
+import math.graphs.iso.IntGraph;
+
+/**
+ * An ordered partition of the vertices {@code 0, ..., n - 1} of a graph, as in
+ * nauty: the vertices are listed in {@code lab}, and each cell is a contiguous
+ * range of it, identified by the position where it starts.
+ *
+ * <p>
+ * Refinement only makes decisions from the positions of cells and the
+ * neighbor counts of vertices, never from the vertices themselves, so
+ * isomorphic graphs refine to partitions with the same cell structure, and
+ * the trace of the refinement is a node invariant.
+ */
+final class OrderedPartition {
+  /**
+   * Returns the partition whose cells are the vertices of each color, in order
+   * of color.
+   */
+  static OrderedPartition create(int[] colors) {
+    int n = colors.length;
+    long[] keyed = new long[n];
+    for (int v = 0; v < n; v++) {
+      keyed[v] = ((long) colors[v] << 32) | v;
+    }
+    Arrays.sort(keyed);
+    OrderedPartition p = new OrderedPartition(n);
+    int start = 0;
+    for (int i = 0; i < n; i++) {
+      int v = (int) keyed[i];
+      if (i > 0 && (keyed[i] >>> 32) != (keyed[i - 1] >>> 32)) {
+        p.cellEnd[start] = i;
+        start = i;
+        p.cells++;
+      }
+      p.lab[i] = v;
+      p.pos[v] = i;
+      p.cellOf[v] = start;
+    }
+    if (n > 0) {
+      p.cellEnd[start] = n;
+      p.cells++;
+    }
+    return p;
+  }
+
+  private static long mix(long trace, long x) {
+    return (trace ^ x) * 0x100000001B3L;
+  }
+
+  private final int[] lab;
+  private final int[] pos;
+  private final int[] cellOf;
+  private final int[] cellEnd;
+  private int cells;
+
+  private OrderedPartition(int n) {
+    this.lab = new int[n];
+    this.pos = new int[n];
+    this.cellOf = new int[n];
+    this.cellEnd = new int[n];
+  }
+
+  private OrderedPartition(OrderedPartition p) {
+    this.lab = p.lab.clone();
+    this.pos = p.pos.clone();
+    this.cellOf = p.cellOf.clone();
+    this.cellEnd = p.cellEnd.clone();
+    this.cells = p.cells;
+  }
+
+  OrderedPartition copy() {
+    return new OrderedPartition(this);
+  }
+
+  int size() {
+    return lab.length;
+  }
+
+  boolean isDiscrete() {
+    return cells == lab.length;
+  }
+
+  /**
+   * Returns the vertices in order, which is a labelling once the partition is
+   * discrete.
+   */
+  int[] lab() {
+    return lab;
+  }
+
+  int positionOf(int v) {
+    return pos[v];
+  }
+
+  /**
+   * Returns the positions where the cells start, in order.
+   */
+  int[] cellStarts() {
+    int[] starts = new int[cells];
+    int i = 0;
+    for (int start = 0; start < lab.length; start = cellEnd[start]) {
+      starts[i++] = start;
+    }
+    return starts;
+  }
+
+  /**
+   * Returns the vertices of the first smallest nonsingleton cell, or
+   * {@code null} if the partition is discrete.
+   */
+  int[] targetCell() {
+    int best = -1;
+    for (int start = 0; start < lab.length; start = cellEnd[start]) {
+      int size = cellEnd[start] - start;
+      if (size > 1 && (best < 0 || size < cellEnd[best] - best)) {
+        best = start;
+      }
+    }
+    return (best < 0) ? null : Arrays.copyOfRange(lab, best, cellEnd[best]);
+  }
+
+  /**
+   * Splits {@code v} off the front of its cell, and returns the position of
+   * its new singleton cell.
+   */
+  int individualize(int v) {
+    int c = cellOf[v];
+    int end = cellEnd[c];
+    if (end - c == 1) {
+      return c;
+    }
+    int u = lab[c];
+    lab[c] = v;
+    lab[pos[v]] = u;
+    pos[u] = pos[v];
+    pos[v] = c;
+    cellEnd[c] = c + 1;
+    cellEnd[c + 1] = end;
+    for (int p = c + 1; p < end; p++) {
+      cellOf[lab[p]] = c + 1;
+    }
+    cells++;
+    return c;
+  }
+
+  /**
+   * Refines this partition to an equitable one, given that it is already
+   * equitable with respect to every cell but those starting at the positions
+   * in {@code splitters}, and returns the trace of the refinement.
+   *
+   * <p>
+   * Cells are split by neighbor counts into a splitter, with the pieces in
+   * increasing order of count. When a cell that is not waiting to be used as
+   * a splitter splits, every piece but the first largest is queued.
+   */
+  long refine(IntGraph g, int... splitters) {
+    int n = lab.length;
+    long trace = 0;
+    int[] queue = new int[n];
+    boolean[] queued = new boolean[n];
+    int head = 0;
+    int queueSize = 0;
+    for (int s : splitters) {
+      queue[(head + queueSize++) % n] = s;
+      queued[s] = true;
+    }
+    int[] count = new int[n];
+    int[] marked = new int[n];
+    int[] touched = new int[n];
+    int[] touchedCells = new int[n];
+    int[] splitter = new int[n];
+    long[] keys = new long[n];
+    while (queueSize > 0) {
+      int w = queue[head];
+      head = (head + 1) % n;
+      queueSize--;
+      queued[w] = false;
+      int size = cellEnd[w] - w;
+      System.arraycopy(lab, w, splitter, 0, size);
+      int nTouched = 0;
+      int nTouchedCells = 0;
+      for (int i = 0; i < size; i++) {
+        int v = splitter[i];
+        for (int j = 0; j < g.degree(v); j++) {
+          int u = g.neighbor(v, j);
+          if (count[u]++ == 0) {
+            touched[nTouched++] = u;
+            if (marked[cellOf[u]]++ == 0) {
+              touchedCells[nTouchedCells++] = cellOf[u];
+            }
+          }
+        }
+      }
+      Arrays.sort(touchedCells, 0, nTouchedCells);
+      trace = mix(trace, w);
+      for (int k = 0; k < nTouchedCells; k++) {
+        int c = touchedCells[k];
+        int end = cellEnd[c];
+        boolean uniform = marked[c] == end - c;
+        marked[c] = 0;
+        for (int p = c + 1; uniform && p < end; p++) {
+          uniform = count[lab[p]] == count[lab[c]];
+        }
+        if (uniform) {
+          trace = mix(mix(trace, c), count[lab[c]]);
+          continue;
+        }
+        for (int p = c; p < end; p++) {
+          keys[p - c] = ((long) count[lab[p]] << 32) | lab[p];
+        }
+        Arrays.sort(keys, 0, end - c);
+        for (int p = c; p < end; p++) {
+          int v = (int) keys[p - c];
+          lab[p] = v;
+          pos[v] = p;
+        }
+        boolean wasQueued = queued[c];
+        int largest = c;
+        int pieceStart = c;
+        while (pieceStart < end) {
+          int pieceCount = count[lab[pieceStart]];
+          int pieceEnd = pieceStart + 1;
+          while (pieceEnd < end && count[lab[pieceEnd]] == pieceCount) {
+            pieceEnd++;
+          }
+          cellEnd[pieceStart] = pieceEnd;
+          if (pieceStart > c) {
+            cells++;
+            for (int p = pieceStart; p < pieceEnd; p++) {
+              cellOf[lab[p]] = pieceStart;
+            }
+            if (wasQueued) {
+              queue[(head + queueSize++) % n] = pieceStart;
+              queued[pieceStart] = true;
+            }
+          }
+          if (pieceEnd - pieceStart > cellEnd[largest] - largest) {
+            largest = pieceStart;
+          }
+          trace = mix(mix(mix(trace, pieceStart), pieceCount), pieceEnd);
+          pieceStart = pieceEnd;
+        }
+        if (!wasQueued) {
+          for (int p = c; p < end; p = cellEnd[p]) {
+            if (p != largest) {
+              queue[(head + queueSize++) % n] = p;
+              queued[p] = true;
+            }
+          }
+        }
+      }
+      for (int i = 0; i < nTouched; i++) {
+        count[touched[i]] = 0;
+      }
+    }
+    return mix(trace, cells);
+  }
+}
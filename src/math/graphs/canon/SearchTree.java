@@ -0,0 +1,271 @@
+package math.graphs.canon;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+
+import math.algebra.permgroup.SearchContext;
+import math.graphs.iso.IntGraph;
+
+/**
+ * The individualization-refinement search tree of a graph on the vertices
+ * {@code 0, ..., n - 1}, in the style of nauty and bliss.
+ *
+ * <p>
+ * Every node is an equitable ordered partition, and its children individualize
+ * each vertex of its target cell in turn. Leaves are discrete partitions, and
+ * so labellings; they are ordered by the traces of the refinements along their
+ * paths, then by the graphs they label, and the canonical labelling is the
+ * greatest leaf. The search is pruned in three ways:
+ * <ul>
+ * <li>a node whose trace so far is less than the best leaf's is skipped, since
+ * every leaf below it is less;
+ * <li>when a leaf labels the same graph as the first or the best leaf, the two
+ * labellings differ by an automorphism, which maps the subtree containing the
+ * new leaf onto one already searched, so the search returns to their common
+ * ancestor;
+ * <li>children in the same orbit as an earlier child, under the automorphisms
+ * found so far which fix the node, are skipped.
+ * </ul>
+ * The automorphisms found generate the automorphism group.
+ */
+final class SearchTree {
+  private final int n;
+  private final IntGraph g;
+  private final int[] colors;
+  private final SearchContext context;
+
+  private final int[] path;
+  private final long[] traces;
+  private final List<int[]> generators = Lists.newArrayList();
+
+  private int[] firstPath;
+  private long[] firstTraces;
+  private int[] firstLab;
+  private long[] firstCode;
+
+  private int[] bestPath;
+  private long[] bestTraces;
+  private int[] bestLab;
+  private long[] bestCode;
+
+  SearchTree(IntGraph g, int[] colors, SearchContext context) {
+    this.n = colors.length;
+    this.g = g;
+    this.colors = colors;
+    this.context = context;
+    this.path = new int[n];
+    this.traces = new long[n + 1];
+  }
+
+  /**
+   * Searches the tree below the unrefined partition {@code root}.
+   */
+  void search(OrderedPartition root) {
+    traces[0] = root.refine(g, root.cellStarts());
+    search(root, 0);
+  }
+
+  /**
+   * Returns the vertices of the greatest leaf, in canonical order.
+   */
+  int[] canonicalLab() {
+    return bestLab;
+  }
+
+  /**
+   * Returns the colors and edges of the graph labelled by the greatest leaf.
+   */
+  long[] canonicalCode() {
+    return bestCode;
+  }
+
+  /**
+   * Returns the automorphisms found, as arrays of images.
+   */
+  List<int[]> generators() {
+    return generators;
+  }
+
+  /**
+   * Searches below {@code p}, at depth {@code level}, and returns the depth of
+   * the ancestor at which the search should continue.
+   */
+  private int search(OrderedPartition p, int level) {
+    context.step();
+    if (bestTraces != null && compareTraces(level, bestTraces) < 0) {
+      return level - 1;
+    }
+    if (p.isDiscrete()) {
+      return leaf(p, level);
+    }
+    int[] cell = p.targetCell();
+    Arrays.sort(cell);
+    int[] explored = new int[cell.length];
+    int nExplored = 0;
+    for (int w : cell) {
+      if (nExplored > 0 && inExploredOrbit(w, level, explored, nExplored)) {
+        continue;
+      }
+      explored[nExplored++] = w;
+      OrderedPartition child = p.copy();
+      int singleton = child.individualize(w);
+      path[level] = w;
+      traces[level + 1] = child.refine(g, singleton);
+      int jump = search(child, level + 1);
+      if (jump < level) {
+        return jump;
+      }
+    }
+    return level - 1;
+  }
+
+  private int leaf(OrderedPartition p, int level) {
+    int[] lab = p.lab().clone();
+    long[] code = code(p);
+    if (firstLab == null) {
+      firstPath = bestPath = Arrays.copyOf(path, level);
+      firstTraces = bestTraces = Arrays.copyOf(traces, level + 1);
+      firstLab = bestLab = lab;
+      firstCode = bestCode = code;
+      return level - 1;
+    }
+    if (compareTraces(level, firstTraces) == 0
+        && Arrays.equals(code, firstCode)) {
+      generators.add(automorphism(firstLab, lab));
+      return commonPrefix(firstPath, level);
+    }
+    int cmp = compareTraces(level, bestTraces);
+    if (cmp == 0) {
+      cmp = compare(code, bestCode);
+      if (cmp == 0) {
+        generators.add(automorphism(bestLab, lab));
+        return commonPrefix(bestPath, level);
+      }
+    }
+    if (cmp > 0) {
+      bestPath = Arrays.copyOf(path, level);
+      bestTraces = Arrays.copyOf(traces, level + 1);
+      bestLab = lab;
+      bestCode = code;
+    }
+    return level - 1;
+  }
+
+  /**
+   * Compares the traces of the current path down to depth {@code level} with
+   * those of a leaf, treating a path which is a proper prefix as smaller.
+   */
+  private int compareTraces(int level, long[] leafTraces) {
+    for (int i = 0; i <= level; i++) {
+      if (i == leafTraces.length) {
+        return 1;
+      } else if (traces[i] != leafTraces[i]) {
+        return (traces[i] < leafTraces[i]) ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private static int compare(long[] a, long[] b) {
+    for (int i = 0; i < a.length && i < b.length; i++) {
+      if (a[i] != b[i]) {
+        return (a[i] < b[i]) ? -1 : 1;
+      }
+    }
+    return a.length - b.length;
+  }
+
+  private int commonPrefix(int[] leafPath, int level) {
+    int d = 0;
+    while (d < level && d < leafPath.length && path[d] == leafPath[d]) {
+      d++;
+    }
+    return d;
+  }
+
+  /**
+   * Returns the permutation mapping the labelling {@code from} to
+   * {@code to}.
+   */
+  private int[] automorphism(int[] from, int[] to) {
+    int[] gamma = new int[n];
+    for (int i = 0; i < n; i++) {
+      gamma[from[i]] = to[i];
+    }
+    return gamma;
+  }
+
+  /**
+   * Returns the colors of the vertices in the order of {@code p}, followed by
+   * its edges, each encoded as {@code i * n + j} for the positions
+   * {@code i < j} of its ends, in increasing order.
+   */
+  private long[] code(OrderedPartition p) {
+    int[] lab = p.lab();
+    long[] code = new long[n + g.edgeCount()];
+    int k = n;
+    for (int i = 0; i < n; i++) {
+      int v = lab[i];
+      code[i] = colors[v];
+      for (int j = 0; j < g.degree(v); j++) {
+        int position = p.positionOf(g.neighbor(v, j));
+        if (i < position) {
+          code[k++] = (long) i * n + position;
+        }
+      }
+    }
+    Arrays.sort(code, n, k);
+    return code;
+  }
+
+  /**
+   * Returns whether {@code w} is in the orbit of one of the explored children,
+   * under the automorphisms found so far which fix every vertex on the path to
+   * the node at depth {@code level}.
+   */
+  private boolean inExploredOrbit(int w, int level, int[] explored,
+      int nExplored) {
+    int[] parent = null;
+    for (int[] gamma : generators) {
+      boolean fixes = true;
+      for (int i = 0; fixes && i < level; i++) {
+        fixes = gamma[path[i]] == path[i];
+      }
+      if (!fixes) {
+        continue;
+      }
+      if (parent == null) {
+        parent = new int[n];
+        for (int v = 0; v < n; v++) {
+          parent[v] = v;
+        }
+      }
+      for (int v = 0; v < n; v++) {
+        int a = find(parent, v);
+        int b = find(parent, gamma[v]);
+        if (a != b) {
+          parent[Math.max(a, b)] = Math.min(a, b);
+        }
+      }
+    }
+    if (parent == null) {
+      return false;
+    }
+    int root = find(parent, w);
+    for (int i = 0; i < nExplored; i++) {
+      if (find(parent, explored[i]) == root) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int find(int[] parent, int v) {
+    while (parent[v] != v) {
+      v = parent[v] = parent[parent[v]];
+    }
+    return v;
+  }
+}
@@ -0,0 +1,288 @@
+package math.graphs.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import math.graphs.iso.IntGraph;
+
+/**
+ * The graph6 and sparse6 formats of McKay's nauty, which encode a simple
+ * graph as one line of printable ASCII.
+ *
+ * <p>
+ * Both formats start with the number of vertices {@code n}, in one, four or
+ * eight bytes. graph6 continues with the upper triangle of the adjacency
+ * matrix, column by column, six bits to a byte; sparse6 starts with a colon
+ * and continues with a list of edges, each taking about {@code log n} bits, so
+ * it is shorter for sparse graphs. Every byte holds six bits plus 63.
+ */
+public final class Graph6 {
+  private static final String GRAPH6_HEADER = ">>graph6<<";
+  private static final String SPARSE6_HEADER = ">>sparse6<<";
+
+  /**
+   * Decodes one graph6 or sparse6 line, optionally preceded by a
+   * {@code >>graph6<<} or {@code >>sparse6<<} header.
+   *
+   * @throws IllegalArgumentException if the line is malformed, or describes a
+   *         graph with loops or multiple edges
+   */
+  public static IntGraph decode(String line) {
+    byte[] bytes = new byte[line.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) line.charAt(i);
+    }
+    return decode(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Decodes the line {@code bytes[from]} up to {@code bytes[to]}, without its
+   * line terminator.
+   */
+  static IntGraph decode(byte[] bytes, int from, int to) {
+    for (String header : new String[] {GRAPH6_HEADER, SPARSE6_HEADER}) {
+      if (startsWith(bytes, from, to, header)) {
+        from += header.length();
+      }
+    }
+    checkArgument(from < to, "empty line");
+    if (bytes[from] == ':') {
+      return decodeSparse6(bytes, from + 1, to);
+    }
+    checkArgument(bytes[from] != ';', "incremental sparse6 is not supported");
+    return decodeGraph6(bytes, from, to);
+  }
+
+  private static boolean startsWith(byte[] bytes, int from, int to,
+      String prefix) {
+    if (to - from < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (bytes[from + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static IntGraph decodeGraph6(byte[] bytes, int from, int to) {
+    BitReader in = new BitReader(bytes, from, to);
+    int n = in.readSize();
+    int[] endpoints = new int[16];
+    int k = 0;
+    for (int j = 1; j < n; j++) {
+      for (int i = 0; i < j; i++) {
+        if (in.read(1) == 1) {
+          if (k == endpoints.length) {
+            endpoints = Arrays.copyOf(endpoints, 2 * k);
+          }
+          endpoints[k++] = i;
+          endpoints[k++] = j;
+        }
+      }
+    }
+    return IntGraph.fromEdges(n, Arrays.copyOf(endpoints, k));
+  }
+
+  private static IntGraph decodeSparse6(byte[] bytes, int from, int to) {
+    BitReader in = new BitReader(bytes, from, to);
+    int n = in.readSize();
+    int width = width(n);
+    int[] endpoints = new int[16];
+    int k = 0;
+    int v = 0;
+    while (in.remaining() >= 1 + width) {
+      if (in.read(1) == 1) {
+        v++;
+      }
+      int x = in.read(width);
+      if (x > v) {
+        v = x;
+      } else if (v < n) {
+        if (k == endpoints.length) {
+          endpoints = Arrays.copyOf(endpoints, 2 * k);
+        }
+        endpoints[k++] = x;
+        endpoints[k++] = v;
+      }
+    }
+    return IntGraph.fromEdges(n, Arrays.copyOf(endpoints, k));
+  }
+
+  /**
+   * Returns the number of bits needed to write {@code n - 1}.
+   */
+  private static int width(int n) {
+    int width = 0;
+    while ((1L << width) < n) {
+      width++;
+    }
+    return width;
+  }
+
+  /**
+   * Returns the graph6 line of {@code g}, without a terminator.
+   */
+  public static String encodeGraph6(IntGraph g) {
+    int n = g.vertexCount();
+    BitWriter out = new BitWriter();
+    out.writeSize(n);
+    for (int j = 1; j < n; j++) {
+      // the neighbors of j are sorted, so the column is a merge
+      int e = 0;
+      for (int i = 0; i < j; i++) {
+        boolean edge = e < g.degree(j) && g.neighbor(j, e) == i;
+        if (edge) {
+          e++;
+        }
+        out.write(edge ? 1 : 0, 1);
+      }
+    }
+    out.pad(0);
+    return out.toString();
+  }
+
+  /**
+   * Returns the sparse6 line of {@code g}, without a terminator.
+   */
+  public static String encodeSparse6(IntGraph g) {
+    int n = g.vertexCount();
+    int width = width(n);
+    BitWriter out = new BitWriter();
+    out.append(':');
+    out.writeSize(n);
+    int last = 0;
+    for (int j = 0; j < n; j++) {
+      for (int e = 0; e < g.degree(j) && g.neighbor(j, e) <= j; e++) {
+        int i = g.neighbor(j, e);
+        if (j == last) {
+          out.write(0, 1);
+        } else {
+          out.write(1, 1);
+          if (j > last + 1) {
+            out.write(j, width);
+            out.write(0, 1);
+          }
+          last = j;
+        }
+        out.write(i, width);
+      }
+    }
+    int padding = out.padding();
+    if (padding > width && last == n - 2 && n == (1 << width)) {
+      // padding of ones would decode as a step to n - 1 and a loop there
+      out.write(0, 1);
+    }
+    out.pad(1);
+    return out.toString();
+  }
+
+  /**
+   * Reads bits from the six-bit bytes of a line, most significant first.
+   */
+  private static final class BitReader {
+    private final byte[] bytes;
+    private final int to;
+    private int position;
+    private int bit;
+
+    BitReader(byte[] bytes, int from, int to) {
+      this.bytes = bytes;
+      this.position = from;
+      this.to = to;
+    }
+
+    long remaining() {
+      return 6L * (to - position) - bit;
+    }
+
+    int read(int width) {
+      checkArgument(remaining() >= width, "truncated line");
+      int x = 0;
+      for (int i = 0; i < width; i++) {
+        int b = bytes[position] - 63;
+        checkArgument(b >= 0 && b < 64, "invalid byte %s", bytes[position]);
+        x = (x << 1) | ((b >> (5 - bit)) & 1);
+        if (++bit == 6) {
+          bit = 0;
+          position++;
+        }
+      }
+      return x;
+    }
+
+    int readSize() {
+      long n = read(6);
+      if (n == 63) {
+        n = read(6);
+        if (n == 63) {
+          n = ((long) read(18) << 18) | read(18);
+        } else {
+          n = (n << 12) | read(12);
+        }
+      }
+      checkArgument(n <= Integer.MAX_VALUE, "too many vertices: %s", n);
+      return (int) n;
+    }
+  }
+
+  /**
+   * Writes bits into six-bit bytes, most significant first.
+   */
+  private static final class BitWriter {
+    private final StringBuilder builder = new StringBuilder();
+    private int x;
+    private int bits;
+
+    void append(char c) {
+      builder.append(c);
+    }
+
+    void write(int value, int width) {
+      for (int i = width - 1; i >= 0; i--) {
+        x = (x << 1) | ((value >>> i) & 1);
+        if (++bits == 6) {
+          builder.append((char) (x + 63));
+          x = 0;
+          bits = 0;
+        }
+      }
+    }
+
+    void writeSize(int n) {
+      if (n < 63) {
+        write(n, 6);
+      } else if (n <= 258047) {
+        write(63, 6);
+        write(n, 18);
+      } else {
+        write(63, 6);
+        write(63, 6);
+        write(0, 6);
+        write(n, 30);
+      }
+    }
+
+    /**
+     * Returns the number of bits needed to finish the last byte.
+     */
+    int padding() {
+      return (bits == 0) ? 0 : 6 - bits;
+    }
+
+    void pad(int bit) {
+      while (bits != 0) {
+        write(bit, 1);
+      }
+    }
+
+    @Override public String toString() {
+      return builder.toString();
+    }
+  }
+
+  private Graph6() {
+  }
+}
@@ -0,0 +1,175 @@
+package math.graphs.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import math.graphs.iso.IntGraph;
+
+/**
+ * Reads a file of graph6 or sparse6 lines, which may be mixed, one graph at a
+ * time.
+ *
+ * <p>
+ * The file is memory-mapped a window at a time, so it may be far larger than
+ * the heap: only the current window and the graph being decoded are held,
+ * and each line is decoded straight into an {@link IntGraph}. Windows are
+ * released by the garbage collector. A pipeline can process one graph at a
+ * time, or hand each {@linkplain #nextBatch batch} to a parallel consumer
+ * while the next is read; a reader itself is not thread-safe.
+ */
+public final class Graph6Reader implements Closeable {
+  private static final int WINDOW = 1 << 26;
+
+  public static Graph6Reader open(File file) throws IOException {
+    return new Graph6Reader(new RandomAccessFile(file, "r").getChannel(),
+        WINDOW);
+  }
+
+  private final FileChannel channel;
+  private final long size;
+  private int window;
+  private MappedByteBuffer buffer;
+  private long bufferStart;
+  private byte[] line = new byte[256];
+  private long count;
+
+  Graph6Reader(FileChannel channel, int window) throws IOException {
+    checkArgument(window > 0, "window %s", window);
+    this.channel = channel;
+    this.size = channel.size();
+    this.window = window;
+    map(0);
+  }
+
+  private void map(long start) throws IOException {
+    bufferStart = start;
+    buffer = channel.map(MapMode.READ_ONLY, start,
+        Math.min(window, size - start));
+  }
+
+  /**
+   * Returns the number of graphs read so far.
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Returns the next graph, or {@code null} at the end of the file. Empty
+   * lines are skipped.
+   *
+   * @throws IllegalArgumentException if the line is not a valid graph6 or
+   *         sparse6 line, or describes a graph with loops or multiple edges
+   */
+  @Nullable public IntGraph next() throws IOException {
+    int length;
+    do {
+      length = readLine();
+      if (length < 0) {
+        return null;
+      }
+      if (length > 0 && line[length - 1] == '\r') {
+        length--;
+      }
+    } while (length == 0);
+    count++;
+    return Graph6.decode(line, 0, length);
+  }
+
+  /**
+   * Returns the next {@code max} graphs, or fewer at the end of the file.
+   */
+  public List<IntGraph> nextBatch(int max) throws IOException {
+    checkArgument(max > 0, "batch of %s", max);
+    List<IntGraph> batch = Lists.newArrayListWithCapacity(max);
+    IntGraph g;
+    while (batch.size() < max && (g = next()) != null) {
+      batch.add(g);
+    }
+    return batch;
+  }
+
+  /**
+   * Returns the graphs not read yet, read one at a time as they are iterated,
+   * so that the file can be streamed into a consumer of iterables such as
+   * {@link math.graphs.canon.IsomorphismClasses#classify(Iterable)}. The
+   * graphs can only be iterated once, and an {@link IOException} while
+   * reading is rethrown wrapped in a {@link RuntimeException}.
+   */
+  public Iterable<IntGraph> graphs() {
+    final Iterator<IntGraph> iterator = new AbstractIterator<IntGraph>() {
+      @Override protected IntGraph computeNext() {
+        IntGraph g;
+        try {
+          g = Graph6Reader.this.next();
+        } catch (IOException e) {
+          throw Throwables.propagate(e);
+        }
+        return (g == null) ? endOfData() : g;
+      }
+    };
+    return new Iterable<IntGraph>() {
+      @Override public Iterator<IntGraph> iterator() {
+        return iterator;
+      }
+    };
+  }
+
+  /**
+   * Copies the next line, without its newline, into {@code line}, and returns
+   * its length, or -1 at the end of the file.
+   */
+  private int readLine() throws IOException {
+    while (true) {
+      int start = buffer.position();
+      int limit = buffer.limit();
+      int end = start;
+      while (end < limit && buffer.get(end) != '\n') {
+        end++;
+      }
+      boolean last = bufferStart + limit == size;
+      if (end < limit || last) {
+        if (last && start == end && end == limit) {
+          return -1;
+        }
+        int length = end - start;
+        if (length > line.length) {
+          line = Arrays.copyOf(line, Math.max(length, 2 * line.length));
+        }
+        buffer.get(line, 0, length);
+        if (end < limit) {
+          buffer.get();
+        }
+        return length;
+      }
+      // the line runs past the window: map a new one starting at the line,
+      // larger if the line fills the whole window
+      if (start == 0) {
+        checkArgument(window < Integer.MAX_VALUE, "line too long");
+        window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+      }
+      map(bufferStart + start);
+    }
+  }
+
+  @Override public void close() throws IOException {
+    buffer = null;
+    channel.close();
+  }
+}
@@ -0,0 +1,68 @@
+package math.graphs.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import math.graphs.iso.IntGraph;
+
+/**
+ * Writes graphs as graph6 or sparse6 lines.
+ *
+ * <p>
+ * Graphs are written as they come, so a pipeline writing the
+ * {@linkplain math.graphs.canon.Canonizer#canonicalGraph canonical graphs} of
+ * a stream holds one graph at a time; isomorphic graphs then give identical
+ * lines, which external tools can sort and count.
+ */
+public final class Graph6Writer implements Closeable, Flushable {
+  public static Graph6Writer open(File file) throws IOException {
+    return new Graph6Writer(new OutputStreamWriter(new FileOutputStream(file),
+        "US-ASCII"));
+  }
+
+  private final Writer out;
+
+  public Graph6Writer(Writer out) {
+    this.out = new BufferedWriter(out, 1 << 16);
+  }
+
+  public void writeGraph6(IntGraph g) throws IOException {
+    out.write(Graph6.encodeGraph6(g));
+    out.write('\n');
+  }
+
+  public void writeSparse6(IntGraph g) throws IOException {
+    out.write(Graph6.encodeSparse6(g));
+    out.write('\n');
+  }
+
+  /**
+   * Writes {@code g} as sparse6 if that is likely to be shorter, and as graph6
+   * otherwise.
+   */
+  public void write(IntGraph g) throws IOException {
+    long n = g.vertexCount();
+    int width = 64 - Long.numberOfLeadingZeros(Math.max(n - 1, 1));
+    // a sparse6 edge takes at most two units of 1 + width bits, while graph6
+    // takes a bit for every pair of vertices
+    if (2L * g.edgeCount() * (1 + width) < n * (n - 1) / 2) {
+      writeSparse6(g);
+    } else {
+      writeGraph6(g);
+    }
+  }
+
+  @Override public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override public void close() throws IOException {
+    out.close();
+  }
+}
@@ -0,0 +1,530 @@
+package math.graphs.iso;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import math.algebra.permgroup.PermGroup;
+import math.algebra.permgroup.SearchAbortedException;
+import math.algebra.permgroup.SearchContext;
+import math.metrics.Metrics.Counter;
+import math.metrics.MetricsRegistry;
+import math.structures.permutation.Permutation;
+
+import org.jgrapht.graph.SimpleGraph;
+
+/**
+ * A cache of the automorphism groups computed by {@link BoundedDegree}, for
+ * services that see the same graphs again and again, possibly with their
+ * vertices labelled differently.
+ *
+ * <p>
+ * Graphs are hashed by an isomorphism invariant: each vertex starts from its
+ * color, its number of triangles and its {@linkplain VertexInvariants#DISTANCES
+ * distance profile}, which tell apart many vertices of regular graphs, and
+ * these are refined by the multisets of the neighbors' values until the
+ * partition is stable. Each hash keeps the graphs seen with it, their colors
+ * and generators of their groups. On a lookup, the graph is tested for
+ * isomorphism against the graphs with its hash, and a hit conjugates the
+ * stored generators onto the caller's vertices. The hash separates most
+ * non-isomorphic graphs, so a lookup usually costs at most one isomorphism
+ * search, but graphs that it cannot tell apart, such as strongly regular
+ * graphs with the same parameters, share a bucket and are each tested. An
+ * isomorphism search by {@link BoundedDegree} can cost about as much as the
+ * automorphism group, as it does for vertex-transitive graphs, so the cache
+ * pays off where the group is the harder of the two.
+ *
+ * <p>
+ * At most {@code capacity} graphs are kept in memory, evicting the least
+ * recently used hashes with all their graphs. A cache created with a
+ * directory also appends each graph to a file for its hash there, which
+ * outlives the cache and is read back when the hash misses in memory. Colors
+ * are stored by their string forms, so distinct colors must have distinct
+ * strings.
+ *
+ * <p>
+ * The cache is safe for use from several threads. Lookups of graphs with the
+ * same hash take turns, so a graph missed by two threads at once is only
+ * computed and stored once; other lookups run in parallel. Only one cache
+ * should use a directory at a time.
+ */
+public final class AutomorphismCache {
+  private static final int MAGIC = 0x41555432;
+
+  /**
+   * The number of locks that lookups are striped over by hash.
+   */
+  private static final int STRIPES = 64;
+
+  /**
+   * A graph, the string forms of its colors, and generators of its group, as
+   * images of its vertices.
+   */
+  private static final class Entry {
+    private final IntGraph graph;
+    private final List<String> palette;
+    private final int[] colors;
+    private final List<int[]> generators;
+    private final long[][] invariants;
+
+    Entry(IntGraph graph, List<String> palette, int[] colors,
+        List<int[]> generators, long[][] invariants) {
+      this.graph = graph;
+      this.palette = palette;
+      this.colors = colors;
+      this.generators = generators;
+      this.invariants = invariants;
+    }
+  }
+
+  public static AutomorphismCache create(int capacity) {
+    return new AutomorphismCache(capacity, null);
+  }
+
+  /**
+   * Returns a cache holding up to {@code capacity} graphs in memory, which
+   * also stores every graph in {@code directory}, creating it if necessary.
+   */
+  public static AutomorphismCache create(int capacity, File directory) {
+    checkArgument(directory.isDirectory() || directory.mkdirs(),
+        "cannot create %s", directory);
+    return new AutomorphismCache(capacity, directory);
+  }
+
+  private final int capacity;
+  private final Object[] stripes = new Object[STRIPES];
+  private final Map<Long, List<Entry>> buckets =
+      new LinkedHashMap<Long, List<Entry>>(16, 0.75f, true);
+  private int size = 0;
+  @Nullable private final File directory;
+
+  private AutomorphismCache(int capacity, @Nullable File directory) {
+    checkArgument(capacity > 0);
+    this.capacity = capacity;
+    this.directory = directory;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Object();
+    }
+  }
+
+  public <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g) {
+    return automorphismGroup(g, Functions.constant(""));
+  }
+
+  public <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g,
+      Function<? super V, ?> coloring) {
+    return automorphismGroup(g, coloring, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the automorphism group of {@code g} preserving {@code coloring},
+   * from the cache if an isomorphic graph with the same colors is there, and
+   * otherwise as computed by {@link BoundedDegree}, which is then added to the
+   * cache.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   * @throws RuntimeException wrapping an {@link IOException} if the directory
+   *         of the cache cannot be read or written
+   */
+  public <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g,
+      Function<? super V, ?> coloring, SearchContext context) {
+    List<V> vertices = ImmutableList.copyOf(g.vertexSet());
+    int n = vertices.size();
+    IntGraph graph = IntGraph.of(g, vertices);
+    Map<String, Integer> indices = Maps.newHashMap();
+    List<String> palette = Lists.newArrayList();
+    int[] colors = new int[n];
+    for (int v = 0; v < n; v++) {
+      String color = String.valueOf(coloring.apply(vertices.get(v)));
+      Integer index = indices.get(color);
+      if (index == null) {
+        indices.put(color, index = palette.size());
+        palette.add(color);
+      }
+      colors[v] = index;
+    }
+    long[][] invariants = invariants(graph);
+    long hash = hash(graph, palette, colors, invariants);
+
+    // one lookup at a time per hash, so that a graph is only added once
+    synchronized (stripes[(int) (hash & (STRIPES - 1))]) {
+      for (Entry entry : bucket(hash)) {
+        int[] iso =
+            isomorphism(entry, graph, palette, colors, invariants, context);
+        if (iso != null) {
+          MetricsRegistry.current().increment(
+              Counter.AUTOMORPHISM_CACHE_HITS);
+          List<Permutation<Integer>> generators = Lists.newArrayList();
+          for (int[] gamma : entry.generators) {
+            int[] images = new int[n];
+            for (int v = 0; v < n; v++) {
+              images[iso[v]] = iso[gamma[v]];
+            }
+            generators.add(BoundedDegree.permutation(images));
+          }
+          return BoundedDegree.group(vertices, generators);
+        }
+      }
+
+      MetricsRegistry.current().increment(
+          Counter.AUTOMORPHISM_CACHE_MISSES);
+      List<Permutation<Integer>> generators =
+          BoundedDegree.automorphisms(graph, colors, context);
+      List<int[]> images = Lists.newArrayList();
+      for (Permutation<Integer> sigma : generators) {
+        int[] gamma = new int[n];
+        for (int v = 0; v < n; v++) {
+          gamma[v] = sigma.apply(v);
+        }
+        images.add(gamma);
+      }
+      add(hash, new Entry(graph, ImmutableList.copyOf(palette), colors,
+          images, invariants));
+      return BoundedDegree.group(vertices, generators);
+    }
+  }
+
+  /**
+   * Returns the images in {@code graph} of the vertices of the graph of
+   * {@code entry} under an isomorphism preserving the string forms of the
+   * colors and the invariants, or {@code null} if there is none.
+   */
+  @Nullable private static int[] isomorphism(Entry entry, IntGraph graph,
+      List<String> palette, int[] colors, long[][] invariants,
+      SearchContext context) {
+    Map<String, Integer> shared = Maps.newHashMap();
+    for (int i = 0; i < palette.size(); i++) {
+      shared.put(palette.get(i), i);
+    }
+    int n = colors.length;
+    if (entry.colors.length != n) {
+      return null;
+    }
+    // vertices are colored apart by their colors and invariants together
+    Map<List<Long>, Integer> refined = Maps.newHashMap();
+    int[] graphColors = new int[n];
+    for (int v = 0; v < n; v++) {
+      graphColors[v] = color(refined, colors[v], invariants[v]);
+    }
+    int[] entryColors = new int[n];
+    for (int v = 0; v < n; v++) {
+      Integer color = shared.get(entry.palette.get(entry.colors[v]));
+      if (color == null) {
+        return null;
+      }
+      entryColors[v] = color(refined, color, entry.invariants[v]);
+    }
+    return BoundedDegree.isomorphism(entry.graph, entryColors, graph,
+        graphColors, context);
+  }
+
+  private static int color(Map<List<Long>, Integer> refined, int color,
+      long[] invariants) {
+    List<Long> key = ImmutableList.of((long) color, invariants[0],
+        invariants[1]);
+    Integer index = refined.get(key);
+    if (index == null) {
+      refined.put(key, index = refined.size());
+    }
+    return index;
+  }
+
+  /**
+   * Returns the {@linkplain VertexInvariants#TRIANGLES triangles} and the
+   * {@linkplain VertexInvariants#DISTANCES distance profile} of each vertex of
+   * {@code graph}, which color apart the vertices of regular graphs that
+   * refinement alone cannot.
+   */
+  private static long[][] invariants(IntGraph graph) {
+    long[][] invariants = new long[graph.vertexCount()][];
+    for (int v = 0; v < invariants.length; v++) {
+      invariants[v] =
+          new long[] {VertexInvariants.TRIANGLES.invariant(graph, v),
+              VertexInvariants.DISTANCES.invariant(graph, v)};
+    }
+    return invariants;
+  }
+
+  /**
+   * Returns the graphs cached with {@code hash}, reading them from the
+   * directory if they are not in memory.
+   */
+  private List<Entry> bucket(long hash) {
+    synchronized (buckets) {
+      List<Entry> bucket = buckets.get(hash);
+      if (bucket != null) {
+        return ImmutableList.copyOf(bucket);
+      }
+    }
+    List<Entry> bucket = load(hash);
+    List<Entry> copy = ImmutableList.copyOf(bucket);
+    keep(hash, bucket);
+    return copy;
+  }
+
+  /**
+   * Adds {@code entry} to the graphs with {@code hash}, whose lookup has
+   * missed under the lock of its stripe, so no other thread has added to them
+   * since.
+   */
+  private void add(long hash, Entry entry) {
+    File file = file(hash);
+    if (file != null) {
+      try {
+        append(file, entry);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    synchronized (buckets) {
+      List<Entry> bucket = buckets.get(hash);
+      if (bucket != null) {
+        bucket.add(entry);
+        size++;
+        evict();
+        return;
+      }
+    }
+    // evicted since the lookup, so the file has to be read again
+    List<Entry> bucket = load(hash);
+    if (file == null) {
+      bucket.add(entry);
+    }
+    keep(hash, bucket);
+  }
+
+  /**
+   * Returns the graphs with {@code hash} in the directory, if any.
+   */
+  private List<Entry> load(long hash) {
+    List<Entry> bucket = Lists.newArrayList();
+    File file = file(hash);
+    if (file != null && file.exists()) {
+      try {
+        bucket.addAll(read(file));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return bucket;
+  }
+
+  /**
+   * Keeps all the graphs with {@code hash} in memory, unless there are more
+   * of them than the capacity, in which case their file is read on every
+   * lookup.
+   */
+  private void keep(long hash, List<Entry> bucket) {
+    synchronized (buckets) {
+      if (bucket.size() <= capacity) {
+        buckets.put(hash, bucket);
+        size += bucket.size();
+        evict();
+      }
+    }
+  }
+
+  /**
+   * Evicts the least recently used hashes, with all their graphs, until at
+   * most {@code capacity} graphs are left. Whole hashes are evicted, and only
+   * whole files are loaded, so that the buckets in memory always hold every
+   * graph of their files.
+   */
+  private void evict() {
+    Iterator<List<Entry>> iterator = buckets.values().iterator();
+    while (size > capacity && iterator.hasNext()) {
+      size -= iterator.next().size();
+      iterator.remove();
+    }
+  }
+
+  @Nullable private File file(long hash) {
+    return (directory == null) ? null : new File(directory, String.format(
+        "%016x.aut", hash));
+  }
+
+  /**
+   * Appends {@code entry} to {@code file}, starting the file if it does not
+   * exist. The entry is encoded first and written at once, so that a reader
+   * sees either all of it or, after a crash, a truncated last entry, which
+   * it ignores.
+   */
+  private static void append(File file, Entry entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    if (!file.exists()) {
+      out.writeInt(MAGIC);
+    }
+    int[] endpoints = entry.graph.endpoints();
+    out.writeInt(entry.graph.vertexCount());
+    out.writeInt(endpoints.length);
+    for (int v : endpoints) {
+      out.writeInt(v);
+    }
+    out.writeInt(entry.palette.size());
+    for (String color : entry.palette) {
+      out.writeUTF(color);
+    }
+    for (int color : entry.colors) {
+      out.writeInt(color);
+    }
+    out.writeInt(entry.generators.size());
+    for (int[] gamma : entry.generators) {
+      for (int v : gamma) {
+        out.writeInt(v);
+      }
+    }
+    out.close();
+    FileOutputStream stream = new FileOutputStream(file, true);
+    try {
+      stream.write(bytes.toByteArray());
+    } finally {
+      stream.close();
+    }
+  }
+
+  private static List<Entry> read(File file) throws IOException {
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(
+            file)));
+    List<Entry> bucket = Lists.newArrayList();
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(file + " is not an automorphism cache file");
+      }
+      while (true) {
+        int n;
+        try {
+          n = in.readInt();
+        } catch (EOFException end) {
+          return bucket;
+        }
+        int[] endpoints = new int[in.readInt()];
+        for (int j = 0; j < endpoints.length; j++) {
+          endpoints[j] = in.readInt();
+        }
+        List<String> palette = Lists.newArrayList();
+        for (int j = in.readInt(); j > 0; j--) {
+          palette.add(in.readUTF());
+        }
+        int[] colors = new int[n];
+        for (int v = 0; v < n; v++) {
+          colors[v] = in.readInt();
+        }
+        List<int[]> generators = Lists.newArrayList();
+        for (int j = in.readInt(); j > 0; j--) {
+          int[] gamma = new int[n];
+          for (int v = 0; v < n; v++) {
+            gamma[v] = in.readInt();
+          }
+          generators.add(gamma);
+        }
+        IntGraph graph = IntGraph.fromEdges(n, endpoints);
+        bucket.add(new Entry(graph, ImmutableList.copyOf(palette), colors,
+            generators, invariants(graph)));
+      }
+    } catch (EOFException truncated) {
+      // the last entry was cut short while it was written
+      return bucket;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns an isomorphism invariant of {@code graph} colored by the strings
+   * {@code palette} through {@code colors}. It only depends on
+   * {@link String#hashCode}, so it is the same in every virtual machine.
+   */
+  static long hash(IntGraph graph, List<String> palette, int[] colors) {
+    return hash(graph, palette, colors, invariants(graph));
+  }
+
+  private static long hash(IntGraph graph, List<String> palette,
+      int[] colors, long[][] invariants) {
+    int n = graph.vertexCount();
+    long[] current = new long[n];
+    for (int v = 0; v < n; v++) {
+      current[v] =
+          mix(mix(mix(palette.get(colors[v]).hashCode()) + invariants[v][0])
+              + invariants[v][1]);
+    }
+    // refine until no class splits, which takes at most n rounds
+    int classes = classes(current);
+    long[] next = new long[n];
+    while (true) {
+      for (int v = 0; v < n; v++) {
+        // summing makes the hash independent of the order of the neighbors
+        long neighbors = 0;
+        for (int i = 0; i < graph.degree(v); i++) {
+          neighbors += mix(current[graph.neighbor(v, i)]);
+        }
+        next[v] = mix(current[v] * 31 + neighbors);
+      }
+      long[] swap = current;
+      current = next;
+      next = swap;
+      int nextClasses = classes(current);
+      if (nextClasses == classes) {
+        break;
+      }
+      classes = nextClasses;
+    }
+    Arrays.sort(current);
+    long hash = mix(((long) n << 32) | graph.edgeCount());
+    for (long h : current) {
+      hash = mix(hash * 31 + h);
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the number of distinct values in {@code values}.
+   */
+  private static int classes(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int classes = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        classes++;
+      }
+    }
+    return classes;
+  }
+
+  /**
+   * The finalizer of MurmurHash3, which spreads every input bit over the
+   * output, applied after an offset so that zero does not map to itself.
+   */
+  private static long mix(long h) {
+    h += 0x9e3779b97f4a7c15L;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
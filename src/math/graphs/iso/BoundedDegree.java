@@ -1,367 +1,835 @@
 package math.graphs.iso;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.base.Equivalence;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
-import com.google.common.base.Objects;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.BiMap;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.annotation.Nullable;
 
 import math.algebra.permgroup.ColorPreserving;
 import math.algebra.permgroup.Groups;
+import math.algebra.permgroup.Orbits;
 import math.algebra.permgroup.PermGroup;
+import math.algebra.permgroup.SearchAbortedException;
+import math.algebra.permgroup.SearchContext;
+import math.metrics.Metrics.Timer;
+import math.metrics.MetricsRegistry;
 import math.structures.Colorings;
+import math.structures.IntColoring;
+import math.structures.Pair;
 import math.structures.permutation.Permutation;
 import math.structures.permutation.Permutations;
 
 import org.jgrapht.Graph;
-import org.jgrapht.Graphs;
-import org.jgrapht.UndirectedGraph;
 import org.jgrapht.graph.SimpleGraph;
-import org.jgrapht.graph.UnmodifiableUndirectedGraph;
 
 public class BoundedDegree {
-  private static class AutoFindingColoring<V> implements Function<V, Object> {
-    private final Map<V, Object> colors;
-    private final V v;
-    private final Object vColor;
-
-    AutoFindingColoring(Map<V, Object> colors, V v, Object vColor) {
-      this.colors = colors;
-      this.v = v;
-      this.vColor = vColor;
-    }
-
-    @Override public Object apply(V x) {
-      if (colors.containsKey(x)) {
-        return colors.get(x);
-      } else if (Objects.equal(v, x)) {
-        return vColor;
-      } else {
-        return BLANK;
-      }
-    }
-  }
-
+  /**
+   * The color of a set of vertices in the layered search: the colors of the
+   * children whose parents it is, and whether it is an edge within a layer.
+   * In a labelled graph the vertices of the set are tagged with the labels of
+   * their edges, so sets with the same vertices but different labels are
+   * different points of the action.
+   */
   private static class Color {
-    private final int tuplet;
+    private final List<Integer> children;
     private final boolean edged;
 
-    Color(int tuplet, boolean edged) {
-      this.tuplet = tuplet;
+    Color(List<Integer> children, boolean edged) {
+      this.children = children;
       this.edged = edged;
     }
 
     @Override public boolean equals(@Nullable Object o) {
       if (o instanceof Color) {
         Color c = (Color) o;
-        return tuplet == c.tuplet && edged == c.edged;
+        return children.equals(c.children) && edged == c.edged;
       }
       return false;
     }
-  }
 
-  private static final class IsoColoring<V1, V2> implements Equivalence<Object> {
-    private final Map<Object, V1> v1Reps;
-    private final Map<Object, V2> v2Reps;
-    private final Function<? super V1, ?> color1;
-    private final Function<? super V2, ?> color2;
-    private final Set<Object> glue;
-
-    IsoColoring(Map<Object, V1> v1Reps, Map<Object, V2> v2Reps,
-        Function<? super V1, ?> color1, Function<? super V2, ?> color2,
-        Set<Object> glue) {
-      this.v1Reps = v1Reps;
-      this.v2Reps = v2Reps;
-      this.color1 = color1;
-      this.color2 = color2;
-      this.glue = glue;
-    }
-
-    @Override public boolean equivalent(Object a, Object b) {
-      if (glue.contains(a)) {
-        return glue.contains(b);
-      }
-      return !glue.contains(b) && Objects.equal(color(a), color(b));
-    }
-
-    @Override public int hash(Object o) {
-      return glue.contains(o) ? glue.hashCode() : color(o).hashCode();
-    }
-
-    private Object color(Object o) {
-      V1 v1 = v1Reps.get(o);
-      return (v1 == null) ? color2.apply(v2Reps.get(o)) : color1.apply(v1);
+    @Override public int hashCode() {
+      return 2 * children.hashCode() + (edged ? 1 : 0);
     }
   }
 
-  private static final Object BLANK = new Object();
-
   public static <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g) {
     return automorphismGroup(g, Colorings.NON_COLORING);
   }
 
   public static <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g,
       Equivalence<? super V> coloring) {
-    List<Permutation<V>> generators = Lists.newArrayList();
+    return automorphismGroup(g, coloring, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the automorphism group of {@code g} preserving {@code coloring}.
+   *
+   * <p>
+   * The group is built along a stabilizer chain. First, base points
+   * {@code b_0, b_1, ...} are individualized one at a time, each taken from a
+   * smallest nontrivial cell of the color refinement with the earlier points
+   * individualized, until the refinement is discrete. Then, from the last level
+   * to the first, an isomorphism mapping {@code b_i} to each other vertex of
+   * its cell is searched for, fixing {@code b_0, ..., b_{i - 1}}. Every
+   * generator found so far fixes those points, so vertices already in the
+   * orbit of {@code b_i} under them are skipped. The generators found form a
+   * strong generating set, and most vertices are reached through orbits rather
+   * than searches. Forests skip all of this, since {@link Trees} names their
+   * subtrees in linear time, and the groups of other disconnected graphs are
+   * assembled from those of their components by {@link Components}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g,
+      Equivalence<? super V> coloring, SearchContext context) {
+    return automorphismGroup(g, coloring,
+        ImmutableList.<VertexInvariant> of(), context);
+  }
+
+  public static <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g,
+      Equivalence<? super V> coloring,
+      List<? extends VertexInvariant> invariants) {
+    return automorphismGroup(g, coloring, invariants,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the automorphism group of {@code g} preserving {@code coloring},
+   * as {@link #automorphismGroup(SimpleGraph, Equivalence, SearchContext)}
+   * does, after coloring apart the vertices on which {@code invariants}
+   * differ. Every automorphism preserves the invariants, so the group is the
+   * same, but the cells searched are smaller wherever the invariants tell
+   * apart vertices that color refinement cannot. The invariants are computed
+   * in parallel when the search runs in a {@link ForkJoinPool}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V, E> PermGroup<V> automorphismGroup(SimpleGraph<V, E> g,
+      Equivalence<? super V> coloring,
+      List<? extends VertexInvariant> invariants, SearchContext context) {
     List<V> vertices = ImmutableList.copyOf(g.vertexSet());
-    final Map<V, Object> colors =
-        Maps.newHashMapWithExpectedSize(vertices.size());
-    Collection<Set<V>> orbits = autOrbits(g, coloring);
-    for (Set<V> orbit : orbits) {
-      List<V> orbitList = ImmutableList.copyOf(orbit);
-      for (int i = 0; i < orbitList.size(); i++) {
-        final V v = orbitList.get(i);
-        final Object vColor = new Object();
-        for (int j = i + 1; j < orbitList.size(); j++) {
-          final V w = orbitList.get(j);
-          Map<V, V> iso =
-              isomorphism(g, g, new AutoFindingColoring<V>(colors, w, vColor),
-                  new AutoFindingColoring<V>(colors, v, vColor));
-          if (iso != null) {
-            generators.add(Permutations.permutation(iso));
-          }
+    IntGraph graph = IntGraph.of(g, vertices);
+    int[] colors =
+        VertexInvariants.refine(graph, IntColoring.of(vertices, coloring)
+          .toArray(), invariants, Maps.<List<Long>, Integer> newHashMap());
+    return group(vertices, automorphisms(graph, colors, context));
+  }
+
+  public static <V, E> PermGroup<V> automorphismGroup(Graph<V, E> g,
+      Equivalence<? super V> coloring, Function<? super E, ?> edgeColoring) {
+    return automorphismGroup(g, coloring, edgeColoring,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the automorphism group of {@code g} preserving {@code coloring}
+   * and {@code edgeColoring}. {@code g} may be directed, and may have multiple
+   * edges and loops: an automorphism maps the edges from each vertex to each
+   * other vertex onto as many edges of each color between their images, in the
+   * same directions.
+   *
+   * <p>
+   * The edges are not subdivided. They are compiled by {@link EdgeLabels} into
+   * labels on the edges of a simple graph, which color refinement and the
+   * layered search respect, so the search runs on the original vertices.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V, E> PermGroup<V> automorphismGroup(Graph<V, E> g,
+      Equivalence<? super V> coloring, Function<? super E, ?> edgeColoring,
+      SearchContext context) {
+    List<V> vertices = ImmutableList.copyOf(g.vertexSet());
+    EdgeLabels labels = new EdgeLabels();
+    Pair<IntGraph, int[]> compiled =
+        labels.compile(g, vertices, IntColoring.of(vertices, coloring)
+          .toArray(), edgeColoring);
+    return group(vertices, automorphisms(
+        labels.simplify(compiled.getFirst()), compiled.getSecond(), context));
+  }
+
+  public static PermGroup<Integer> automorphismGroup(IntGraph g) {
+    return automorphismGroup(g, new int[g.vertexCount()]);
+  }
+
+  public static PermGroup<Integer> automorphismGroup(IntGraph g, int[] colors) {
+    return automorphismGroup(g, colors, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the automorphism group of {@code g} preserving {@code colors}, as
+   * permutations of its vertex numbers, computed as at
+   * {@link #automorphismGroup(SimpleGraph, Equivalence, SearchContext)}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static PermGroup<Integer> automorphismGroup(IntGraph g, int[] colors,
+      SearchContext context) {
+    return automorphismGroup(g, colors, ImmutableList.<VertexInvariant> of(),
+        context);
+  }
+
+  /**
+   * Returns the automorphism group of {@code g} preserving {@code colors}, as
+   * permutations of its vertex numbers, after coloring apart the vertices on
+   * which {@code invariants} differ.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static PermGroup<Integer> automorphismGroup(IntGraph g, int[] colors,
+      List<? extends VertexInvariant> invariants, SearchContext context) {
+    checkArgument(colors.length == g.vertexCount(),
+        "%s colors for %s vertices", colors.length, g.vertexCount());
+    int[] refined =
+        VertexInvariants.refine(g, compact(colors), invariants,
+            Maps.<List<Long>, Integer> newHashMap());
+    List<Permutation<Integer>> generators = automorphisms(g, refined, context);
+    return generators.isEmpty() ? Groups.<Integer> trivial() : Groups
+      .generateGroup(generators);
+  }
+
+  /**
+   * Returns {@code colors} renumbered below the number of vertices, so that
+   * the search can make up new colors above them.
+   */
+  private static int[] compact(int[] colors) {
+    int[] sorted = colors.clone();
+    Arrays.sort(sorted);
+    int[] compact = new int[colors.length];
+    for (int v = 0; v < colors.length; v++) {
+      compact[v] = Arrays.binarySearch(sorted, colors[v]);
+    }
+    return compact;
+  }
+
+  static <V> PermGroup<V> group(List<V> vertices,
+      List<Permutation<Integer>> generators) {
+    if (generators.isEmpty()) {
+      return Groups.trivial();
+    }
+    Function<Integer, V> vertex = Functions.forMap(indices(vertices).inverse());
+    List<Permutation<V>> relabelled = Lists.newArrayList();
+    for (Permutation<Integer> sigma : generators) {
+      relabelled.add(Permutations.induced(sigma, vertex));
+    }
+    return Groups.generateGroup(relabelled);
+  }
+
+  /**
+   * Returns a strong generating set of the automorphism group of {@code g}
+   * preserving {@code colors}, as described at
+   * {@link #automorphismGroup(SimpleGraph, Equivalence, SearchContext)}.
+   */
+  static List<Permutation<Integer>> automorphisms(IntGraph g, int[] colors,
+      SearchContext context) {
+    if (Trees.isForest(g)) {
+      return Trees.automorphisms(g, colors);
+    }
+    List<int[]> components = g.components();
+    if (components.size() > 1) {
+      return Components.automorphisms(g, colors, components, context);
+    }
+    int n = g.vertexCount();
+    int fresh = 0;
+    for (int c : colors) {
+      fresh = Math.max(fresh, c + 1);
+    }
+    int[] individualized = colors.clone();
+    List<Integer> basePoints = Lists.newArrayList();
+    List<List<Integer>> cells = Lists.newArrayList();
+    while (true) {
+      context.step();
+      int[] refined = ColorRefinement.refine(g, individualized);
+      int[] sizes = new int[n];
+      for (int c : refined) {
+        sizes[c]++;
+      }
+      int cell = -1;
+      for (int c = 0; c < n; c++) {
+        if (sizes[c] > 1 && (cell < 0 || sizes[c] < sizes[cell])) {
+          cell = c;
         }
-        colors.put(v, vColor); // now we stabilize v
       }
+      if (cell < 0) {
+        break;
+      }
+      List<Integer> members = Lists.newArrayListWithCapacity(sizes[cell]);
+      for (int v = 0; v < n; v++) {
+        if (refined[v] == cell) {
+          members.add(v);
+        }
+      }
+      int b = members.get(0);
+      basePoints.add(b);
+      cells.add(members);
+      individualized[b] = fresh++;
     }
-    return Groups.generateGroup(generators);
-  }
 
-  public static <V, E> Collection<Set<V>> autOrbits(SimpleGraph<V, E> g,
-      Equivalence<? super V> coloring) {
-    Set<V> todo = Sets.newLinkedHashSet(g.vertexSet());
-    ImmutableList.Builder<Set<V>> orbitsBuilder = ImmutableList.builder();
-    while (!todo.isEmpty()) {
-      Iterator<V> iter = todo.iterator();
-      V v = iter.next();
-      iter.remove();
-      ImmutableSet.Builder<V> orbitBuilder = ImmutableSet.builder();
-      orbitBuilder.add(v);
-      while (iter.hasNext()) {
-        V w = iter.next();
-        if (!coloring.equivalent(v, w))
+    List<Permutation<Integer>> generators = Lists.newArrayList();
+    for (int i = basePoints.size() - 1; i >= 0; i--) {
+      int b = basePoints.get(i);
+      int[] fixed = colors.clone();
+      for (int a : basePoints.subList(0, i)) {
+        fixed[a] = individualized[a];
+      }
+      int[] colors1 = fixed.clone();
+      colors1[b] = individualized[b];
+      Set<Integer> orbit = orbit(generators, b);
+      for (int w : cells.get(i)) {
+        if (orbit.contains(w)) {
           continue;
-        final Object vwColor = new Object();
-        Function<V, Object> color1 =
-            Functions.forMap(ImmutableMap.of(v, vwColor), BLANK);
-        Function<V, Object> color2 =
-            Functions.forMap(ImmutableMap.of(w, vwColor), BLANK);
-        if (isomorphism(g, g, color1, color2) != null) {
-          orbitBuilder.add(w);
-          iter.remove();
+        }
+        int[] colors2 = fixed.clone();
+        colors2[w] = individualized[b];
+        int[] iso = isomorphism(g, colors1, g, colors2, context);
+        if (iso != null) {
+          generators.add(permutation(iso));
+          orbit = orbit(generators, b);
         }
       }
-      orbitsBuilder.add(orbitBuilder.build());
     }
-    return orbitsBuilder.build();
+    return generators;
+  }
+
+  /**
+   * Returns the orbits of the automorphism group of {@code g} preserving
+   * {@code coloring}, from the generators found by
+   * {@link #automorphismGroup(SimpleGraph, Equivalence, SearchContext)}.
+   */
+  public static <V, E> Collection<Set<V>> autOrbits(SimpleGraph<V, E> g,
+      Equivalence<? super V> coloring) {
+    return Orbits.orbits(automorphismGroup(g, coloring).generators(),
+        g.vertexSet());
+  }
+
+  /**
+   * Returns the orbits of the automorphism group of {@code g} preserving
+   * {@code coloring}, with the search pruned by {@code invariants} as at
+   * {@link #automorphismGroup(SimpleGraph, Equivalence, List, SearchContext)}.
+   */
+  public static <V, E> Collection<Set<V>> autOrbits(SimpleGraph<V, E> g,
+      Equivalence<? super V> coloring,
+      List<? extends VertexInvariant> invariants) {
+    return Orbits.orbits(automorphismGroup(g, coloring, invariants)
+      .generators(), g.vertexSet());
+  }
+
+  private static <V> Set<V> orbit(Collection<Permutation<V>> generators, V v) {
+    return Iterables.getOnlyElement(Orbits.orbits(generators,
+        ImmutableSet.of(v)));
   }
 
   public static <V1, E1, V2, E2> BiMap<V1, V2> isomorphism(
       SimpleGraph<V1, E1> g1, SimpleGraph<V2, E2> g2) {
+    return isomorphism(g1, g2, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns an isomorphism from {@code g1} to {@code g2}, or {@code null} if
+   * there is none.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V1, E1, V2, E2> BiMap<V1, V2> isomorphism(
+      SimpleGraph<V1, E1> g1, SimpleGraph<V2, E2> g2, SearchContext context) {
     Function<Object, Object> coloring = Functions.constant(new Object());
-    return isomorphism(g1, g2, coloring, coloring);
+    return isomorphism(g1, g2, coloring, coloring, context);
   }
 
   public static <V1, E1, V2, E2, C> BiMap<V1, V2>
       isomorphism(SimpleGraph<V1, E1> g1, SimpleGraph<V2, E2> g2,
           final Function<? super V1, C> color1,
           final Function<? super V2, C> color2) {
-    int n1 = g1.vertexSet().size();
-    int n2 = g2.vertexSet().size();
-    int m1 = g1.edgeSet().size();
-    int m2 = g2.edgeSet().size();
-    if (n1 != n2 || m1 != m2) {
+    return isomorphism(g1, g2, color1, color2, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns an isomorphism from {@code g1} to {@code g2} mapping
+   * {@code color1} to {@code color2}, or {@code null} if there is none.
+   * {@code context} is checked once for each candidate image of the first
+   * edge, and once for each layer of each automorphism group computed.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V1, E1, V2, E2, C> BiMap<V1, V2>
+      isomorphism(SimpleGraph<V1, E1> g1, SimpleGraph<V2, E2> g2,
+          final Function<? super V1, C> color1,
+          final Function<? super V2, C> color2, SearchContext context) {
+    return isomorphism(g1, g2, color1, color2,
+        ImmutableList.<VertexInvariant> of(), context);
+  }
+
+  public static <V1, E1, V2, E2, C> BiMap<V1, V2> isomorphism(
+      SimpleGraph<V1, E1> g1, SimpleGraph<V2, E2> g2,
+      Function<? super V1, C> color1, Function<? super V2, C> color2,
+      List<? extends VertexInvariant> invariants) {
+    return isomorphism(g1, g2, color1, color2, invariants,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns an isomorphism from {@code g1} to {@code g2} mapping
+   * {@code color1} to {@code color2}, or {@code null} if there is none, after
+   * coloring apart the vertices on which {@code invariants} differ, as at
+   * {@link #automorphismGroup(SimpleGraph, Equivalence, List, SearchContext)}.
+   * Graphs whose invariants differ are rejected before any search.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V1, E1, V2, E2, C> BiMap<V1, V2> isomorphism(
+      SimpleGraph<V1, E1> g1, SimpleGraph<V2, E2> g2,
+      Function<? super V1, C> color1, Function<? super V2, C> color2,
+      List<? extends VertexInvariant> invariants, SearchContext context) {
+    List<V1> vertices1 = ImmutableList.copyOf(g1.vertexSet());
+    List<V2> vertices2 = ImmutableList.copyOf(g2.vertexSet());
+    IntGraph graph1 = IntGraph.of(g1, vertices1);
+    IntGraph graph2 = IntGraph.of(g2, vertices2);
+    Map<Object, Integer> palette = Maps.newHashMap();
+    Map<List<Long>, Integer> invariantPalette = Maps.newHashMap();
+    int[] colors1 =
+        VertexInvariants.refine(graph1, IntColoring.of(vertices1, color1,
+            palette).toArray(), invariants, invariantPalette);
+    int[] colors2 =
+        VertexInvariants.refine(graph2, IntColoring.of(vertices2, color2,
+            palette).toArray(), invariants, invariantPalette);
+    int[] iso = isomorphism(graph1, colors1, graph2, colors2, context);
+    return bijection(vertices1, vertices2, iso);
+  }
+
+  public static <V1, E1, V2, E2, C, D> BiMap<V1, V2> isomorphism(
+      Graph<V1, E1> g1, Graph<V2, E2> g2, Function<? super V1, C> color1,
+      Function<? super V2, C> color2, Function<? super E1, D> edgeColor1,
+      Function<? super E2, D> edgeColor2) {
+    return isomorphism(g1, g2, color1, color2, edgeColor1, edgeColor2,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns an isomorphism from {@code g1} to {@code g2} mapping
+   * {@code color1} to {@code color2} and {@code edgeColor1} to
+   * {@code edgeColor2}, or {@code null} if there is none. The graphs may be
+   * directed, and may have multiple edges and loops, as at
+   * {@link #automorphismGroup(Graph, Equivalence, Function, SearchContext)};
+   * a directed graph is only isomorphic to an undirected one if neither has
+   * edges.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V1, E1, V2, E2, C, D> BiMap<V1, V2> isomorphism(
+      Graph<V1, E1> g1, Graph<V2, E2> g2, Function<? super V1, C> color1,
+      Function<? super V2, C> color2, Function<? super E1, D> edgeColor1,
+      Function<? super E2, D> edgeColor2, SearchContext context) {
+    List<V1> vertices1 = ImmutableList.copyOf(g1.vertexSet());
+    List<V2> vertices2 = ImmutableList.copyOf(g2.vertexSet());
+    Map<Object, Integer> palette = Maps.newHashMap();
+    EdgeLabels labels = new EdgeLabels();
+    Pair<IntGraph, int[]> compiled1 =
+        labels.compile(g1, vertices1,
+            IntColoring.of(vertices1, color1, palette).toArray(), edgeColor1);
+    Pair<IntGraph, int[]> compiled2 =
+        labels.compile(g2, vertices2,
+            IntColoring.of(vertices2, color2, palette).toArray(), edgeColor2);
+    int[] iso =
+        isomorphism(labels.simplify(compiled1.getFirst()),
+            compiled1.getSecond(), labels.simplify(compiled2.getFirst()),
+            compiled2.getSecond(), context);
+    return bijection(vertices1, vertices2, iso);
+  }
+
+  @Nullable static <V1, V2> BiMap<V1, V2> bijection(
+      List<V1> vertices1, List<V2> vertices2, @Nullable int[] images) {
+    if (images == null) {
       return null;
     }
-    if (m1 == 0 || m1 * 2 == n1 * (n1 - 1)) {
-      ImmutableBiMap.Builder<V1, V2> builder = ImmutableBiMap.builder();
-      Iterator<V1> iter1 = g1.vertexSet().iterator();
-      Iterator<V2> iter2 = g2.vertexSet().iterator();
-      while (iter1.hasNext()) {
-        builder.put(iter1.next(), iter2.next());
-      }
-      return builder.build();
+    ImmutableBiMap.Builder<V1, V2> builder = ImmutableBiMap.builder();
+    for (int v = 0; v < images.length; v++) {
+      builder.put(vertices1.get(v), vertices2.get(images[v]));
     }
+    return builder.build();
+  }
 
-    final BiMap<V1, Object> rep1 = representatives(g1.vertexSet());
-    final BiMap<V2, Object> rep2 = representatives(g2.vertexSet());
+  /**
+   * Returns an isomorphism from {@code g1} to {@code g2} mapping
+   * {@code color1} to {@code color2}, or {@code null} if there is none,
+   * matching the components of disconnected graphs, trying the candidate
+   * images of the first edge and searching color preserving subgroups in
+   * parallel on {@code pool}. Once one candidate succeeds, the others are
+   * cancelled through a {@linkplain SearchContext#child child} of
+   * {@code context}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V1, E1, V2, E2, C> BiMap<V1, V2> isomorphism(
+      final SimpleGraph<V1, E1> g1, final SimpleGraph<V2, E2> g2,
+      final Function<? super V1, C> color1,
+      final Function<? super V2, C> color2, ForkJoinPool pool,
+      final SearchContext context) {
+    return isomorphism(g1, g2, color1, color2,
+        ImmutableList.<VertexInvariant> of(), pool, context);
+  }
 
-    SimpleGraph<Object, Object> glued =
-        new SimpleGraph<Object, Object>(Object.class);
+  /**
+   * Returns an isomorphism from {@code g1} to {@code g2} mapping
+   * {@code color1} to {@code color2}, or {@code null} if there is none,
+   * computing {@code invariants} over the vertices and searching in parallel
+   * on {@code pool}, as at {@link #isomorphism(SimpleGraph, SimpleGraph,
+   * Function, Function, ForkJoinPool, SearchContext)}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V1, E1, V2, E2, C> BiMap<V1, V2> isomorphism(
+      final SimpleGraph<V1, E1> g1, final SimpleGraph<V2, E2> g2,
+      final Function<? super V1, C> color1,
+      final Function<? super V2, C> color2,
+      final List<? extends VertexInvariant> invariants, ForkJoinPool pool,
+      final SearchContext context) {
+    return pool.invoke(new RecursiveTask<BiMap<V1, V2>>() {
+      @Override protected BiMap<V1, V2> compute() {
+        return isomorphism(g1, g2, color1, color2, invariants, context);
+      }
+    });
+  }
 
-    Graphs.addAllVertices(glued, rep1.values());
-    Graphs.addAllVertices(glued, rep2.values());
+  @Nullable public static int[] isomorphism(IntGraph g1, IntGraph g2) {
+    return isomorphism(g1, new int[g1.vertexCount()], g2,
+        new int[g2.vertexCount()]);
+  }
 
-    final Object glue1 = new Object();
-    final Object glue2 = new Object();
-    glued.addVertex(glue1);
-    glued.addVertex(glue2);
+  @Nullable public static int[] isomorphism(IntGraph g1, int[] colors1,
+      IntGraph g2, int[] colors2) {
+    return isomorphism(g1, colors1, g2, colors2, SearchContext.unbounded());
+  }
 
-    Equivalence<Object> coloring =
-        new IsoColoring<V1, V2>(rep1.inverse(), rep2.inverse(), color1, color2,
-            ImmutableSet.of(glue1, glue2));
+  /**
+   * Returns the images of the vertices of {@code g1} under an isomorphism to
+   * {@code g2} mapping {@code colors1} to {@code colors2}, or {@code null} if
+   * there is none, after coloring apart the vertices on which
+   * {@code invariants} differ.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  @Nullable public static int[] isomorphism(IntGraph g1, int[] colors1,
+      IntGraph g2, int[] colors2, List<? extends VertexInvariant> invariants,
+      SearchContext context) {
+    Map<List<Long>, Integer> palette = Maps.newHashMap();
+    return isomorphism(g1,
+        VertexInvariants.refine(g1, colors1, invariants, palette), g2,
+        VertexInvariants.refine(g2, colors2, invariants, palette), context);
+  }
 
-    for (E1 e1 : g1.edgeSet()) {
-      glued.addEdge(rep1.get(g1.getEdgeSource(e1)),
-          rep1.get(g1.getEdgeTarget(e1)));
+  /**
+   * Returns the images of the vertices of {@code g1} under an isomorphism to
+   * {@code g2} mapping {@code colors1} to {@code colors2}, or {@code null} if
+   * there is none.
+   *
+   * <p>
+   * Forests are matched by {@link Trees}, and other disconnected graphs
+   * component by component by {@link Components}. Otherwise, after color
+   * refinement settles the easy cases, the graphs are glued: the first edge of
+   * {@code g1} is subdivided by a new vertex, and so is each candidate image of
+   * it in {@code g2}, and the two new vertices are joined. An automorphism of
+   * the glued graph swapping the new vertices is an isomorphism, and the
+   * automorphisms stabilizing the joining edge can be found layer by layer.
+   * The candidates are independent, and {@link Gluing} tries them in parallel
+   * in a {@link ForkJoinPool}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  @Nullable public static int[] isomorphism(IntGraph g1, int[] colors1,
+      IntGraph g2, int[] colors2, SearchContext context) {
+    checkArgument(colors1.length == g1.vertexCount()
+        && colors2.length == g2.vertexCount(), "one color per vertex expected");
+    int n = g1.vertexCount();
+    int m = g1.edgeCount();
+    if (n != g2.vertexCount() || m != g2.edgeCount()) {
+      return null;
     }
-    for (E2 e2 : g2.edgeSet()) {
-      glued.addEdge(rep2.get(g2.getEdgeSource(e2)),
-          rep2.get(g2.getEdgeTarget(e2)));
+    boolean forest = Trees.isForest(g1);
+    if (forest != Trees.isForest(g2)) {
+      return null;
+    } else if (forest) {
+      return Trees.isomorphism(g1, colors1, g2, colors2);
     }
-
-    E1 e1 = g1.edgeSet().iterator().next();
-    V1 v1S = g1.getEdgeSource(e1);
-    Object e1S = rep1.get(v1S);
-    V1 v1T = g1.getEdgeTarget(e1);
-    Object e1T = rep1.get(v1T);
-    glued.removeAllEdges(e1S, e1T);
-    glued.addEdge(e1S, glue1);
-    glued.addEdge(e1T, glue1);
-    Object e0 = glued.addEdge(glue1, glue2);
-
-    for (E2 e2 : g2.edgeSet()) {
-      V2 v2S = g2.getEdgeSource(e2);
-      Object e2S = rep2.get(v2S);
-      V2 v2T = g2.getEdgeTarget(e2);
-      Object e2T = rep2.get(v2T);
-
-      if (!ImmutableSet.of(color1.apply(v1S), color1.apply(v1T)).equals(
-          ImmutableSet.of(color2.apply(v2S), color2.apply(v2T))))
-        continue;
-
-      glued.addEdge(e2S, glue2);
-      glued.addEdge(e2T, glue2);
-
-      PermGroup<Object> aut =
-          automorphismGroup(new UnmodifiableUndirectedGraph<Object, Object>(
-              glued), e0, coloring);
-      for (Permutation<Object> sigma : aut.generators()) {
-        if (sigma.apply(glue1).equals(glue2)) {
-          ImmutableBiMap.Builder<V1, V2> builder = ImmutableBiMap.builder();
-          for (Map.Entry<V1, Object> v1Entry : rep1.entrySet()) {
-            Object v1Rep = v1Entry.getValue();
-            V1 v1 = v1Entry.getKey();
-            Object v2Rep = sigma.apply(v1Rep);
-            V2 v2 = rep2.inverse().get(v2Rep);
-            builder.put(v1, v2);
+    List<int[]> components1 = g1.components();
+    List<int[]> components2 = g2.components();
+    if (components1.size() != components2.size()) {
+      return null;
+    } else if (components1.size() > 1) {
+      return Components.isomorphism(g1, colors1, components1, g2, colors2,
+          components2, context);
+    }
+    int[][] refined = ColorRefinement.refine(g1, colors1, g2, colors2);
+    if (refined == null) {
+      return null;
+    }
+    int[] cells1 = refined[0];
+    int[] cells2 = refined[1];
+    if (m == 0 || (m * 2 == n * (n - 1) && !g1.isLabelled())) {
+      // every bijection preserves adjacency, so match up the colors
+      return matchCells(cells1, cells2);
+    }
+    if (Sets.newHashSet(Ints.asList(cells1)).size() == n) {
+      // the refined coloring is discrete, so it determines the only candidate
+      int[] candidate = matchCells(cells1, cells2);
+      for (int v = 0; v < n; v++) {
+        for (int j = 0; j < g1.degree(v); j++) {
+          if (g2.labelTo(candidate[v], candidate[g1.neighbor(v, j)])
+              != g1.label(v, j)) {
+            return null;
           }
-          return builder.build();
         }
       }
-      glued.removeEdge(e2S, glue2);
-      glued.removeEdge(e2T, glue2);
-      glued.addEdge(e2S, e2T);
+      return candidate;
     }
-    return null;
-  }
-
-  static <V, E> PermGroup<V> automorphismGroup(UndirectedGraph<V, E> g0, E e0,
-      Equivalence<? super V> vColoring) {
-    SimpleGraph<V, E> g = new SimpleGraph<V, E>(g0.getEdgeFactory());
-    Graphs.addEdgeWithVertices(g, g0, e0);
-    PermGroup<V> autR =
-        Groups.symmetric(ImmutableSet.of(g0.getEdgeSource(e0),
-            g0.getEdgeTarget(e0)));
-    while (g.vertexSet().size() < g0.vertexSet().size()) {
-      final SimpleGraph<V, E> gPrime =
-          new SimpleGraph<V, E>(g0.getEdgeFactory());
-      Graphs.addGraph(gPrime, g);
-      extend(g0, gPrime);
-      Set<V> newVertices = Sets.newHashSet(gPrime.vertexSet());
-      newVertices.removeAll(g.vertexSet());
-      Map<V, Set<V>> parent = Maps.newHashMap();
-      for (V v : newVertices) {
-        Set<V> parents = Sets.newHashSet(Graphs.neighborListOf(gPrime, v));
-        parents.removeAll(newVertices);
-        parent.put(v, ImmutableSet.copyOf(parents));
+
+    return new Gluing(g1, cells1, g2, cells2).isomorphism(context);
+  }
+
+  /**
+   * Returns the group of automorphisms of the connected graph {@code g}
+   * preserving {@code colors} and stabilizing the edge {@code s-t}.
+   *
+   * <p>
+   * The group is computed one breadth-first layer at a time, following Luks. A
+   * layer's automorphisms are the extensions of the previous layer's which
+   * preserve the sets of parents of the new vertices, together with the
+   * numbers and colors of their children, and the edges within the previous
+   * layer. Those sets are closed under the previous group, so that the
+   * extensions can be found by {@link ColorPreserving}.
+   *
+   * <p>
+   * In a labelled graph, each vertex of those sets is tagged with the label of
+   * its edge as seen from the other end, as the point {@code v + n * (l + 1)}
+   * of a copy of the vertices for each label {@code l}, and the previous group
+   * acts on every copy alike.
+   */
+  static PermGroup<Integer> automorphismGroup(final IntGraph g, int s, int t,
+      final int[] colors, SearchContext context) {
+    final int n = g.vertexCount();
+    int labelCount = g.isLabelled() ? g.labelCount() : 0;
+    checkArgument((long) n * (labelCount + 1) <= Integer.MAX_VALUE,
+        "too many labels: %s", labelCount);
+    int[] depth = new int[n];
+    Arrays.fill(depth, -1);
+    depth[s] = depth[t] = 0;
+    List<Integer> reached = Lists.newArrayList(s, t);
+    List<Integer> layer = ImmutableList.of(s, t);
+    PermGroup<Integer> autR =
+        (colors[s] == colors[t] && g.labelTo(s, t) == g.labelTo(t, s))
+            ? Groups.symmetric(ImmutableSet.of(s, t))
+            : Groups.<Integer> trivial();
+    for (int d = 0; !layer.isEmpty(); d++) {
+      context.step();
+      long start = System.nanoTime();
+      List<Integer> next = Lists.newArrayList();
+      // the edges within the layer, except the root edge
+      Set<Set<Integer>> marked = Sets.newHashSet();
+      for (int v : layer) {
+        for (int j = 0; j < g.degree(v); j++) {
+          int w = g.neighbor(v, j);
+          if (depth[w] < 0) {
+            depth[w] = d + 1;
+            next.add(w);
+          } else if (d > 0 && depth[w] == d && v < w) {
+            marked.add(ImmutableSet.of(tag(g, v, g.labelTo(w, v)),
+                tag(g, w, g.label(v, j))));
+          }
+        }
+      }
+      if (next.isEmpty() && marked.isEmpty()) {
+        break;
       }
-      final SetMultimap<Set<V>, V> children =
-          ImmutableSetMultimap.copyOf(Multimaps.invertFrom(
-              Multimaps.forMap(parent), HashMultimap.<Set<V>, V> create()));
-
-      Set<Set<V>> parents = children.keySet();
-
-      List<Permutation<V>> generators = Lists.newArrayList();
-      int max = 1;
-      for (Collection<V> siblingsC : children.asMap().values()) {
-        max = Math.max(max, siblingsC.size());
-        for (Set<V> matesC : Colorings.colors((Set<V>) siblingsC, vColoring)) {
-          generators.addAll(Groups.symmetric(matesC).generators());
+      final ListMultimap<Set<Integer>, Integer> children =
+          ArrayListMultimap.create();
+      for (int w : next) {
+        ImmutableSet.Builder<Integer> parents = ImmutableSet.builder();
+        for (int j = 0; j < g.degree(w); j++) {
+          if (depth[g.neighbor(w, j)] == d) {
+            parents.add(tag(g, g.neighbor(w, j), g.label(w, j)));
+          }
         }
+        children.put(parents.build(), w);
       }
 
-      Function<Set<V>, Color> aColor = new Function<Set<V>, Color>() {
-        @Override public Color apply(Set<V> a) {
-          boolean isEdge = a.size() == 2;
-          if (isEdge) {
-            Iterator<V> iter = a.iterator();
-            V v = iter.next();
-            V w = iter.next();
-            isEdge &= gPrime.containsEdge(v, w);
-          }
-          return new Color(children.get(a).size(), isEdge);
+      List<Permutation<Integer>> generators = Lists.newArrayList();
+      Comparator<Integer> byColor = new Comparator<Integer>() {
+        @Override public int compare(Integer v, Integer w) {
+          return colors[v] - colors[w];
         }
       };
-      PermGroup<V> preservingGroup =
-          ColorPreserving.colorPreservingAction(autR, parents,
-              Colorings.coloring(aColor));
-
-      for (Permutation<V> sigma : preservingGroup.generators()) {
-        Map<V, V> added = Maps.newHashMap();
-        for (Map.Entry<Set<V>, Collection<V>> entry : children.asMap()
-          .entrySet()) {
-          Set<V> a = entry.getKey();
-          Set<V> aImage = sigma.apply(a);
+      for (Collection<Integer> siblingsC : children.asMap().values()) {
+        List<Integer> siblings = (List<Integer>) siblingsC;
+        Collections.sort(siblings, byColor);
+        for (int i = 0, j; i < siblings.size(); i = j) {
+          for (j = i + 1; j < siblings.size()
+              && colors[siblings.get(j)] == colors[siblings.get(i)]; j++) {
+          }
+          generators.addAll(Groups.symmetric(
+              ImmutableSet.copyOf(siblings.subList(i, j))).generators());
+        }
+      }
+
+      PermGroup<Integer> tagged = lift(autR, n, labelCount);
+      marked.addAll(children.keySet());
+      Set<Set<Integer>> domain = closure(tagged, marked);
+
+      Function<Set<Integer>, Color> aColor =
+          new Function<Set<Integer>, Color>() {
+            @Override public Color apply(Set<Integer> a) {
+              boolean isEdge = a.size() == 2;
+              if (isEdge) {
+                Iterator<Integer> iter = a.iterator();
+                int x = iter.next();
+                int y = iter.next();
+                isEdge = g.isLabelled()
+                    ? g.labelTo(y % n, x % n) == x / n - 1
+                        && g.labelTo(x % n, y % n) == y / n - 1
+                    : g.containsEdge(x, y);
+              }
+              List<Integer> childColors = Lists.newArrayList();
+              for (int child : children.get(a)) {
+                childColors.add(colors[child]);
+              }
+              return new Color(childColors, isEdge);
+            }
+          };
+      PermGroup<Integer> preservingGroup =
+          ColorPreserving.colorPreservingAction(tagged, domain,
+              Colorings.coloring(aColor), context);
+
+      for (Permutation<Integer> sigma : preservingGroup.generators()) {
+        Map<Integer, Integer> added = Maps.newHashMap();
+        for (Map.Entry<Set<Integer>, Collection<Integer>> entry : children
+          .asMap().entrySet()) {
+          Set<Integer> a = entry.getKey();
+          Set<Integer> aImage = sigma.apply(a);
           assert children.get(aImage).size() == entry.getValue().size();
-          Iterator<V> aImKidsIter = children.get(aImage).iterator();
-          Iterator<V> aKidsIter = entry.getValue().iterator();
+          // children are sorted by color, so this matches colors
+          Iterator<Integer> aImKidsIter = children.get(aImage).iterator();
+          Iterator<Integer> aKidsIter = entry.getValue().iterator();
           while (aKidsIter.hasNext()) {
             added.put(aKidsIter.next(), aImKidsIter.next());
           }
         }
-        for (V v : g.vertexSet()) {
-          added.put(v, sigma.apply(ImmutableSet.of(v)).iterator().next());
+        for (int v : reached) {
+          added.put(v, sigma.apply(v));
         }
         generators.add(Permutations.permutation(added));
       }
-      autR = Groups.generateGroup(generators);
-      g = gPrime;
+      autR =
+          generators.isEmpty() ? Groups.<Integer> trivial() : Groups
+            .generateGroup(generators);
+      reached.addAll(next);
+      layer = next;
+      MetricsRegistry.current().recordTime(Timer.AUTOMORPHISM_LAYER,
+          System.nanoTime() - start);
     }
     return autR;
   }
 
-  private static <V, E> void extend(Graph<V, E> g0, Graph<V, E> g) {
-    for (V v : ImmutableList.copyOf(g.vertexSet())) {
-      for (E e : g0.edgesOf(v)) {
-        Graphs.addEdgeWithVertices(g, g0, e);
+  /**
+   * Returns the point standing for {@code v} tagged with {@code label}, or
+   * {@code v} itself if {@code g} is unlabelled.
+   */
+  private static int tag(IntGraph g, int v, int label) {
+    return g.isLabelled() ? v + g.vertexCount() * (label + 1) : v;
+  }
+
+  /**
+   * Returns {@code g} acting alike on the vertices {@code 0, ..., n - 1} and
+   * on their copies for {@code labelCount} labels.
+   */
+  private static PermGroup<Integer> lift(PermGroup<Integer> g, int n,
+      int labelCount) {
+    if (labelCount == 0 || g.generators().isEmpty()) {
+      return g;
+    }
+    List<Permutation<Integer>> lifted = Lists.newArrayList();
+    for (Permutation<Integer> sigma : g.generators()) {
+      Map<Integer, Integer> map = Maps.newHashMap();
+      for (Map.Entry<Integer, Integer> entry : sigma.asMap().entrySet()) {
+        for (int copy = 0; copy <= labelCount; copy++) {
+          map.put(entry.getKey() + copy * n, entry.getValue() + copy * n);
+        }
+      }
+      lifted.add(Permutations.permutation(map));
+    }
+    return Groups.generateGroup(lifted);
+  }
+
+  /**
+   * Returns the union of the orbits of {@code sets} under {@code g}.
+   */
+  static <V> Set<Set<V>> closure(PermGroup<V> g, Set<Set<V>> sets) {
+    Set<Set<V>> closure = Sets.newHashSet(sets);
+    List<Set<V>> todo = Lists.newArrayList(sets);
+    while (!todo.isEmpty()) {
+      Set<V> a = todo.remove(todo.size() - 1);
+      for (Permutation<V> sigma : g.generators()) {
+        Set<V> image = ImmutableSet.copyOf(sigma.apply(a));
+        if (closure.add(image)) {
+          todo.add(image);
+        }
+      }
+    }
+    return closure;
+  }
+
+  /**
+   * Returns a bijection mapping each vertex to one of the same cell, given
+   * that every cell has as many vertices on each side.
+   */
+  private static int[] matchCells(int[] cells1, int[] cells2) {
+    ListMultimap<Integer, Integer> byCell = ArrayListMultimap.create();
+    for (int v = 0; v < cells2.length; v++) {
+      byCell.put(cells2[v], v);
+    }
+    int[] bijection = new int[cells1.length];
+    for (int v = 0; v < cells1.length; v++) {
+      List<Integer> candidates = byCell.get(cells1[v]);
+      bijection[v] = candidates.remove(candidates.size() - 1);
+    }
+    return bijection;
+  }
+
+  static Permutation<Integer> permutation(int[] images) {
+    Map<Integer, Integer> map = Maps.newHashMap();
+    for (int v = 0; v < images.length; v++) {
+      if (images[v] != v) {
+        map.put(v, images[v]);
       }
     }
+    return Permutations.permutation(map);
   }
 
-  private static <T> BiMap<T, Object> representatives(Set<T> set) {
-    ImmutableBiMap.Builder<T, Object> builder = ImmutableBiMap.builder();
-    for (T t : set) {
-      builder.put(t, new Object());
+  private static <V> BiMap<V, Integer> indices(List<V> vertices) {
+    ImmutableBiMap.Builder<V, Integer> builder = ImmutableBiMap.builder();
+    for (int i = 0; i < vertices.size(); i++) {
+      builder.put(vertices.get(i), i);
     }
     return builder.build();
   }
@@ -0,0 +1,236 @@
+package math.graphs.iso;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * Color refinement, or the one-dimensional Weisfeiler-Lehman algorithm:
+ * refines a vertex coloring until any two vertices of the same color have the
+ * same number of neighbors of each color.
+ *
+ * <p>
+ * The stable coloring is the coarsest one refining the initial coloring, so it
+ * does not depend on the order in which vertices are processed, and every
+ * color-preserving isomorphism also preserves it. Refining the disjoint union
+ * of two graphs therefore colors both consistently, and the graphs can only be
+ * isomorphic if every color has as many vertices in one as in the other.
+ *
+ * <p>
+ * The implementation is the partition refinement of Cardon and Crochemore.
+ * When a cell that is not waiting to be processed splits, every piece but the
+ * largest is queued, since the neighbor counts of the largest piece follow
+ * from those of the others, and so every vertex is processed
+ * {@code O(log n)} times.
+ *
+ * <p>
+ * In a labelled graph, vertices must also have the same number of neighbors
+ * of each color along edges of each label, so each splitter is processed once
+ * for each label of the edges leaving it. Skipping the largest piece is still
+ * sound, since it is skipped for every label at once.
+ */
+final class ColorRefinement {
+  /**
+   * Refines {@code initial1} on {@code g1} and {@code initial2} on {@code g2}
+   * together, and returns the cell numbers of the vertices of each, whose
+   * cells are comparable, or {@code null} if some cell has different numbers
+   * of vertices in the two graphs, in which case there is no isomorphism
+   * mapping {@code initial1} to {@code initial2}.
+   */
+  @Nullable static int[][] refine(IntGraph g1, int[] initial1, IntGraph g2,
+      int[] initial2) {
+    int n1 = initial1.length;
+    int n = n1 + initial2.length;
+    int[] initial = Arrays.copyOf(initial1, n);
+    System.arraycopy(initial2, 0, initial, n1, initial2.length);
+    int[] cells = refine(g1.disjointUnion(g2), initial);
+    int[] balance = new int[n];
+    for (int i = 0; i < n; i++) {
+      balance[cells[i]] += (i < n1) ? 1 : -1;
+    }
+    for (int b : balance) {
+      if (b != 0) {
+        return null;
+      }
+    }
+    return new int[][] {Arrays.copyOf(cells, n1),
+        Arrays.copyOfRange(cells, n1, n)};
+  }
+
+  /**
+   * Returns the stable refinement of {@code initial} on {@code g}, as a cell
+   * number for each vertex. Cells are numbered from zero, and the cells of
+   * vertices with different initial colors are different.
+   */
+  static int[] refine(IntGraph g, int[] initial) {
+    int n = initial.length;
+    int[] elements = new int[n];
+    int[] position = new int[n];
+    int[] cellOf = new int[n];
+    int[] cellStart = new int[n];
+    int[] cellEnd = new int[n];
+    int cells = 0;
+
+    long[] keyed = new long[n];
+    for (int v = 0; v < n; v++) {
+      keyed[v] = ((long) initial[v] << 32) | v;
+    }
+    Arrays.sort(keyed);
+    for (int i = 0; i < n; i++) {
+      int v = (int) keyed[i];
+      if (i == 0 || (keyed[i] >>> 32) != (keyed[i - 1] >>> 32)) {
+        if (cells > 0) {
+          cellEnd[cells - 1] = i;
+        }
+        cellStart[cells++] = i;
+      }
+      elements[i] = v;
+      position[v] = i;
+      cellOf[v] = cells - 1;
+    }
+    if (cells > 0) {
+      cellEnd[cells - 1] = n;
+    }
+
+    int[] stack = new int[n];
+    boolean[] queued = new boolean[n];
+    int top = 0;
+    for (int c = 0; c < cells; c++) {
+      stack[top++] = c;
+      queued[c] = true;
+    }
+
+    int[] count = new int[n];
+    int[] marked = new int[n];
+    int[] touched = new int[n];
+    int[] touchedCells = new int[n];
+    int[] splitter = new int[n];
+    long[] byCount = new long[n];
+    long[] ends = new long[2 * g.edgeCount()];
+    while (top > 0) {
+      int s = stack[--top];
+      queued[s] = false;
+      int size = cellEnd[s] - cellStart[s];
+      System.arraycopy(elements, cellStart[s], splitter, 0, size);
+      // the ends of the edges leaving the splitter, by label
+      int nEnds = 0;
+      for (int i = 0; i < size; i++) {
+        int v = splitter[i];
+        for (int j = 0; j < g.degree(v); j++) {
+          ends[nEnds++] = ((long) g.label(v, j) << 32) | g.neighbor(v, j);
+        }
+      }
+      if (g.isLabelled()) {
+        Arrays.sort(ends, 0, nEnds);
+      }
+      for (int e = 0, f; e < nEnds; e = f) {
+        long label = ends[e] >>> 32;
+        for (f = e + 1; f < nEnds && (ends[f] >>> 32) == label; f++) {
+        }
+        int nTouched = 0;
+        int nTouchedCells = 0;
+        for (int i = e; i < f; i++) {
+          int w = (int) ends[i];
+          if (count[w]++ > 0) {
+            continue;
+          }
+          touched[nTouched++] = w;
+          int c = cellOf[w];
+          if (marked[c] == 0) {
+            touchedCells[nTouchedCells++] = c;
+          }
+          // move w to the front of its cell, among the touched vertices
+          int p = cellStart[c] + marked[c]++;
+          int u = elements[p];
+          elements[p] = w;
+          elements[position[w]] = u;
+          position[u] = position[w];
+          position[w] = p;
+        }
+        for (int k = 0; k < nTouchedCells; k++) {
+          int c = touchedCells[k];
+          int start = cellStart[c];
+          int mid = start + marked[c];
+          int end = cellEnd[c];
+          marked[c] = 0;
+          boolean uniform = mid == end;
+          for (int p = start + 1; uniform && p < mid; p++) {
+            uniform = count[elements[p]] == count[elements[start]];
+          }
+          if (uniform) {
+            continue;
+          }
+          for (int p = start; p < mid; p++) {
+            byCount[p - start] =
+                ((long) count[elements[p]] << 32) | elements[p];
+          }
+          Arrays.sort(byCount, 0, mid - start);
+          for (int p = start; p < mid; p++) {
+            int v = (int) byCount[p - start];
+            elements[p] = v;
+            position[v] = p;
+          }
+
+          // the pieces are runs of equal counts, then the untouched vertices
+          int largest = c;
+          int largestSize = 0;
+          boolean wasQueued = queued[c];
+          int firstNew = cells;
+          int pieceStart = start;
+          while (pieceStart < end) {
+            int pieceEnd = pieceStart + 1;
+            if (pieceStart < mid) {
+              int pieceCount = count[elements[pieceStart]];
+              while (pieceEnd < mid
+                  && count[elements[pieceEnd]] == pieceCount) {
+                pieceEnd++;
+              }
+            } else {
+              pieceEnd = end;
+            }
+            int piece;
+            if (pieceStart == start) {
+              piece = c;
+              cellEnd[c] = pieceEnd;
+            } else {
+              piece = cells++;
+              cellStart[piece] = pieceStart;
+              cellEnd[piece] = pieceEnd;
+              for (int p = pieceStart; p < pieceEnd; p++) {
+                cellOf[elements[p]] = piece;
+              }
+              if (wasQueued) {
+                stack[top++] = piece;
+                queued[piece] = true;
+              }
+            }
+            if (pieceEnd - pieceStart > largestSize) {
+              largest = piece;
+              largestSize = pieceEnd - pieceStart;
+            }
+            pieceStart = pieceEnd;
+          }
+          if (!wasQueued) {
+            if (c != largest) {
+              stack[top++] = c;
+              queued[c] = true;
+            }
+            for (int piece = firstNew; piece < cells; piece++) {
+              if (piece != largest) {
+                stack[top++] = piece;
+                queued[piece] = true;
+              }
+            }
+          }
+        }
+        for (int i = 0; i < nTouched; i++) {
+          count[touched[i]] = 0;
+        }
+      }
+    }
+    return cellOf;
+  }
+
+  private ColorRefinement() {
+  }
+}
@@ -0,0 +1,295 @@
+package math.graphs.iso;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import math.algebra.permgroup.Groups;
+import math.algebra.permgroup.SearchContext;
+import math.structures.permutation.Permutation;
+
+/**
+ * Isomorphisms and automorphisms of disconnected graphs, assembled from their
+ * connected components.
+ *
+ * <p>
+ * Components are bucketed by their orders, sizes and multisets of colors, and
+ * each bucket is split into isomorphism classes by testing each component
+ * against one representative of each class. The automorphism group of a graph
+ * is then generated by the automorphisms of each representative, which the
+ * isomorphisms within its class conjugate onto the other components, and by
+ * the symmetric group on the components of each class. Buckets are
+ * independent, so when the search runs on a
+ * {@link java.util.concurrent.ForkJoinPool}, they are processed in parallel.
+ */
+final class Components {
+  /**
+   * A connected component, renumbered from zero.
+   */
+  private static final class Part {
+    private final int[] vertices;
+    private final IntGraph graph;
+    private final int[] colors;
+    private final List<Integer> key;
+
+    Part(IntGraph g, int[] colors, int[] vertices) {
+      this.vertices = vertices;
+      this.graph = g.inducedSubgraph(vertices);
+      this.colors = new int[vertices.length];
+      for (int i = 0; i < vertices.length; i++) {
+        this.colors[i] = colors[vertices[i]];
+      }
+      int[] sorted = this.colors.clone();
+      Arrays.sort(sorted);
+      this.key = ImmutableList.<Integer> builder().add(vertices.length,
+          graph.edgeCount()).addAll(Ints.asList(sorted)).build();
+    }
+  }
+
+  /**
+   * Isomorphic parts, with an isomorphism from each to the first.
+   */
+  private static final class IsoClass {
+    private final List<Part> members = Lists.newArrayList();
+    private final List<int[]> toFirst = Lists.newArrayList();
+    private final List<Part> images = Lists.newArrayList();
+
+    IsoClass(Part first) {
+      add(first, identity(first.vertices.length));
+    }
+
+    Part first() {
+      return members.get(0);
+    }
+
+    void add(Part part, int[] iso) {
+      members.add(part);
+      toFirst.add(iso);
+    }
+  }
+
+  /**
+   * Splits a bucket of parts into isomorphism classes.
+   */
+  private static List<IsoClass> classify(Collection<Part> parts,
+      SearchContext context) {
+    List<IsoClass> classes = Lists.newArrayList();
+    outer: for (Part part : parts) {
+      for (IsoClass c : classes) {
+        Part first = c.first();
+        int[] iso =
+            BoundedDegree.isomorphism(part.graph, part.colors, first.graph,
+                first.colors, context);
+        if (iso != null) {
+          c.add(part, iso);
+          continue outer;
+        }
+      }
+      classes.add(new IsoClass(part));
+    }
+    return classes;
+  }
+
+  /**
+   * Returns the images of the vertices of {@code g1} under an isomorphism to
+   * {@code g2} mapping {@code colors1} to {@code colors2}, or {@code null} if
+   * there is none, given the components of each. The colors of both graphs
+   * must be numbered alike.
+   */
+  @Nullable static int[] isomorphism(IntGraph g1, int[] colors1,
+      List<int[]> components1, IntGraph g2, int[] colors2,
+      List<int[]> components2, final SearchContext context) {
+    final ListMultimap<List<Integer>, Part> buckets1 =
+        LinkedListMultimap.create();
+    for (int[] component : components1) {
+      Part part = new Part(g1, colors1, component);
+      buckets1.put(part.key, part);
+    }
+    final ListMultimap<List<Integer>, Part> buckets2 =
+        LinkedListMultimap.create();
+    for (int[] component : components2) {
+      Part part = new Part(g2, colors2, component);
+      buckets2.put(part.key, part);
+    }
+    if (!buckets1.keySet().equals(buckets2.keySet())) {
+      return null;
+    }
+    final int[] iso = new int[g1.vertexCount()];
+    final AtomicBoolean failed = new AtomicBoolean();
+    List<RecursiveAction> tasks = Lists.newArrayList();
+    for (final List<Integer> key : buckets1.keySet()) {
+      tasks.add(new RecursiveAction() {
+        @Override protected void compute() {
+          if (!failed.get() && !match(buckets1.get(key), buckets2.get(key),
+              iso, context)) {
+            failed.set(true);
+          }
+        }
+      });
+    }
+    run(tasks);
+    return failed.get() ? null : iso;
+  }
+
+  /**
+   * Matches the parts of one bucket from each graph, writing the isomorphism
+   * into {@code iso}, and returns whether every part was matched.
+   */
+  private static boolean match(List<Part> parts1, List<Part> parts2,
+      int[] iso, SearchContext context) {
+    if (parts1.size() != parts2.size()) {
+      return false;
+    }
+    List<IsoClass> classes = classify(parts1, context);
+    for (Part part2 : parts2) {
+      IsoClass match = null;
+      int[] toFirst = null;
+      for (IsoClass c : classes) {
+        if (c.images.size() < c.members.size()) {
+          Part first = c.first();
+          toFirst =
+              BoundedDegree.isomorphism(part2.graph, part2.colors,
+                  first.graph, first.colors, context);
+          if (toFirst != null) {
+            match = c;
+            break;
+          }
+        }
+      }
+      if (match == null) {
+        return false;
+      }
+      // compose the member's isomorphism to the first with the inverse of
+      // part2's
+      int i = match.images.size();
+      match.images.add(part2);
+      Part member = match.members.get(i);
+      int[] memberToFirst = match.toFirst.get(i);
+      int[] fromFirst = invert(toFirst);
+      for (int v = 0; v < member.vertices.length; v++) {
+        iso[member.vertices[v]] = part2.vertices[fromFirst[memberToFirst[v]]];
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns generators of the automorphism group of {@code g} preserving
+   * {@code colors}, given its components.
+   */
+  static List<Permutation<Integer>> automorphisms(IntGraph g, int[] colors,
+      List<int[]> components, final SearchContext context) {
+    final ListMultimap<List<Integer>, Part> buckets =
+        LinkedListMultimap.create();
+    for (int[] component : components) {
+      Part part = new Part(g, colors, component);
+      buckets.put(part.key, part);
+    }
+    final int n = g.vertexCount();
+    final List<Permutation<Integer>> generators =
+        Lists.newArrayList();
+    List<RecursiveAction> tasks = Lists.newArrayList();
+    for (final List<Integer> key : buckets.keySet()) {
+      tasks.add(new RecursiveAction() {
+        @Override protected void compute() {
+          List<Permutation<Integer>> found = Lists.newArrayList();
+          for (IsoClass c : classify(buckets.get(key), context)) {
+            addGenerators(c, n, context, found);
+          }
+          synchronized (generators) {
+            generators.addAll(found);
+          }
+        }
+      });
+    }
+    run(tasks);
+    return generators;
+  }
+
+  /**
+   * Adds generators of the wreath product of the automorphism group of the
+   * first member of {@code c} with the symmetric group on its members.
+   */
+  private static void addGenerators(IsoClass c, int n, SearchContext context,
+      List<Permutation<Integer>> generators) {
+    Part first = c.first();
+    for (Permutation<Integer> sigma : BoundedDegree.automorphisms(first.graph,
+        first.colors, context)) {
+      int[] images = identity(n);
+      for (int v = 0; v < first.vertices.length; v++) {
+        images[first.vertices[v]] = first.vertices[sigma.apply(v)];
+      }
+      generators.add(BoundedDegree.permutation(images));
+    }
+    if (c.members.size() < 2) {
+      return;
+    }
+    ImmutableSet.Builder<Integer> indices = ImmutableSet.builder();
+    for (int i = 0; i < c.members.size(); i++) {
+      indices.add(i);
+    }
+    List<int[]> fromFirst = Lists.newArrayList();
+    for (int[] toFirst : c.toFirst) {
+      fromFirst.add(invert(toFirst));
+    }
+    for (Permutation<Integer> pi : Groups.symmetric(indices.build())
+      .generators()) {
+      int[] images = identity(n);
+      for (int i = 0; i < c.members.size(); i++) {
+        int j = pi.apply(i);
+        Part from = c.members.get(i);
+        Part to = c.members.get(j);
+        for (int v = 0; v < from.vertices.length; v++) {
+          images[from.vertices[v]] =
+              to.vertices[fromFirst.get(j)[c.toFirst.get(i)[v]]];
+        }
+      }
+      generators.add(BoundedDegree.permutation(images));
+    }
+  }
+
+  /**
+   * Runs {@code tasks}, in parallel if the current thread belongs to a
+   * {@link java.util.concurrent.ForkJoinPool}.
+   */
+  private static void run(List<RecursiveAction> tasks) {
+    if (tasks.size() > 1 && ForkJoinTask.inForkJoinPool()) {
+      ForkJoinTask.invokeAll(tasks);
+    } else {
+      for (RecursiveAction task : tasks) {
+        task.invoke();
+      }
+    }
+  }
+
+  private static int[] identity(int n) {
+    int[] identity = new int[n];
+    for (int i = 0; i < n; i++) {
+      identity[i] = i;
+    }
+    return identity;
+  }
+
+  private static int[] invert(int[] bijection) {
+    int[] inverse = new int[bijection.length];
+    for (int i = 0; i < bijection.length; i++) {
+      inverse[bijection[i]] = i;
+    }
+    return inverse;
+  }
+
+  private Components() {
+  }
+}
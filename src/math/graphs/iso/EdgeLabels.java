@@ -0,0 +1,128 @@
+package math.graphs.iso;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import math.structures.Pair;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.Graph;
+
+/**
+ * Compiles directed graphs, multigraphs and edge colorings into labelled
+ * {@link IntGraph}s, without subdividing edges.
+ *
+ * <p>
+ * All the edges between two distinct vertices {@code v} and {@code w} become
+ * one edge of the simple graph, labelled at {@code v} by the multiset of the
+ * colors of those edges, each with its direction as seen from {@code v}: out
+ * of {@code v}, into {@code v}, or undirected. The label at {@code w} is the
+ * mirror image, so either label determines the other. Loops become part of
+ * the color of their vertex. A bijection is then an isomorphism of the
+ * original graphs exactly when it preserves the vertex colors and the labels.
+ *
+ * <p>
+ * Labels and colors are numbered through tables shared by every graph
+ * compiled by one instance, so the graphs being compared must be compiled
+ * together.
+ */
+final class EdgeLabels {
+  private static final int UNDIRECTED = 0;
+  private static final int OUT = 1;
+  private static final int IN = 2;
+
+  private final Map<Object, Integer> edgeColors = Maps.newHashMap();
+  private final Map<List<Integer>, Integer> labels = Maps.newHashMap();
+  private final Map<List<Integer>, Integer> vertexColors = Maps.newHashMap();
+
+  /**
+   * Returns the graph of {@code g}, with each vertex numbered by its position
+   * in {@code vertices} and colored by {@code colors}, and the colors of the
+   * vertices with their loops.
+   */
+  <V, E> Pair<IntGraph, int[]> compile(Graph<V, E> g, List<V> vertices,
+      int[] colors, Function<? super E, ?> edgeColoring) {
+    int n = vertices.size();
+    Map<V, Integer> indices = Maps.newHashMapWithExpectedSize(n);
+    for (int i = 0; i < n; i++) {
+      indices.put(vertices.get(i), i);
+    }
+    boolean directed = g instanceof DirectedGraph;
+    List<List<Integer>> loops = Lists.newArrayList();
+    for (int i = 0; i < n; i++) {
+      loops.add(Lists.<Integer> newArrayList(colors[i]));
+    }
+    // the edges between each pair of vertices, as seen from the smaller
+    Map<Long, List<Integer>> pairs = Maps.newHashMap();
+    for (E e : g.edgeSet()) {
+      int s = indices.get(g.getEdgeSource(e));
+      int t = indices.get(g.getEdgeTarget(e));
+      int color = number(edgeColors, edgeColoring.apply(e));
+      if (s == t) {
+        loops.get(s).add(color);
+        continue;
+      }
+      int direction = !directed ? UNDIRECTED : (s < t) ? OUT : IN;
+      Long pair = (long) Math.min(s, t) * n + Math.max(s, t);
+      List<Integer> codes = pairs.get(pair);
+      if (codes == null) {
+        pairs.put(pair, codes = Lists.newArrayListWithCapacity(1));
+      }
+      codes.add(3 * color + direction);
+    }
+
+    int[] endpoints = new int[2 * pairs.size()];
+    int[] ends = new int[endpoints.length];
+    int k = 0;
+    for (Map.Entry<Long, List<Integer>> entry : pairs.entrySet()) {
+      int[] codes = Ints.toArray(entry.getValue());
+      int[] mirror = new int[codes.length];
+      for (int i = 0; i < codes.length; i++) {
+        int direction = codes[i] % 3;
+        mirror[i] = codes[i] - direction
+            + ((direction == UNDIRECTED) ? UNDIRECTED : OUT + IN - direction);
+      }
+      Arrays.sort(codes);
+      Arrays.sort(mirror);
+      endpoints[k] = (int) (entry.getKey() / n);
+      endpoints[k + 1] = (int) (entry.getKey() % n);
+      ends[k] = number(labels, Ints.asList(codes));
+      ends[k + 1] = number(labels, Ints.asList(mirror));
+      k += 2;
+    }
+
+    int[] loopColors = new int[n];
+    for (int i = 0; i < n; i++) {
+      List<Integer> key = loops.get(i);
+      // the vertex color stays first
+      Collections.sort(key.subList(1, key.size()));
+      loopColors[i] = number(vertexColors, ImmutableList.copyOf(key));
+    }
+    return Pair.of(IntGraph.fromEdges(n, endpoints, ends), loopColors);
+  }
+
+  /**
+   * Returns {@code g}, without its labels if every end of every edge compiled
+   * so far has the same label, when they carry no information.
+   */
+  IntGraph simplify(IntGraph g) {
+    return (labels.size() <= 1) ? IntGraph.fromEdges(g.vertexCount(),
+        g.endpoints()) : g;
+  }
+
+  private static <K> int number(Map<K, Integer> table, K key) {
+    Integer number = table.get(key);
+    if (number == null) {
+      table.put(key, number = table.size());
+    }
+    return number;
+  }
+}
@@ -0,0 +1,174 @@
+package math.graphs.iso;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
+import math.algebra.permgroup.PermGroup;
+import math.algebra.permgroup.SearchAbortedException;
+import math.algebra.permgroup.SearchContext;
+import math.structures.permutation.Permutation;
+
+/**
+ * The glued graphs of an isomorphism test between connected graphs, one for
+ * each candidate image in {@code g2} of the first edge of {@code g1}.
+ *
+ * <p>
+ * The first edge {@code a-b} of {@code g1} is subdivided by a new vertex, and
+ * so is the candidate edge {@code c-d} of {@code g2}, and the two new vertices
+ * are joined; an automorphism of the glued graph swapping the new vertices is
+ * an isomorphism. The edges shared by every candidate are laid out once, and
+ * each candidate copies them and patches in its own edge, so candidates share
+ * nothing mutable. When the test runs in a
+ * {@link java.util.concurrent.ForkJoinPool}, candidates are tried in
+ * parallel, and the first isomorphism found cancels the others.
+ */
+final class Gluing {
+  private final int n;
+  private final int m;
+  private final int[] colors;
+  private final int[] ends2;
+  private final int[] labels2;
+  private final int[] glued;
+  @Nullable private final int[] labels;
+  private final List<Integer> candidates = Lists.newArrayList();
+
+  /**
+   * Lays out the glued graphs of {@code g1} and {@code g2}, whose stable
+   * colorings are {@code cells1} and {@code cells2}.
+   */
+  Gluing(IntGraph g1, int[] cells1, IntGraph g2, int[] cells2) {
+    this.n = g1.vertexCount();
+    this.m = g1.edgeCount();
+    // g1 is numbered from 0, g2 from n, and the glue vertices come last
+    int glue1 = 2 * n;
+    int glue2 = 2 * n + 1;
+    this.colors = Arrays.copyOf(cells1, 2 * n + 2);
+    System.arraycopy(cells2, 0, colors, n, n);
+    colors[glue1] = colors[glue2] = 2 * n;
+
+    int[] ends1 = g1.endpoints();
+    int[] labels1 = g1.endpointLabels();
+    this.ends2 = g2.endpoints();
+    this.labels2 = g2.endpointLabels();
+    int a = ends1[0];
+    int b = ends1[1];
+    // the first edge of g1 becomes a-glue1, then b-glue1 and glue1-glue2 are
+    // added, and the candidate edge c-d of g2 becomes c-glue2, then d-glue2;
+    // the new edges keep the labels of the old at both ends of the path, so
+    // that its direction is kept, and the joining edge gets a new label
+    this.glued = new int[2 * (2 * m + 3)];
+    System.arraycopy(ends1, 0, glued, 0, 2 * m);
+    glued[1] = glue1;
+    glued[2 * m] = b;
+    glued[2 * m + 1] = glue1;
+    glued[2 * m + 2] = glue1;
+    glued[2 * m + 3] = glue2;
+    for (int j = 0; j < 2 * m; j++) {
+      glued[2 * m + 4 + j] = n + ends2[j];
+    }
+    if (g1.isLabelled()) {
+      labels = new int[glued.length];
+      System.arraycopy(labels1, 0, labels, 0, 2 * m);
+      labels[2 * m] = labels1[1];
+      labels[2 * m + 1] = labels1[0];
+      labels[2 * m + 2] = labels[2 * m + 3] =
+          Math.max(g1.labelCount(), g2.labelCount());
+      System.arraycopy(labels2, 0, labels, 2 * m + 4, 2 * m);
+    } else {
+      labels = null;
+    }
+
+    for (int k = 0; k < 2 * m; k += 2) {
+      int c = ends2[k];
+      int d = ends2[k + 1];
+      boolean forward = cells1[a] == cells2[c] && cells1[b] == cells2[d]
+          && labels1[0] == labels2[k];
+      boolean backward = cells1[a] == cells2[d] && cells1[b] == cells2[c]
+          && labels1[0] == labels2[k + 1];
+      if (forward || backward) {
+        candidates.add(k);
+      }
+    }
+  }
+
+  /**
+   * Returns the images of the vertices of {@code g1} under an isomorphism to
+   * {@code g2}, or {@code null} if there is none. {@code context} is checked
+   * once for each candidate.
+   */
+  @Nullable int[] isomorphism(final SearchContext context) {
+    if (candidates.size() < 2 || !ForkJoinTask.inForkJoinPool()) {
+      for (int k : candidates) {
+        int[] iso = isomorphism(k, context);
+        if (iso != null) {
+          return iso;
+        }
+      }
+      return null;
+    }
+    final SearchContext siblings = context.child();
+    final AtomicReference<int[]> found = new AtomicReference<int[]>();
+    List<RecursiveAction> tasks = Lists.newArrayList();
+    for (final int k : candidates) {
+      tasks.add(new RecursiveAction() {
+        @Override protected void compute() {
+          if (found.get() != null) {
+            return;
+          }
+          try {
+            int[] iso = isomorphism(k, siblings);
+            if (iso != null && found.compareAndSet(null, iso)) {
+              siblings.cancel();
+            }
+          } catch (SearchAbortedException e) {
+            // unless another candidate succeeded and cancelled this one
+            if (found.get() == null) {
+              throw e;
+            }
+          }
+        }
+      });
+    }
+    ForkJoinTask.invokeAll(tasks);
+    return found.get();
+  }
+
+  /**
+   * Tries the candidate edge {@code ends2[k]-ends2[k + 1]}.
+   */
+  @Nullable private int[] isomorphism(int k, SearchContext context) {
+    context.step();
+    int glue1 = 2 * n;
+    int glue2 = 2 * n + 1;
+    int[] edges = glued.clone();
+    int[] ends = (labels == null) ? null : labels.clone();
+    int offset = 2 * m + 4;
+    edges[offset + k + 1] = glue2;
+    edges[edges.length - 2] = n + ends2[k + 1];
+    edges[edges.length - 1] = glue2;
+    if (ends != null) {
+      ends[ends.length - 2] = labels2[k + 1];
+      ends[ends.length - 1] = labels2[k];
+    }
+    PermGroup<Integer> aut =
+        BoundedDegree.automorphismGroup(IntGraph.fromEdges(2 * n + 2, edges,
+            ends), glue1, glue2, colors, context);
+    for (Permutation<Integer> sigma : aut.generators()) {
+      if (sigma.apply(glue1) == glue2) {
+        int[] iso = new int[n];
+        for (int v = 0; v < n; v++) {
+          iso[v] = sigma.apply(v) - n;
+        }
+        return iso;
+      }
+    }
+    return null;
+  }
+}
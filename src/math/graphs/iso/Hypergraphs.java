@@ -0,0 +1,230 @@
+package math.graphs.iso;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import math.algebra.permgroup.ColorPreserving;
+import math.algebra.permgroup.PermGroup;
+import math.algebra.permgroup.SearchAbortedException;
+import math.algebra.permgroup.SearchContext;
+import math.structures.Colorings;
+import math.structures.IntColoring;
+import math.structures.Pair;
+import math.structures.permutation.Permutation;
+
+/**
+ * Automorphisms and isomorphisms of hypergraphs, and so of set systems and
+ * block designs: a hypergraph is a set of vertices with a collection of
+ * subsets of them, its hyperedges, which may repeat.
+ *
+ * <p>
+ * Each hyperedge is encoded as a {@link BitSet} over the indices of the
+ * vertices, so repeated hyperedges are merged by hashing the bitsets, and the
+ * hypergraph becomes its incidence graph: a vertex for each vertex and each
+ * distinct hyperedge, with an edge from each hyperedge to its members, and the
+ * hyperedges colored apart from the vertices by their multiplicities. The
+ * automorphisms of the incidence graph are found by {@link BoundedDegree}, so
+ * when hyperedges have bounded size and each vertex lies in boundedly many of
+ * them, the incidence graph has bounded degree and the search takes polynomial
+ * time.
+ *
+ * <p>
+ * {@link #preservingSubgroup} instead searches a given group for the
+ * permutations preserving the hyperedges, with
+ * {@link ColorPreserving#colorPreservingAction} acting on the sets directly,
+ * which is polynomial when the composition factors of the group are bounded.
+ */
+public final class Hypergraphs {
+  public static <V> PermGroup<V> automorphismGroup(Set<V> vertices,
+      Collection<? extends Set<? extends V>> hyperedges) {
+    return automorphismGroup(vertices, hyperedges, Colorings.NON_COLORING);
+  }
+
+  public static <V> PermGroup<V> automorphismGroup(Set<V> vertices,
+      Collection<? extends Set<? extends V>> hyperedges,
+      Equivalence<? super V> coloring) {
+    return automorphismGroup(vertices, hyperedges, coloring,
+        SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the group of permutations of {@code vertices} preserving
+   * {@code coloring} and mapping the hyperedges onto themselves, each as
+   * often as it occurs.
+   *
+   * @throws IllegalArgumentException if a hyperedge has a member that is not
+   *         in {@code vertices}
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V> PermGroup<V> automorphismGroup(Set<V> vertices,
+      Collection<? extends Set<? extends V>> hyperedges,
+      Equivalence<? super V> coloring, SearchContext context) {
+    List<V> vertexList = ImmutableList.copyOf(vertices);
+    IntColoring<V> colors = IntColoring.of(vertexList, coloring);
+    Pair<IntGraph, int[]> incidence =
+        incidence(vertexList, colors.toArray(), colors.colorCount(),
+            hyperedges);
+    int n = vertexList.size();
+    List<Permutation<Integer>> generators = Lists.newArrayList();
+    for (Permutation<Integer> sigma : BoundedDegree.automorphisms(
+        incidence.getFirst(), incidence.getSecond(), context)) {
+      // the vertices are colored apart from the hyperedges, so they are stable
+      int[] images = new int[n];
+      for (int v = 0; v < n; v++) {
+        images[v] = sigma.apply(v);
+      }
+      generators.add(BoundedDegree.permutation(images));
+    }
+    return BoundedDegree.group(vertexList, generators);
+  }
+
+  public static <V1, V2> BiMap<V1, V2> isomorphism(Set<V1> vertices1,
+      Collection<? extends Set<? extends V1>> hyperedges1, Set<V2> vertices2,
+      Collection<? extends Set<? extends V2>> hyperedges2) {
+    Function<Object, Object> coloring = Functions.constant(new Object());
+    return isomorphism(vertices1, hyperedges1, vertices2, hyperedges2,
+        coloring, coloring);
+  }
+
+  public static <V1, V2, C> BiMap<V1, V2> isomorphism(Set<V1> vertices1,
+      Collection<? extends Set<? extends V1>> hyperedges1, Set<V2> vertices2,
+      Collection<? extends Set<? extends V2>> hyperedges2,
+      Function<? super V1, C> color1, Function<? super V2, C> color2) {
+    return isomorphism(vertices1, hyperedges1, vertices2, hyperedges2,
+        color1, color2, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns a bijection from {@code vertices1} to {@code vertices2} mapping
+   * {@code color1} to {@code color2} and the hyperedges of the first
+   * hypergraph onto those of the second, each as often as it occurs, or
+   * {@code null} if there is none.
+   *
+   * @throws IllegalArgumentException if a hyperedge has a member that is not
+   *         among the vertices of its hypergraph
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  @Nullable public static <V1, V2, C> BiMap<V1, V2> isomorphism(
+      Set<V1> vertices1, Collection<? extends Set<? extends V1>> hyperedges1,
+      Set<V2> vertices2, Collection<? extends Set<? extends V2>> hyperedges2,
+      Function<? super V1, C> color1, Function<? super V2, C> color2,
+      SearchContext context) {
+    int n = vertices1.size();
+    if (n != vertices2.size() || hyperedges1.size() != hyperedges2.size()) {
+      return null;
+    }
+    List<V1> vertexList1 = ImmutableList.copyOf(vertices1);
+    List<V2> vertexList2 = ImmutableList.copyOf(vertices2);
+    Map<Object, Integer> palette = Maps.newHashMap();
+    int[] colors1 =
+        IntColoring.of(vertexList1, color1, palette).toArray();
+    int[] colors2 =
+        IntColoring.of(vertexList2, color2, palette).toArray();
+    Pair<IntGraph, int[]> incidence1 =
+        incidence(vertexList1, colors1, palette.size(), hyperedges1);
+    Pair<IntGraph, int[]> incidence2 =
+        incidence(vertexList2, colors2, palette.size(), hyperedges2);
+    int[] iso =
+        BoundedDegree.isomorphism(incidence1.getFirst(),
+            incidence1.getSecond(), incidence2.getFirst(),
+            incidence2.getSecond(), context);
+    return (iso == null) ? null : BoundedDegree.bijection(vertexList1,
+        vertexList2, Arrays.copyOf(iso, n));
+  }
+
+  public static <V> PermGroup<V> preservingSubgroup(PermGroup<V> g,
+      Collection<? extends Set<V>> hyperedges) {
+    return preservingSubgroup(g, hyperedges, SearchContext.unbounded());
+  }
+
+  /**
+   * Returns the subgroup of {@code g} mapping the hyperedges onto themselves,
+   * each as often as it occurs. The sets in the orbits of the hyperedges under
+   * {@code g} are colored by their multiplicities, and the subgroup preserving
+   * those colors is found by {@link ColorPreserving#colorPreservingAction}.
+   *
+   * @throws SearchAbortedException if {@code context} stops the search
+   */
+  public static <V> PermGroup<V> preservingSubgroup(PermGroup<V> g,
+      Collection<? extends Set<V>> hyperedges, SearchContext context) {
+    if (hyperedges.isEmpty()) {
+      return g;
+    }
+    final Multiset<Set<V>> multiplicities = HashMultiset.create();
+    for (Set<V> e : hyperedges) {
+      multiplicities.add(ImmutableSet.copyOf(e));
+    }
+    Set<Set<V>> domain =
+        BoundedDegree.closure(g, multiplicities.elementSet());
+    Function<Set<V>, Integer> multiplicity = new Function<Set<V>, Integer>() {
+      @Override public Integer apply(Set<V> e) {
+        return multiplicities.count(e);
+      }
+    };
+    return ColorPreserving.colorPreservingAction(g, domain,
+        Colorings.coloring(multiplicity), context);
+  }
+
+  /**
+   * Returns the incidence graph of the hyperedges over {@code vertices}, with
+   * the vertices first and colored by {@code colors}, followed by the distinct
+   * hyperedges, colored by {@code colorCount} plus their multiplicities.
+   */
+  private static <V> Pair<IntGraph, int[]> incidence(List<V> vertices,
+      int[] colors, int colorCount,
+      Collection<? extends Set<? extends V>> hyperedges) {
+    int n = vertices.size();
+    Map<V, Integer> indices = Maps.newHashMapWithExpectedSize(n);
+    for (int v = 0; v < n; v++) {
+      indices.put(vertices.get(v), v);
+    }
+    Multiset<BitSet> bitsets = HashMultiset.create();
+    for (Set<? extends V> e : hyperedges) {
+      BitSet bits = new BitSet(n);
+      for (V v : e) {
+        Integer index = indices.get(v);
+        checkArgument(index != null, "%s is not a vertex", v);
+        bits.set(index);
+      }
+      bitsets.add(bits);
+    }
+    int[] incidenceColors = Arrays.copyOf(colors, n + bitsets.elementSet()
+      .size());
+    List<Integer> endpoints = Lists.newArrayList();
+    int h = n;
+    for (Multiset.Entry<BitSet> entry : bitsets.entrySet()) {
+      incidenceColors[h] = colorCount + entry.getCount();
+      BitSet bits = entry.getElement();
+      for (int v = bits.nextSetBit(0); v >= 0; v = bits.nextSetBit(v + 1)) {
+        endpoints.add(v);
+        endpoints.add(h);
+      }
+      h++;
+    }
+    return Pair.of(IntGraph.fromEdges(h, Ints.toArray(endpoints)),
+        incidenceColors);
+  }
+
+  private Hypergraphs() {
+  }
+}
@@ -0,0 +1,378 @@
+package math.graphs.iso;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.jgrapht.UndirectedGraph;
+
+/**
+ * An immutable simple undirected graph on the vertices {@code 0, ..., n - 1},
+ * stored in compressed sparse row form: the neighbors of every vertex are a
+ * sorted run of one array, so iterating over them touches contiguous memory,
+ * and adjacency is a binary search.
+ *
+ * <p>
+ * Within this package, a graph may also label each end of each edge, which is
+ * how {@link EdgeLabels} describes directed graphs, edge colors and multiple
+ * edges. The label of {@code v-w} at {@code v} must determine the label at
+ * {@code w}.
+ */
+public final class IntGraph {
+  /**
+   * Returns the graph of {@code g}, with each vertex numbered by its position
+   * in {@code vertices}, which must list every vertex of {@code g} once.
+   */
+  public static <V, E> IntGraph of(UndirectedGraph<V, E> g,
+      List<? extends V> vertices) {
+    int n = vertices.size();
+    checkArgument(n == g.vertexSet().size(),
+        "%s vertices listed for a graph of %s", n, g.vertexSet().size());
+    Map<V, Integer> indices = Maps.newHashMapWithExpectedSize(n);
+    for (int i = 0; i < n; i++) {
+      indices.put(vertices.get(i), i);
+    }
+    int[] endpoints = new int[2 * g.edgeSet().size()];
+    int k = 0;
+    for (E e : g.edgeSet()) {
+      endpoints[k++] = indices.get(g.getEdgeSource(e));
+      endpoints[k++] = indices.get(g.getEdgeTarget(e));
+    }
+    return fromEdges(n, endpoints);
+  }
+
+  /**
+   * Returns the graph on {@code n} vertices whose edges join
+   * {@code endpoints[2 * i]} and {@code endpoints[2 * i + 1]}.
+   *
+   * @throws IllegalArgumentException if the edges include a loop or a repeated
+   *         edge
+   */
+  public static IntGraph fromEdges(int n, int[] endpoints) {
+    return fromEdges(n, endpoints, null);
+  }
+
+  /**
+   * Returns the graph on {@code n} vertices whose edges join
+   * {@code endpoints[2 * i]} and {@code endpoints[2 * i + 1]}, labelled
+   * {@code labels[2 * i]} at the first end and {@code labels[2 * i + 1]} at
+   * the second, or unlabelled if {@code labels} is {@code null}.
+   */
+  static IntGraph fromEdges(int n, int[] endpoints, @Nullable int[] labels) {
+    checkArgument(endpoints.length % 2 == 0, "odd number of endpoints");
+    checkArgument(labels == null || labels.length == endpoints.length,
+        "%s labels for %s endpoints", (labels == null) ? 0 : labels.length,
+        endpoints.length);
+    int[] offsets = new int[n + 1];
+    for (int v : endpoints) {
+      offsets[v + 1]++;
+    }
+    for (int v = 0; v < n; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    int[] next = Arrays.copyOf(offsets, n);
+    int[] neighbors = new int[endpoints.length];
+    int[] ends = (labels == null) ? null : new int[endpoints.length];
+    for (int i = 0; i < endpoints.length; i += 2) {
+      int v = endpoints[i];
+      int w = endpoints[i + 1];
+      checkArgument(v != w, "loop at %s", v);
+      if (ends != null) {
+        ends[next[v]] = labels[i];
+        ends[next[w]] = labels[i + 1];
+      }
+      neighbors[next[v]++] = w;
+      neighbors[next[w]++] = v;
+    }
+    for (int v = 0; v < n; v++) {
+      sort(neighbors, ends, offsets[v], offsets[v + 1]);
+      for (int j = offsets[v] + 1; j < offsets[v + 1]; j++) {
+        checkArgument(neighbors[j] != neighbors[j - 1],
+            "repeated edge %s-%s", v, neighbors[j]);
+      }
+    }
+    return new IntGraph(offsets, neighbors, ends);
+  }
+
+  /**
+   * Sorts {@code neighbors[from]} up to {@code neighbors[to]}, moving their
+   * labels along.
+   */
+  private static void sort(int[] neighbors, @Nullable int[] labels, int from,
+      int to) {
+    if (labels == null) {
+      Arrays.sort(neighbors, from, to);
+      return;
+    }
+    long[] keyed = new long[to - from];
+    for (int j = from; j < to; j++) {
+      keyed[j - from] = ((long) neighbors[j] << 32) | labels[j];
+    }
+    Arrays.sort(keyed);
+    for (int j = from; j < to; j++) {
+      neighbors[j] = (int) (keyed[j - from] >>> 32);
+      labels[j] = (int) keyed[j - from];
+    }
+  }
+
+  private final int[] offsets;
+  private final int[] neighbors;
+  @Nullable private final int[] labels;
+
+  private IntGraph(int[] offsets, int[] neighbors, @Nullable int[] labels) {
+    this.offsets = offsets;
+    this.neighbors = neighbors;
+    this.labels = labels;
+  }
+
+  public int vertexCount() {
+    return offsets.length - 1;
+  }
+
+  public int edgeCount() {
+    return neighbors.length / 2;
+  }
+
+  public int degree(int v) {
+    return offsets[v + 1] - offsets[v];
+  }
+
+  /**
+   * Returns the {@code i}th neighbor of {@code v}, in increasing order.
+   */
+  public int neighbor(int v, int i) {
+    return neighbors[offsets[v] + i];
+  }
+
+  public boolean containsEdge(int v, int w) {
+    return Arrays.binarySearch(neighbors, offsets[v], offsets[v + 1], w) >= 0;
+  }
+
+  boolean isLabelled() {
+    return labels != null;
+  }
+
+  /**
+   * Returns the label at {@code v} of the edge to its {@code i}th neighbor, or
+   * 0 if this graph is unlabelled.
+   */
+  int label(int v, int i) {
+    return (labels == null) ? 0 : labels[offsets[v] + i];
+  }
+
+  /**
+   * Returns the label at {@code v} of the edge {@code v-w}, or -1 if there is
+   * no such edge.
+   */
+  int labelTo(int v, int w) {
+    int j = Arrays.binarySearch(neighbors, offsets[v], offsets[v + 1], w);
+    if (j < 0) {
+      return -1;
+    }
+    return (labels == null) ? 0 : labels[j];
+  }
+
+  /**
+   * Returns one more than the greatest label.
+   */
+  int labelCount() {
+    int count = 1;
+    if (labels != null) {
+      for (int label : labels) {
+        count = Math.max(count, label + 1);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the endpoints of the edges, two for each edge, the smaller first,
+   * in increasing order.
+   */
+  public int[] endpoints() {
+    int[] endpoints = new int[neighbors.length];
+    int k = 0;
+    for (int v = 0; v < vertexCount(); v++) {
+      for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+        if (v < neighbors[j]) {
+          endpoints[k++] = v;
+          endpoints[k++] = neighbors[j];
+        }
+      }
+    }
+    return endpoints;
+  }
+
+  /**
+   * Returns the labels of the ends of the edges, in the order of
+   * {@link #endpoints}.
+   */
+  int[] endpointLabels() {
+    int[] ends = new int[neighbors.length];
+    int k = 0;
+    for (int v = 0; v < vertexCount(); v++) {
+      for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+        if (v < neighbors[j]) {
+          ends[k++] = label(v, j - offsets[v]);
+          ends[k++] = labelTo(neighbors[j], v);
+        }
+      }
+    }
+    return ends;
+  }
+
+  /**
+   * Returns the vertices of each connected component in increasing order, with
+   * the components in order of their smallest vertices.
+   */
+  public List<int[]> components() {
+    int n = vertexCount();
+    boolean[] seen = new boolean[n];
+    int[] queue = new int[n];
+    List<int[]> components = Lists.newArrayList();
+    for (int s = 0; s < n; s++) {
+      if (seen[s]) {
+        continue;
+      }
+      seen[s] = true;
+      queue[0] = s;
+      int size = 1;
+      for (int i = 0; i < size; i++) {
+        int v = queue[i];
+        for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+          if (!seen[neighbors[j]]) {
+            seen[neighbors[j]] = true;
+            queue[size++] = neighbors[j];
+          }
+        }
+      }
+      int[] component = Arrays.copyOf(queue, size);
+      Arrays.sort(component);
+      components.add(component);
+    }
+    return components;
+  }
+
+  /**
+   * Returns the subgraph induced by {@code vertices}, with
+   * {@code vertices[i]} numbered {@code i}.
+   */
+  public IntGraph inducedSubgraph(int[] vertices) {
+    int[] index = new int[vertexCount()];
+    Arrays.fill(index, -1);
+    for (int i = 0; i < vertices.length; i++) {
+      index[vertices[i]] = i;
+    }
+    int[] offsets = new int[vertices.length + 1];
+    int[] neighbors = new int[this.neighbors.length];
+    int[] labels = (this.labels == null) ? null : new int[neighbors.length];
+    int k = 0;
+    for (int i = 0; i < vertices.length; i++) {
+      int v = vertices[i];
+      int start = k;
+      for (int j = this.offsets[v]; j < this.offsets[v + 1]; j++) {
+        if (index[this.neighbors[j]] >= 0) {
+          if (labels != null) {
+            labels[k] = this.labels[j];
+          }
+          neighbors[k++] = index[this.neighbors[j]];
+        }
+      }
+      sort(neighbors, labels, start, k);
+      offsets[i + 1] = k;
+    }
+    return new IntGraph(offsets, Arrays.copyOf(neighbors, k),
+        (labels == null) ? null : Arrays.copyOf(labels, k));
+  }
+
+  /**
+   * Returns the disjoint union of this graph and {@code other}, whose vertices
+   * follow this graph's. If only one graph is labelled, the edges of the
+   * other are labelled 0.
+   */
+  public IntGraph disjointUnion(IntGraph other) {
+    int n = vertexCount();
+    int[] offsets = Arrays.copyOf(this.offsets, n + other.offsets.length);
+    for (int v = 0; v < other.offsets.length; v++) {
+      offsets[n + v] = this.neighbors.length + other.offsets[v];
+    }
+    int[] neighbors =
+        Arrays.copyOf(this.neighbors, this.neighbors.length
+            + other.neighbors.length);
+    for (int j = 0; j < other.neighbors.length; j++) {
+      neighbors[this.neighbors.length + j] = n + other.neighbors[j];
+    }
+    int[] labels = null;
+    if (this.labels != null || other.labels != null) {
+      labels = new int[neighbors.length];
+      if (this.labels != null) {
+        System.arraycopy(this.labels, 0, labels, 0, this.labels.length);
+      }
+      if (other.labels != null) {
+        System.arraycopy(other.labels, 0, labels, this.neighbors.length,
+            other.labels.length);
+      }
+    }
+    return new IntGraph(offsets, neighbors, labels);
+  }
+
+  /**
+   * Returns this graph with each vertex {@code v} renamed {@code images[v]},
+   * where {@code images} is a permutation of {@code 0, ..., n - 1}.
+   */
+  public IntGraph relabel(int[] images) {
+    int n = vertexCount();
+    checkArgument(images.length == n, "%s images for %s vertices",
+        images.length, n);
+    int[] inverse = new int[n];
+    Arrays.fill(inverse, -1);
+    for (int v = 0; v < n; v++) {
+      checkArgument(inverse[images[v]] < 0, "repeated image %s", images[v]);
+      inverse[images[v]] = v;
+    }
+    int[] offsets = new int[n + 1];
+    int[] neighbors = new int[this.neighbors.length];
+    int[] labels = (this.labels == null) ? null : new int[neighbors.length];
+    for (int i = 0; i < n; i++) {
+      int v = inverse[i];
+      int start = offsets[i];
+      int k = start;
+      for (int j = this.offsets[v]; j < this.offsets[v + 1]; j++) {
+        if (labels != null) {
+          labels[k] = this.labels[j];
+        }
+        neighbors[k++] = images[this.neighbors[j]];
+      }
+      sort(neighbors, labels, start, k);
+      offsets[i + 1] = k;
+    }
+    return new IntGraph(offsets, neighbors, labels);
+  }
+
+  /**
+   * Returns {@code true} if {@code obj} is a graph on the same vertices with
+   * the same edges; isomorphic graphs are equal only once relabelled
+   * canonically.
+   */
+  @Override public boolean equals(Object obj) {
+    if (obj instanceof IntGraph) {
+      IntGraph other = (IntGraph) obj;
+      return Arrays.equals(offsets, other.offsets)
+          && Arrays.equals(neighbors, other.neighbors)
+          && Arrays.equals(labels, other.labels);
+    }
+    return false;
+  }
+
+  @Override public int hashCode() {
+    return 31 * (31 * Arrays.hashCode(offsets) + Arrays.hashCode(neighbors))
+        + Arrays.hashCode(labels);
+  }
+}
@@ -0,0 +1,333 @@
+package math.graphs.iso;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import math.algebra.permgroup.Groups;
+import math.structures.permutation.Permutation;
+
+/**
+ * Isomorphisms and automorphisms of colored forests, by the canonical names of
+ * Aho, Hopcroft and Ullman.
+ *
+ * <p>
+ * Each tree is rooted at its center, or at both ends of its central edge. A
+ * rooted subtree is named by the color of its root, the label of the edge
+ * above it if the forest is labelled, and the sorted names of the subtrees of
+ * its children, so two rooted subtrees are isomorphic exactly when their names
+ * are equal. Names are numbered through a table shared by the
+ * forests being compared and computed from the leaves up, so apart from
+ * sorting children this takes linear time.
+ *
+ * <p>
+ * Every automorphism of a forest is a product of permutations of the
+ * isomorphic subtrees below each vertex, of the two halves of a tree with a
+ * central edge, and of the isomorphic trees, so the automorphism group is
+ * generated by symmetric groups on each of those sets.
+ */
+final class Trees {
+  /**
+   * A forest rooted at the centers of its trees.
+   */
+  private static final class Forest {
+    private final int[] name;
+    private final int[][] children;
+    private final List<int[]> roots = Lists.newArrayList();
+    private final List<Integer> treeNames = Lists.newArrayList();
+
+    Forest(IntGraph g, int[] colors, Map<List<Integer>, Integer> names) {
+      int n = g.vertexCount();
+      this.name = new int[n];
+      this.children = new int[n][];
+      int[] degree = new int[n];
+      for (int v = 0; v < n; v++) {
+        degree[v] = g.degree(v);
+      }
+      int[] parent = new int[n];
+      Arrays.fill(parent, -2);
+      for (int s = 0; s < n; s++) {
+        if (parent[s] == -2) {
+          int[] center = center(g, component(g, s, parent), degree);
+          roots.add(center);
+          name(g, colors, names, center, parent);
+          if (center.length == 1) {
+            treeNames.add(name[center[0]]);
+          } else {
+            int a = Math.min(name[center[0]], name[center[1]]);
+            int b = Math.max(name[center[0]], name[center[1]]);
+            treeNames.add(name(names, ImmutableList.of(-1, a, b)));
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the vertices of the tree containing {@code s}, marking them in
+     * {@code parent}.
+     */
+    private static List<Integer> component(IntGraph g, int s, int[] parent) {
+      List<Integer> component = Lists.newArrayList(s);
+      parent[s] = -1;
+      for (int i = 0; i < component.size(); i++) {
+        int v = component.get(i);
+        for (int j = 0; j < g.degree(v); j++) {
+          int w = g.neighbor(v, j);
+          if (parent[w] == -2) {
+            parent[w] = -1;
+            component.add(w);
+          }
+        }
+      }
+      return component;
+    }
+
+    /**
+     * Returns the one or two vertices left after repeatedly removing every
+     * leaf of the tree, consuming {@code degree}.
+     */
+    private static int[] center(IntGraph g, List<Integer> tree, int[] degree) {
+      List<Integer> leaves = Lists.newArrayList();
+      for (int v : tree) {
+        if (degree[v] <= 1) {
+          leaves.add(v);
+        }
+      }
+      int remaining = tree.size();
+      while (remaining > 2) {
+        remaining -= leaves.size();
+        List<Integer> next = Lists.newArrayList();
+        for (int v : leaves) {
+          degree[v] = 0;
+          for (int j = 0; j < g.degree(v); j++) {
+            int w = g.neighbor(v, j);
+            if (degree[w] > 0 && --degree[w] == 1) {
+              next.add(w);
+            }
+          }
+        }
+        leaves = next;
+      }
+      return (leaves.size() == 1) ? new int[] {leaves.get(0)} : new int[] {
+          leaves.get(0), leaves.get(1)};
+    }
+
+    /**
+     * Names every subtree of the tree rooted at {@code center}, children
+     * before parents.
+     */
+    private void name(IntGraph g, int[] colors,
+        Map<List<Integer>, Integer> names, int[] center, int[] parent) {
+      List<Integer> order = Lists.newArrayList();
+      for (int r : center) {
+        order.add(r);
+        parent[r] = -1;
+      }
+      for (int i = 0; i < order.size(); i++) {
+        int v = order.get(i);
+        for (int j = 0; j < g.degree(v); j++) {
+          int w = g.neighbor(v, j);
+          if (w != parent[v] && parent[w] == -1 && !isCenter(center, w)) {
+            parent[w] = v;
+            order.add(w);
+          }
+        }
+      }
+      for (int i = order.size() - 1; i >= 0; i--) {
+        int v = order.get(i);
+        long[] keyed = new long[g.degree(v)];
+        int k = 0;
+        for (int j = 0; j < g.degree(v); j++) {
+          int w = g.neighbor(v, j);
+          if (parent[w] == v) {
+            keyed[k++] = ((long) name[w] << 32) | w;
+          }
+        }
+        Arrays.sort(keyed, 0, k);
+        children[v] = new int[k];
+        Integer[] key = new Integer[k + 2];
+        key[0] = colors[v];
+        // the label at v of the edge to its parent, or to the other center
+        int up = (parent[v] >= 0) ? parent[v]
+            : (center.length == 2) ? center[0] + center[1] - v : -1;
+        key[1] = (up < 0) ? -1 : g.labelTo(v, up);
+        for (int c = 0; c < k; c++) {
+          children[v][c] = (int) keyed[c];
+          key[c + 2] = (int) (keyed[c] >>> 32);
+        }
+        name[v] = name(names, Arrays.asList(key));
+      }
+    }
+
+    private static boolean isCenter(int[] center, int v) {
+      return center[0] == v || (center.length == 2 && center[1] == v);
+    }
+
+    private static int name(Map<List<Integer>, Integer> names,
+        List<Integer> key) {
+      Integer name = names.get(key);
+      if (name == null) {
+        names.put(key, name = names.size());
+      }
+      return name;
+    }
+  }
+
+  /**
+   * Returns whether {@code g} has no cycles.
+   */
+  static boolean isForest(IntGraph g) {
+    int n = g.vertexCount();
+    if (g.edgeCount() >= Math.max(n, 1)) {
+      return false;
+    }
+    int[] parent = new int[n];
+    for (int v = 0; v < n; v++) {
+      parent[v] = v;
+    }
+    int[] endpoints = g.endpoints();
+    for (int i = 0; i < endpoints.length; i += 2) {
+      int a = find(parent, endpoints[i]);
+      int b = find(parent, endpoints[i + 1]);
+      if (a == b) {
+        return false;
+      }
+      parent[a] = b;
+    }
+    return true;
+  }
+
+  private static int find(int[] parent, int v) {
+    while (parent[v] != v) {
+      v = parent[v] = parent[parent[v]];
+    }
+    return v;
+  }
+
+  /**
+   * Returns the images of the vertices of the forest {@code g1} under an
+   * isomorphism to the forest {@code g2} mapping {@code colors1} to
+   * {@code colors2}, or {@code null} if there is none. The colors of both
+   * forests must be numbered alike.
+   */
+  @Nullable static int[] isomorphism(IntGraph g1, int[] colors1, IntGraph g2,
+      int[] colors2) {
+    Map<List<Integer>, Integer> names = Maps.newHashMap();
+    Forest f1 = new Forest(g1, colors1, names);
+    Forest f2 = new Forest(g2, colors2, names);
+    if (f1.roots.size() != f2.roots.size()) {
+      return null;
+    }
+    ListMultimap<Integer, Integer> byName = ArrayListMultimap.create();
+    for (int t = 0; t < f2.roots.size(); t++) {
+      byName.put(f2.treeNames.get(t), t);
+    }
+    int[] iso = new int[g1.vertexCount()];
+    for (int t = 0; t < f1.roots.size(); t++) {
+      List<Integer> candidates = byName.get(f1.treeNames.get(t));
+      if (candidates.isEmpty()) {
+        return null;
+      }
+      mapTree(f1, f1.roots.get(t), f2,
+          f2.roots.get(candidates.remove(candidates.size() - 1)), iso);
+    }
+    return iso;
+  }
+
+  /**
+   * Returns generators of the automorphism group of the forest {@code g}
+   * preserving {@code colors}.
+   */
+  static List<Permutation<Integer>> automorphisms(IntGraph g, int[] colors) {
+    Forest f =
+        new Forest(g, colors, Maps.<List<Integer>, Integer> newHashMap());
+    List<Permutation<Integer>> generators = Lists.newArrayList();
+    for (int[] siblings : f.children) {
+      for (int i = 0, j; i < siblings.length; i = j) {
+        List<int[]> parts = Lists.newArrayList();
+        for (j = i; j < siblings.length
+            && f.name[siblings[j]] == f.name[siblings[i]]; j++) {
+          parts.add(new int[] {siblings[j]});
+        }
+        addSymmetric(f, parts, generators);
+      }
+    }
+    ListMultimap<Integer, int[]> trees = ArrayListMultimap.create();
+    for (int t = 0; t < f.roots.size(); t++) {
+      int[] center = f.roots.get(t);
+      trees.put(f.treeNames.get(t), center);
+      if (center.length == 2 && f.name[center[0]] == f.name[center[1]]) {
+        addSymmetric(f, ImmutableList.of(new int[] {center[0]},
+            new int[] {center[1]}), generators);
+      }
+    }
+    for (Collection<int[]> isomorphic : trees.asMap().values()) {
+      addSymmetric(f, (List<int[]>) isomorphic, generators);
+    }
+    return generators;
+  }
+
+  /**
+   * Adds generators of the symmetric group on the isomorphic {@code parts} of
+   * {@code f}, each given by its roots, acting on their vertices.
+   */
+  private static void addSymmetric(Forest f, List<int[]> parts,
+      List<Permutation<Integer>> generators) {
+    if (parts.size() < 2) {
+      return;
+    }
+    int n = f.name.length;
+    ImmutableSet.Builder<Integer> indices = ImmutableSet.builder();
+    for (int i = 0; i < parts.size(); i++) {
+      indices.add(i);
+    }
+    for (Permutation<Integer> pi : Groups.symmetric(indices.build())
+      .generators()) {
+      int[] images = new int[n];
+      for (int v = 0; v < n; v++) {
+        images[v] = v;
+      }
+      for (int i = 0; i < parts.size(); i++) {
+        mapTree(f, parts.get(i), f, parts.get(pi.apply(i)), images);
+      }
+      generators.add(BoundedDegree.permutation(images));
+    }
+  }
+
+  /**
+   * Maps the isomorphic subtrees of {@code f1} and {@code f2} with the roots
+   * {@code from} and {@code to} onto each other, matching children with equal
+   * names in order.
+   */
+  private static void mapTree(Forest f1, int[] from, Forest f2, int[] to,
+      int[] images) {
+    List<Integer> stack = Lists.newArrayList();
+    boolean flip = from.length == 2 && f1.name[from[0]] != f2.name[to[0]];
+    for (int i = 0; i < from.length; i++) {
+      stack.add(from[i]);
+      stack.add(to[flip ? 1 - i : i]);
+    }
+    while (!stack.isEmpty()) {
+      int y = stack.remove(stack.size() - 1);
+      int x = stack.remove(stack.size() - 1);
+      images[x] = y;
+      for (int c = 0; c < f1.children[x].length; c++) {
+        stack.add(f1.children[x][c]);
+        stack.add(f2.children[y][c]);
+      }
+    }
+  }
+
+  private Trees() {
+  }
+}
@@ -0,0 +1,19 @@
+package math.graphs.iso;
+
+/**
+ * A property of the vertices of a graph that isomorphisms preserve, used to
+ * color vertices apart before the searches of {@link BoundedDegree} start.
+ * Built-in invariants are in {@link VertexInvariants}.
+ *
+ * <p>
+ * Invariants are computed for many vertices at once from several threads, so
+ * implementations must not modify shared state.
+ */
+public interface VertexInvariant {
+  /**
+   * Returns the invariant of {@code v} in {@code g}, which must be the same
+   * for any vertex that an isomorphism of graphs maps {@code v} to. Different
+   * invariants may share a value, which only colors fewer vertices apart.
+   */
+  long invariant(IntGraph g, int v);
+}
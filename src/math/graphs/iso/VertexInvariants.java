@@ -0,0 +1,157 @@
+package math.graphs.iso;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Longs;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Built-in {@link VertexInvariant}s, and their combination with a coloring.
+ *
+ * <p>
+ * Degrees and the multisets of colors of neighbors are left out, since color
+ * refinement already accounts for them. The invariants here see what
+ * refinement cannot, such as the difference between the vertices of two
+ * regular graphs of the same degree.
+ *
+ * <p>
+ * Invariants are computed over ranges of vertices, which are forked in
+ * parallel when the computation runs in a
+ * {@link java.util.concurrent.ForkJoinPool}.
+ */
+public final class VertexInvariants {
+  /**
+   * The number of vertices whose invariants one task computes sequentially.
+   */
+  private static final int GRAIN = 64;
+
+  /**
+   * The number of triangles through each vertex.
+   */
+  public static final VertexInvariant TRIANGLES = new VertexInvariant() {
+    @Override public long invariant(IntGraph g, int v) {
+      long triangles = 0;
+      for (int i = 0; i < g.degree(v); i++) {
+        for (int j = i + 1; j < g.degree(v); j++) {
+          if (g.containsEdge(g.neighbor(v, i), g.neighbor(v, j))) {
+            triangles++;
+          }
+        }
+      }
+      return triangles;
+    }
+  };
+
+  /**
+   * A hash of the numbers of vertices at each distance from each vertex.
+   */
+  public static final VertexInvariant DISTANCES = new VertexInvariant() {
+    @Override public long invariant(IntGraph g, int v) {
+      int n = g.vertexCount();
+      int[] distance = new int[n];
+      Arrays.fill(distance, -1);
+      int[] queue = new int[n];
+      int head = 0;
+      int tail = 0;
+      distance[v] = 0;
+      queue[tail++] = v;
+      long hash = 1;
+      while (head < tail) {
+        // the vertices at one distance are queued together
+        int end = tail;
+        hash = hash * 0x9E3779B97F4A7C15L + (end - head);
+        for (; head < end; head++) {
+          int u = queue[head];
+          for (int i = 0; i < g.degree(u); i++) {
+            int w = g.neighbor(u, i);
+            if (distance[w] < 0) {
+              distance[w] = distance[u] + 1;
+              queue[tail++] = w;
+            }
+          }
+        }
+      }
+      return hash;
+    }
+  };
+
+  /**
+   * Computes the invariants of the vertices {@code from} to {@code to},
+   * splitting the range in half until it is small.
+   */
+  private static final class Task extends RecursiveAction {
+    private static final long serialVersionUID = 0;
+
+    private final IntGraph g;
+    private final List<? extends VertexInvariant> invariants;
+    private final long[][] values;
+    private final int from;
+    private final int to;
+
+    Task(IntGraph g, List<? extends VertexInvariant> invariants,
+        long[][] values, int from, int to) {
+      this.g = g;
+      this.invariants = invariants;
+      this.values = values;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected void compute() {
+      if (to - from > GRAIN && ForkJoinTask.inForkJoinPool()) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Task(g, invariants, values, from, mid), new Task(g,
+            invariants, values, mid, to));
+        return;
+      }
+      for (int v = from; v < to; v++) {
+        for (int i = 0; i < invariants.size(); i++) {
+          values[v][i + 1] = invariants.get(i).invariant(g, v);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns {@code colors} refined by {@code invariants}: two vertices get the
+   * same color when they had the same color and every invariant agrees on
+   * them. Colors are numbered through {@code palette}, so graphs refined with
+   * the same palette have comparable colors. Without invariants,
+   * {@code colors} is returned as it is.
+   */
+  static int[] refine(IntGraph g, int[] colors,
+      List<? extends VertexInvariant> invariants,
+      Map<List<Long>, Integer> palette) {
+    if (invariants.isEmpty()) {
+      return colors;
+    }
+    int n = g.vertexCount();
+    long[][] values = new long[n][invariants.size() + 1];
+    for (int v = 0; v < n; v++) {
+      values[v][0] = colors[v];
+    }
+    Task task = new Task(g, ImmutableList.copyOf(invariants), values, 0, n);
+    if (ForkJoinTask.inForkJoinPool()) {
+      task.invoke();
+    } else {
+      task.compute();
+    }
+    int[] refined = new int[n];
+    for (int v = 0; v < n; v++) {
+      List<Long> key = Longs.asList(values[v]);
+      Integer color = palette.get(key);
+      if (color == null) {
+        palette.put(key, color = palette.size());
+      }
+      refined[v] = color;
+    }
+    return refined;
+  }
+
+  private VertexInvariants() {
+  }
+}
@@ -0,0 +1,88 @@
+package math.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics which accumulate totals in memory: a count for each counter, the
+ * maximum depth reached, and the number, total and maximum of the times
+ * recorded for each timer.
+ */
+public final class CountingMetrics implements Metrics {
+  private static final int N_TIMERS = Timer.values().length;
+
+  public static CountingMetrics create() {
+    return new CountingMetrics();
+  }
+
+  private final AtomicLongArray counts =
+      new AtomicLongArray(Counter.values().length);
+  private final AtomicInteger maxDepth = new AtomicInteger();
+  // count, total and maximum for each timer, in that order
+  private final AtomicLongArray times = new AtomicLongArray(3 * N_TIMERS);
+
+  private CountingMetrics() {
+  }
+
+  @Override public void increment(Counter counter) {
+    counts.incrementAndGet(counter.ordinal());
+  }
+
+  @Override public void recordDepth(int depth) {
+    int max;
+    do {
+      max = maxDepth.get();
+    } while (depth > max && !maxDepth.compareAndSet(max, depth));
+  }
+
+  @Override public void recordTime(Timer timer, long nanos) {
+    int i = timer.ordinal();
+    times.incrementAndGet(i);
+    times.addAndGet(N_TIMERS + i, nanos);
+    long max;
+    do {
+      max = times.get(2 * N_TIMERS + i);
+    } while (nanos > max && !times.compareAndSet(2 * N_TIMERS + i, max, nanos));
+  }
+
+  public long count(Counter counter) {
+    return counts.get(counter.ordinal());
+  }
+
+  public int maxDepth() {
+    return maxDepth.get();
+  }
+
+  /**
+   * Returns the number of times recorded for {@code timer}.
+   */
+  public long count(Timer timer) {
+    return times.get(timer.ordinal());
+  }
+
+  public long totalTime(Timer timer, TimeUnit unit) {
+    return unit.convert(times.get(N_TIMERS + timer.ordinal()),
+        TimeUnit.NANOSECONDS);
+  }
+
+  public long maxTime(Timer timer, TimeUnit unit) {
+    return unit.convert(times.get(2 * N_TIMERS + timer.ordinal()),
+        TimeUnit.NANOSECONDS);
+  }
+
+  @Override public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+    for (Counter counter : Counter.values()) {
+      builder.append(counter).append('=').append(count(counter)).append(", ");
+    }
+    builder.append("maxDepth=").append(maxDepth());
+    for (Timer timer : Timer.values()) {
+      builder.append(", ").append(timer).append("={count=")
+        .append(count(timer)).append(", totalMs=")
+        .append(totalTime(timer, TimeUnit.MILLISECONDS)).append(", maxMs=")
+        .append(maxTime(timer, TimeUnit.MILLISECONDS)).append('}');
+    }
+    return builder.append('}').toString();
+  }
+}
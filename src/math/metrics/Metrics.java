@@ -0,0 +1,56 @@
+package math.metrics;
+
+/**
+ * Receives counts and timings of the main costs of group computations, so
+ * that hot paths can be found in production without a profiler.
+ *
+ * <p>
+ * The instance installed in {@link MetricsRegistry} is called from inner
+ * loops, possibly from several threads at once, so implementations must be
+ * thread-safe and cheap.
+ *
+ * <p>
+ * No Java Flight Recorder implementation is provided: the {@code jdk.jfr}
+ * event API needs JDK 11, and this library targets Java 7. An adapter on a
+ * newer JDK can emit events from this interface.
+ */
+public interface Metrics {
+  /**
+   * Events counted by {@link Metrics#increment}.
+   */
+  public static enum Counter {
+    /** A composition of two permutations. */
+    COMPOSITIONS,
+    /** A permutation sifted through coset tables. */
+    SIFTS,
+    /** A coset table created. */
+    TABLES_CREATED,
+    /** A recursive call of the color preserving search. */
+    COLOR_PRESERVING_CALLS,
+    /** A coset branched into by the color preserving search. */
+    COLOR_PRESERVING_BRANCHES,
+    /** A block system refined by merging the blocks of two points. */
+    BLOCK_REFINEMENTS,
+    /** An automorphism group answered from an automorphism cache. */
+    AUTOMORPHISM_CACHE_HITS,
+    /** An automorphism group computed and added to an automorphism cache. */
+    AUTOMORPHISM_CACHE_MISSES;
+  }
+
+  /**
+   * Sections timed by {@link Metrics#recordTime}.
+   */
+  public static enum Timer {
+    /** One layer of the bounded degree automorphism group computation. */
+    AUTOMORPHISM_LAYER;
+  }
+
+  void increment(Counter counter);
+
+  /**
+   * Records that a recursive search reached depth {@code depth}.
+   */
+  void recordDepth(int depth);
+
+  void recordTime(Timer timer, long nanos);
+}
@@ -0,0 +1,49 @@
+package math.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import math.metrics.Metrics.Counter;
+import math.metrics.Metrics.Timer;
+
+/**
+ * Holds the {@link Metrics} which group computations report to. By default,
+ * reports are discarded.
+ */
+public final class MetricsRegistry {
+  private static final Metrics NO_OP = new Metrics() {
+    @Override public void increment(Counter counter) {
+    }
+
+    @Override public void recordDepth(int depth) {
+    }
+
+    @Override public void recordTime(Timer timer, long nanos) {
+    }
+  };
+
+  private static volatile Metrics current = NO_OP;
+
+  /**
+   * Returns metrics which discard every report.
+   */
+  public static Metrics noOp() {
+    return NO_OP;
+  }
+
+  public static Metrics current() {
+    return current;
+  }
+
+  /**
+   * Sends every later report to {@code metrics}, and returns the metrics
+   * installed before, so that they can be restored.
+   */
+  public static Metrics install(Metrics metrics) {
+    Metrics previous = current;
+    current = checkNotNull(metrics);
+    return previous;
+  }
+
+  private MetricsRegistry() {
+  }
+}
@@ -1,8 +1,12 @@
 package math.numbertheory;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
 import com.google.common.collect.ForwardingList;
 import com.google.common.collect.ImmutableList;
 
+import java.math.BigInteger;
 import java.util.BitSet;
 import java.util.List;
 
@@ -10,44 +14,46 @@ import math.numbertheory.Factorization.Factor;
 
 public final class Factorization extends ForwardingList<Factor> {
   public static final class Factor {
-    private final int prime;
+    private final BigInteger prime;
     private final int exponent;
-    private transient int product = 0;
+    private transient BigInteger product = null;
 
     Factor(int prime, int exponent) {
+      this(BigInteger.valueOf(prime), exponent);
+    }
+
+    Factor(BigInteger prime, int exponent) {
       this.prime = prime;
       this.exponent = exponent;
     }
 
+    public BigInteger getBigPrime() {
+      return prime;
+    }
+
+    public BigInteger getBigProduct() {
+      return (product == null) ? product = prime.pow(exponent) : product;
+    }
+
     public int getExponent() {
       return exponent;
     }
 
     public int getPrime() {
-      return prime;
+      checkState(prime.bitLength() < Integer.SIZE, "%s does not fit in an int",
+          prime);
+      return prime.intValue();
     }
 
     public int getProduct() {
-      if (product == 0) {
-        int acc = 1;
-        int base = prime;
-        int exp = exponent;
-        while (true) {
-          switch (exp) {
-            case 0:
-              return product = acc;
-            case 1:
-              return product = base * acc;
-            default:
-              if ((exp & 1) != 0) {
-                acc *= base;
-              }
-              base *= base;
-              exp >>= 1;
-          }
-        }
-      }
-      return product;
+      BigInteger product = getBigProduct();
+      checkState(product.bitLength() < Integer.SIZE,
+          "%s does not fit in an int", product);
+      return product.intValue();
+    }
+
+    @Override public String toString() {
+      return (exponent == 1) ? prime.toString() : prime + "^" + exponent;
     }
   }
   private static final class FactoredOut {
@@ -62,6 +68,8 @@ public final class Factorization extends ForwardingList<Factor> {
     }
   }
 
+  private static final int CERTAINTY = 50;
+
   private static final BitSet SMALL_PRIMES = new BitSet(1000);
 
   static {
@@ -76,14 +84,15 @@ public final class Factorization extends ForwardingList<Factor> {
   public static Factorization factorize(int n) {
     int n0 = n;
     ImmutableList.Builder<Factor> builder = ImmutableList.builder();
-    for (int p = 2; p < 1000 && p * p <= n; p = SMALL_PRIMES.nextSetBit(p + 1)) {
+    for (int p = 2; p > 0 && p * p <= n; p = SMALL_PRIMES.nextSetBit(p + 1)) {
       FactoredOut factored = factorOut(n, p);
       if (factored.exponent > 0) {
         builder.add(new Factor(factored.factor, factored.exponent));
         n = factored.quotient;
       }
     }
-    for (int p = 1001; p * p <= n; p++) {
+    // p * p may overflow for a large prime cofactor, so divide instead
+    for (int p = 1001; p <= n / p; p++) {
       FactoredOut factored = factorOut(n, p);
       if (factored.exponent > 0) {
         builder.add(new Factor(factored.factor, factored.exponent));
@@ -93,6 +102,39 @@ public final class Factorization extends ForwardingList<Factor> {
     if (n > 1) {
       builder.add(new Factor(n, 1));
     }
+    return new Factorization(builder.build(), BigInteger.valueOf(n0));
+  }
+
+  /**
+   * Factorizes {@code n} by trial division, assuming that all but at most one
+   * of its prime factors are small. This is always the case for the orders of
+   * permutation groups, whose prime factors are bounded by the degree.
+   */
+  public static Factorization factorize(BigInteger n) {
+    checkArgument(n.signum() > 0, "%s is not positive", n);
+    if (n.bitLength() < Integer.SIZE) {
+      return factorize(n.intValue());
+    }
+    BigInteger n0 = n;
+    ImmutableList.Builder<Factor> builder = ImmutableList.builder();
+    for (BigInteger p = BigInteger.valueOf(2); n.bitLength() >= Integer.SIZE
+        && !n.isProbablePrime(CERTAINTY); p = p.nextProbablePrime()) {
+      int exponent = 0;
+      BigInteger[] quotRem = n.divideAndRemainder(p);
+      while (quotRem[1].signum() == 0) {
+        exponent++;
+        n = quotRem[0];
+        quotRem = n.divideAndRemainder(p);
+      }
+      if (exponent > 0) {
+        builder.add(new Factor(p, exponent));
+      }
+    }
+    if (n.bitLength() < Integer.SIZE) {
+      builder.addAll(factorize(n.intValue()));
+    } else {
+      builder.add(new Factor(n, 1));
+    }
     return new Factorization(builder.build(), n0);
   }
 
@@ -100,7 +142,9 @@ public final class Factorization extends ForwardingList<Factor> {
     if (n % p != 0) {
       return new FactoredOut(p, 0, n);
     }
-    FactoredOut f = factorOut(n, p * p);
+    // p * p may overflow, but then it certainly does not divide n
+    FactoredOut f =
+        (p <= n / p) ? factorOut(n, p * p) : new FactoredOut(p, 0, n);
     f.factor = p;
     f.exponent *= 2;
     if (f.quotient % p == 0) {
@@ -111,17 +155,22 @@ public final class Factorization extends ForwardingList<Factor> {
   }
 
   private final List<Factor> factors;
-  private final int n;
+  private final BigInteger n;
 
-  private Factorization(List<Factor> factors, int n) {
+  private Factorization(List<Factor> factors, BigInteger n) {
     this.factors = factors;
     this.n = n;
   }
 
-  public int getProduct() {
+  public BigInteger getBigProduct() {
     return n;
   }
 
+  public int getProduct() {
+    checkState(n.bitLength() < Integer.SIZE, "%s does not fit in an int", n);
+    return n.intValue();
+  }
+
   @Override protected List<Factor> delegate() {
     return factors;
   }
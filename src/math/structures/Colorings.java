@@ -4,14 +4,9 @@ import com.google.common.base.Equivalence;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Objects;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -56,26 +51,13 @@ public final class Colorings {
     return coloring(Functions.forMap(colorMap));
   }
 
+  /**
+   * Returns the color classes of {@code domain}, in order of their first
+   * points. See {@link IntColoring} for the cost.
+   */
   public static <E> Collection<Set<E>> colors(Set<E> domain,
       Equivalence<? super E> coloring) {
-    List<E> todo = Lists.newLinkedList(domain);
-    ImmutableList.Builder<Set<E>> colors = ImmutableList.builder();
-    while (!todo.isEmpty()) {
-      ImmutableSet.Builder<E> color = ImmutableSet.builder();
-      Iterator<E> iter = todo.iterator();
-      E a = iter.next();
-      iter.remove();
-      color.add(a);
-      while (iter.hasNext()) {
-        E b = iter.next();
-        if (coloring.equivalent(a, b)) {
-          iter.remove();
-          color.add(b);
-        }
-      }
-      colors.add(color.build());
-    }
-    return colors.build();
+    return IntColoring.of(domain, coloring).colors();
   }
 
   private Colorings() {
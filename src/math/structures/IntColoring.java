@@ -0,0 +1,167 @@
+package math.structures;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A coloring of a fixed set of points, compiled to an array of integer colors
+ * so that comparing the colors of two points costs two lookups rather than
+ * calls to the coloring. Colors are numbered from zero in order of first
+ * appearance.
+ *
+ * <p>
+ * Compiling an {@link Equivalence} buckets the points by
+ * {@link Equivalence#hash}, and only compares a point with one representative
+ * of each color class in its bucket, which takes linear time unless the hash
+ * is poor.
+ */
+public final class IntColoring<E> {
+  public static <E> IntColoring<E> of(Collection<? extends E> points,
+      Equivalence<? super E> coloring) {
+    ImmutableList<E> pointList = ImmutableList.copyOf(points);
+    int[] colors = new int[pointList.size()];
+    Map<Integer, List<Integer>> buckets = Maps.newHashMap();
+    List<E> representatives = Lists.newArrayList();
+    for (int i = 0; i < colors.length; i++) {
+      E e = pointList.get(i);
+      int hash = coloring.hash(e);
+      List<Integer> bucket = buckets.get(hash);
+      if (bucket == null) {
+        buckets.put(hash, bucket = Lists.newArrayListWithCapacity(1));
+      }
+      colors[i] = -1;
+      for (int color : bucket) {
+        if (coloring.equivalent(representatives.get(color), e)) {
+          colors[i] = color;
+          break;
+        }
+      }
+      if (colors[i] < 0) {
+        colors[i] = representatives.size();
+        bucket.add(colors[i]);
+        representatives.add(e);
+      }
+    }
+    return new IntColoring<E>(pointList, colors, representatives.size());
+  }
+
+  public static <E> IntColoring<E> of(Collection<? extends E> points,
+      Function<? super E, ?> coloring) {
+    return of(points, coloring, Maps.<Object, Integer> newHashMap());
+  }
+
+  /**
+   * Compiles {@code coloring}, numbering its colors through {@code palette},
+   * which is updated with any new colors. Colorings compiled with the same
+   * palette give equal colors the same number.
+   */
+  public static <E> IntColoring<E> of(Collection<? extends E> points,
+      Function<? super E, ?> coloring, Map<Object, Integer> palette) {
+    ImmutableList<E> pointList = ImmutableList.copyOf(points);
+    int[] colors = new int[pointList.size()];
+    for (int i = 0; i < colors.length; i++) {
+      Object color = coloring.apply(pointList.get(i));
+      Integer number = palette.get(color);
+      if (number == null) {
+        palette.put(color, number = palette.size());
+      }
+      colors[i] = number;
+    }
+    return new IntColoring<E>(pointList, colors, palette.size());
+  }
+
+  private final ImmutableList<E> points;
+  private final Map<E, Integer> indices;
+  private final int[] colors;
+  private final int colorCount;
+
+  private IntColoring(ImmutableList<E> points, int[] colors, int colorCount) {
+    this.points = points;
+    this.colors = colors;
+    this.colorCount = colorCount;
+    this.indices = Maps.newHashMapWithExpectedSize(points.size());
+    for (int i = 0; i < colors.length; i++) {
+      indices.put(points.get(i), i);
+    }
+  }
+
+  /**
+   * Returns the color of {@code e}, or {@code -1} if it is not one of the
+   * points.
+   */
+  public int color(@Nullable Object e) {
+    Integer index = indices.get(e);
+    return (index == null) ? -1 : colors[index];
+  }
+
+  public int colorAt(int index) {
+    return colors[index];
+  }
+
+  /**
+   * Returns the colors of the points, in order.
+   */
+  public int[] toArray() {
+    return colors.clone();
+  }
+
+  /**
+   * Returns an upper bound on the colors, which are less than this.
+   */
+  public int colorCount() {
+    return colorCount;
+  }
+
+  /**
+   * Returns the color classes, in order of their first points, with the points
+   * of each in order.
+   */
+  public Collection<Set<E>> colors() {
+    List<ImmutableSet.Builder<E>> classes =
+        Lists.newArrayListWithCapacity(colorCount);
+    int[] order = new int[colorCount];
+    Arrays.fill(order, -1);
+    for (int i = 0; i < colors.length; i++) {
+      int color = colors[i];
+      if (order[color] < 0) {
+        order[color] = classes.size();
+        classes.add(ImmutableSet.<E> builder());
+      }
+      classes.get(order[color]).add(points.get(i));
+    }
+    ImmutableList.Builder<Set<E>> builder = ImmutableList.builder();
+    for (ImmutableSet.Builder<E> colorClass : classes) {
+      builder.add(colorClass.build());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the position of {@code e} among the points, or {@code -1} if it is
+   * not one of them.
+   */
+  public int indexOf(@Nullable Object e) {
+    Integer index = indices.get(e);
+    return (index == null) ? -1 : index;
+  }
+
+  public List<E> points() {
+    return points;
+  }
+
+  public int size() {
+    return colors.length;
+  }
+}
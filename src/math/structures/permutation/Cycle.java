@@ -3,6 +3,7 @@ package math.structures.permutation;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -28,7 +29,7 @@ final class Cycle<E> extends MapPermutation<E> {
   }
 
   @Override public boolean stabilizes(Set<E> s) {
-    return s.isEmpty() || s.containsAll(domain());
+    return Collections.disjoint(s, domain()) || s.containsAll(domain());
   }
 
   @Override protected int computeOrder() {
@@ -29,10 +29,6 @@ final class InversePermutation<E> extends AbstractPermutation<E> {
         ((InversePermutation<?>) obj).forward) : super.equals(obj);
   }
 
-  @Override public int hashCode() {
-    return forward.hashCode();
-  }
-
   @Override public Permutation<E> inverse() {
     return forward;
   }
@@ -5,17 +5,25 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import math.metrics.Metrics;
+import math.metrics.Metrics.Counter;
+import math.metrics.MetricsRegistry;
+
 public final class Permutations {
   private static final Permutation<Object> IDENTITY =
       new AbstractPermutation<Object>() {
@@ -97,6 +105,10 @@ public final class Permutations {
     if (sigmas.size() == 1) {
       return sigma;
     }
+    Metrics metrics = MetricsRegistry.current();
+    for (int i = 1; i < sigmas.size(); i++) {
+      metrics.increment(Counter.COMPOSITIONS);
+    }
     return sigma.compose(sigmas.subList(1, sigmas.size()));
   }
 
@@ -111,9 +123,33 @@ public final class Permutations {
     return compose(ImmutableList.of(sigma1, sigma2, sigma3));
   }
 
+  /**
+   * Returns the commutator {@code sigma^-1 tau^-1 sigma tau}, which is the
+   * identity exactly when {@code sigma} and {@code tau} commute.
+   */
+  public static <E> Permutation<E> commutator(Permutation<E> sigma,
+      Permutation<E> tau) {
+    return compose(ImmutableList.of(sigma.inverse(), tau.inverse(), sigma,
+        tau));
+  }
+
+  /**
+   * Returns {@code tau^-1 sigma tau}, which maps {@code tau^-1(e)} to
+   * {@code tau^-1(sigma(e))}. It is built directly, without composing.
+   */
   public static <E> Permutation<E> conjugate(Permutation<E> sigma,
       Permutation<E> tau) {
-    return compose(tau.inverse(), sigma, tau);
+    if (sigma.isIdentity()) {
+      return sigma;
+    }
+    ImmutableBiMap.Builder<E, E> builder = ImmutableBiMap.builder();
+    for (E e : sigma.domain()) {
+      E image = sigma.apply(e);
+      if (!Objects.equal(e, image)) {
+        builder.put(tau.preimage(e), tau.preimage(image));
+      }
+    }
+    return new MapPermutation<E>(builder.build());
   }
 
   public static <E> Permutation<E> cycle(List<E> cycle) {
@@ -121,6 +157,27 @@ public final class Permutations {
         cycle);
   }
 
+  /**
+   * Returns the lengths of the nontrivial cycles of {@code sigma}, in
+   * decreasing order. Two permutations are conjugate in the symmetric group
+   * exactly when they have the same cycle type.
+   */
+  public static <E> List<Integer> cycleType(Permutation<E> sigma) {
+    List<Integer> lengths = Lists.newArrayList();
+    Set<E> todo = Sets.newHashSet(sigma.domain());
+    while (!todo.isEmpty()) {
+      int length = 0;
+      for (E e = todo.iterator().next(); todo.remove(e); e = sigma.apply(e)) {
+        length++;
+      }
+      if (length > 1) {
+        lengths.add(length);
+      }
+    }
+    Collections.sort(lengths, Collections.reverseOrder());
+    return ImmutableList.copyOf(lengths);
+  }
+
   @SuppressWarnings("unchecked") public static <E> Permutation<E> identity() {
     return (Permutation) IDENTITY;
   }
@@ -142,6 +199,28 @@ public final class Permutations {
     return permutation(map);
   }
 
+  /**
+   * Returns {@code sigma} composed with itself {@code k} times. Negative
+   * exponents are taken modulo the order of {@code sigma}.
+   */
+  public static <E> Permutation<E> power(Permutation<E> sigma, int k) {
+    Map<E, E> map = Maps.newHashMapWithExpectedSize(sigma.domain().size());
+    Set<E> todo = Sets.newLinkedHashSet(sigma.domain());
+    List<E> cycle = Lists.newArrayList();
+    while (!todo.isEmpty()) {
+      cycle.clear();
+      for (E e = todo.iterator().next(); todo.remove(e); e = sigma.apply(e)) {
+        cycle.add(e);
+      }
+      int len = cycle.size();
+      int shift = ((k % len) + len) % len;
+      for (int i = 0; i < len; i++) {
+        map.put(cycle.get(i), cycle.get((i + shift) % len));
+      }
+    }
+    return permutation(map);
+  }
+
   public static <E> Permutation<E> permutation(Map<E, E> map) {
     return new MapPermutation<E>(map);
   }
@@ -7,6 +7,7 @@ import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import java.util.List;
 import java.util.Map;
@@ -31,17 +32,11 @@ final class Transposition<E> extends AbstractPermutation<E> {
     if (taus.isEmpty()) {
       return this;
     }
-    Map<E, E> map = Maps.newHashMap(Permutations.compose(taus).asMap());
-    E aImage = map.get(b);
-    if (aImage == null) {
-      aImage = b;
+    Permutation<E> tau = Permutations.compose(taus);
+    Map<E, E> map = Maps.newHashMap();
+    for (E e : Sets.union(domain(), tau.domain())) {
+      map.put(e, apply(tau.apply(e)));
     }
-    E bImage = map.get(a);
-    if (bImage == null) {
-      bImage = a;
-    }
-    map.put(a, aImage);
-    map.put(b, bImage);
     return Permutations.permutation(map);
   }
 
@@ -70,7 +65,7 @@ final class Transposition<E> extends AbstractPermutation<E> {
   }
 
   @Override public boolean stabilizes(Set<E> s) {
-    return s.isEmpty() || (s.contains(a) && s.contains(b));
+    return s.contains(a) == s.contains(b);
   }
 
   @Override protected Map<E, E> createAsMap() {
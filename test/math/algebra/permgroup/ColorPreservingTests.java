@@ -8,9 +8,12 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 import math.structures.Colorings;
+import math.structures.permutation.Permutation;
 
 public class ColorPreservingTests extends TestCase {
   private static final Set<Integer> SET = ImmutableSet.of(1, 2, 3, 4, 5, 6, 7);
@@ -43,4 +46,117 @@ public class ColorPreservingTests extends TestCase {
     assertEquals(PRESERVING_2,
         ColorPreserving.colorPreserving(SYMMETRIC, SET, COLORING_2));
   }
+
+  public void testColorPreservingParallel() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertEquals(PRESERVING_1, ColorPreserving.colorPreserving(SYMMETRIC,
+          SET, COLORING_1, pool));
+      assertEquals(PRESERVING_2, ColorPreserving.colorPreserving(SYMMETRIC,
+          SET, COLORING_2, pool));
+      // from a sequential search to forking every level
+      for (int depth : new int[] {0, 1, SET.size()}) {
+        assertEquals(PRESERVING_1, ColorPreserving.colorPreserving(SYMMETRIC,
+            SET, COLORING_1, pool, depth, SearchContext.unbounded()));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testSearchContext() {
+    SearchContext budget = SearchContext.withBudget(1);
+    try {
+      ColorPreserving.colorPreserving(SYMMETRIC, SET, COLORING_1, budget);
+      fail();
+    } catch (SearchAbortedException expected) {
+      assertEquals(SearchAbortedException.Reason.BUDGET, expected.getReason());
+      assertEquals(2, expected.getSteps());
+    }
+    SearchContext cancelled = SearchContext.create();
+    cancelled.cancel();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      ColorPreserving.colorPreserving(SYMMETRIC, SET, COLORING_1, pool,
+          cancelled);
+      fail();
+    } catch (SearchAbortedException expected) {
+      assertEquals(SearchAbortedException.Reason.CANCELLED,
+          expected.getReason());
+    } finally {
+      pool.shutdown();
+    }
+    SearchContext generous =
+        SearchContext.create(1, TimeUnit.MINUTES, Long.MAX_VALUE);
+    assertEquals(PRESERVING_1, ColorPreserving.colorPreserving(SYMMETRIC, SET,
+        COLORING_1, generous));
+    assertTrue(generous.steps() > 1);
+  }
+
+  public void testChildContext() {
+    SearchContext parent = SearchContext.withBudget(1);
+    SearchContext child = parent.child();
+    child.step();
+    assertEquals(1, parent.steps());
+    try {
+      child.step();
+      fail();
+    } catch (SearchAbortedException expected) {
+      assertEquals(SearchAbortedException.Reason.BUDGET, expected.getReason());
+    }
+    SearchContext running = SearchContext.create();
+    SearchContext cancelled = running.child();
+    cancelled.cancel();
+    try {
+      cancelled.step();
+      fail();
+    } catch (SearchAbortedException expected) {
+      assertEquals(SearchAbortedException.Reason.CANCELLED,
+          expected.getReason());
+    }
+    running.step();
+    assertFalse(running.isCancelled());
+  }
+
+  public void testStringIsomorphisms() {
+    Function<Integer, Integer> reversed = new Function<Integer, Integer>() {
+      @Override public Integer apply(Integer input) {
+        return (8 - input) % 3;
+      }
+    };
+    Function<Integer, Integer> mod3 = new Function<Integer, Integer>() {
+      @Override public Integer apply(Integer input) {
+        return input % 3;
+      }
+    };
+    LCoset<Integer> isomorphisms =
+        ColorPreserving.stringIsomorphisms(SYMMETRIC, SET, mod3, reversed);
+    assertEquals(PRESERVING_1.size(), isomorphisms.getGroup().size());
+    for (Permutation<Integer> sigma : isomorphisms) {
+      for (Integer i : SET) {
+        assertEquals(mod3.apply(i), reversed.apply(sigma.apply(i)));
+      }
+    }
+    Function<Integer, Integer> mod4 = new Function<Integer, Integer>() {
+      @Override public Integer apply(Integer input) {
+        return input % 4;
+      }
+    };
+    assertNull(ColorPreserving.stringIsomorphisms(SYMMETRIC, SET, mod3, mod4));
+    try {
+      ColorPreserving.stringIsomorphisms(SYMMETRIC, SET, mod3, reversed,
+          SearchContext.withBudget(1));
+      fail();
+    } catch (SearchAbortedException expected) {
+      assertEquals(SearchAbortedException.Reason.BUDGET, expected.getReason());
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertEquals(PRESERVING_1.size(), ColorPreserving.stringIsomorphisms(
+          SYMMETRIC, SET, mod3, reversed, pool, SearchContext.unbounded())
+        .getGroup().size());
+    } finally {
+      pool.shutdown();
+    }
+  }
 }
@@ -1,8 +1,16 @@
 package math.algebra.permgroup;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 import math.structures.permutation.Permutation;
@@ -73,4 +81,148 @@ public class PermGroupTests extends TestCase {
         };
     assertEquals(group1, group12.subgroup(stabilizes3));
   }
+
+  @SuppressWarnings("unchecked") public void testCentralizer() {
+    PermGroup<Integer> s7 = Groups.symmetric(domainPQ);
+    PermGroup<Integer> regularS7 =
+        Groups.generateGroup(ImmutableList.copyOf(s7.generators()));
+    // (1 2 3)(5 7) has centralizer C3 x C2 x S2 in S7, of order 12
+    PermGroup<Integer> expected =
+        Groups.generateGroup(p2, q1, Permutations.transposition(4, 6));
+    assertEquals(expected, s7.centralizer(pq1));
+    assertEquals(expected, regularS7.centralizer(pq1));
+    assertEquals(Groups.generateGroup(p2), Groups.generateGroup(p1, p2)
+      .centralizer(p2));
+  }
+
+  @SuppressWarnings("unchecked") public void testCentralizerOfGroup() {
+    PermGroup<Integer> s7 = Groups.symmetric(domainPQ);
+    PermGroup<Integer> h = Groups.generateGroup(p1, q1);
+    PermGroup<Integer> expected =
+        Groups.generateGroup(p1, q1, Permutations.transposition(3, 4),
+            Permutations.transposition(4, 6));
+    assertEquals(expected, s7.centralizer(h));
+  }
+
+  @SuppressWarnings("unchecked") public void testNormalizer() {
+    PermGroup<Integer> s4 = Groups.symmetric(domainP);
+    PermGroup<Integer> c3 = Groups.generateGroup(p2);
+    // the normalizer of <(1 2 3)> in S4 is S3 on {1, 2, 3}
+    assertEquals(Groups.generateGroup(p1, p2), s4.normalizer(c3));
+    PermGroup<Integer> klein =
+        Groups.generateGroup(Permutations.permutation(ImmutableMap.of(1, 2, 2,
+            1, 3, 4, 4, 3)), Permutations.permutation(ImmutableMap.of(1, 3, 3,
+            1, 2, 4, 4, 2)));
+    assertEquals(24, s4.normalizer(klein).size());
+  }
+
+  public void testConjugacyClasses() {
+    PermGroup<Integer> s4 = Groups.symmetric(domainP);
+    List<ConjugacyClass<Integer>> classes = s4.conjugacyClasses();
+    assertEquals(5, classes.size());
+    BigInteger total = BigInteger.ZERO;
+    Set<List<Integer>> cycleTypes = Sets.newHashSet();
+    for (ConjugacyClass<Integer> c : classes) {
+      total = total.add(c.getSize());
+      assertEquals(BigInteger.valueOf(24), c.getSize().multiply(
+          c.getCentralizerOrder()));
+      cycleTypes.add(Permutations.cycleType(c.getRepresentative()));
+    }
+    assertEquals(BigInteger.valueOf(24), total);
+    assertEquals(5, cycleTypes.size());
+  }
+
+  public void testConjugacyClassesInPool() {
+    PermGroup<Integer> s4 = Groups.symmetric(domainP);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertEquals(s4.conjugacyClasses().size(), ConjugacyClasses
+        .conjugacyClasses(s4, pool).size());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testConjugatingElement() {
+    Permutation<Integer> c1 = Permutations.cycle(ImmutableList.of(1, 2, 3));
+    Permutation<Integer> c2 = Permutations.cycle(ImmutableList.of(4, 3, 2));
+    Permutation<Integer> c3 = Permutations.cycle(ImmutableList.of(1, 3, 2));
+    PermGroup<Integer> s4 = Groups.symmetric(domainP);
+    PermGroup<Integer> generated =
+        Groups.generateGroup(ImmutableList.copyOf(s4.generators()));
+    for (PermGroup<Integer> g : ImmutableList.of(s4, generated)) {
+      Permutation<Integer> tau = g.conjugatingElement(c1, c2);
+      assertTrue(g.contains(tau));
+      assertEquals(c2, Permutations.conjugate(c1, tau));
+      assertNull(g.conjugatingElement(c1, p1));
+    }
+    // (1 2 3) and (1 3 2) are not conjugate in the cyclic group they generate
+    assertNull(Groups.generateGroup(ImmutableList.<Permutation<Integer>> of(c1))
+      .conjugatingElement(c1, c3));
+    assertNotNull(Groups.generateGroup(
+        ImmutableList.<Permutation<Integer>> of(p1, p2)).conjugatingElement(c1,
+        c3));
+  }
+
+  @SuppressWarnings("unchecked") public void testIntersection() {
+    PermGroup<Integer> s4 = Groups.symmetric(domainP);
+    PermGroup<Integer> d4 =
+        Groups.generateGroup(Permutations.cycle(ImmutableList.of(1, 2, 3, 4)),
+            Permutations.transposition(1, 3));
+    PermGroup<Integer> a4 =
+        Groups.generateGroup(p2, Permutations.cycle(ImmutableList.of(2, 3, 4)));
+    assertEquals(d4, s4.intersection(d4));
+    // D4 and A4 share the Klein four-group of double transpositions
+    PermGroup<Integer> klein = d4.intersection(a4);
+    assertEquals(4, klein.size());
+    assertEquals(klein, a4.intersection(d4));
+    for (Permutation<Integer> sigma : klein) {
+      assertTrue(sigma.isIdentity() || sigma.order() == 2 && sigma.domain()
+        .size() == 4);
+    }
+    PermGroup<Integer> g = Groups.generateGroup(pq1);
+    assertEquals(Groups.generateGroup(p2), g.intersection(a4));
+  }
+
+  @SuppressWarnings("unchecked") public void testNormalClosure() {
+    PermGroup<Integer> s4 = Groups.symmetric(domainP);
+    assertEquals(24, s4.normalClosure(Groups.generateGroup(p1)).size());
+    Permutation<Integer> doubleTransposition =
+        Permutations.permutation(ImmutableMap.of(1, 2, 2, 1, 3, 4, 4, 3));
+    assertEquals(4, s4.normalClosure(
+        Groups.generateGroup(doubleTransposition)).size());
+  }
+
+  private static List<Integer> orders(List<PermGroup<Integer>> series) {
+    List<Integer> orders = Lists.newArrayList();
+    for (PermGroup<Integer> g : series) {
+      orders.add(g.size());
+    }
+    return orders;
+  }
+
+  public void testDerivedSeries() {
+    PermGroup<Integer> s4 =
+        Groups.generateGroup(ImmutableList.copyOf(Groups.symmetric(domainP)
+          .generators()));
+    assertEquals(ImmutableList.of(24, 12, 4, 1), orders(s4.derivedSeries()));
+    assertTrue(s4.isSolvable());
+    assertFalse(s4.isNilpotent());
+    PermGroup<Integer> s5 = Groups.symmetric(ImmutableSet.of(1, 2, 3, 4, 5));
+    assertEquals(ImmutableList.of(120, 60), orders(s5.derivedSeries()));
+    assertFalse(s5.isSolvable());
+  }
+
+  @SuppressWarnings("unchecked") public void testLowerCentralSeries() {
+    PermGroup<Integer> s3 = Groups.generateGroup(p1, p2);
+    assertEquals(ImmutableList.of(6, 3), orders(s3.lowerCentralSeries()));
+    assertFalse(s3.isNilpotent());
+    // D4 x C3 is nilpotent, but not a p-group
+    PermGroup<Integer> g =
+        Groups.generateGroup(Permutations.cycle(ImmutableList.of(1, 2, 3, 4)),
+            Permutations.transposition(1, 3), Permutations.cycle(ImmutableList
+              .of(5, 6, 7)));
+    assertEquals(ImmutableList.of(24, 2, 1), orders(g.lowerCentralSeries()));
+    assertTrue(g.isNilpotent());
+  }
 }
@@ -0,0 +1,84 @@
+package math.algebra.permgroup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.math.BigInteger;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import math.numbertheory.Factorization;
+import math.structures.permutation.Permutations;
+
+public class SylowSystemTests extends TestCase {
+  private static final Set<Integer> SET = ImmutableSet.of(1, 2, 3, 4, 5);
+
+  public void testFactorizeBig() {
+    BigInteger n = BigInteger.valueOf(2).pow(40).multiply(
+        BigInteger.valueOf(3).pow(7)).multiply(BigInteger.valueOf(1000003));
+    Factorization f = Factorization.factorize(n);
+    assertEquals(3, f.size());
+    assertEquals(2, f.get(0).getPrime());
+    assertEquals(40, f.get(0).getExponent());
+    assertEquals(3, f.get(1).getPrime());
+    assertEquals(7, f.get(1).getExponent());
+    assertEquals(1000003, f.get(2).getPrime());
+    assertEquals(n, f.getBigProduct());
+  }
+
+  public void testFactorizeLargePrime() {
+    Factorization f = Factorization.factorize(Integer.MAX_VALUE);
+    assertEquals(1, f.size());
+    assertEquals(Integer.MAX_VALUE, f.get(0).getPrime());
+    // a prime above 1000 times one whose square overflows
+    f = Factorization.factorize(1009 * 2128319);
+    assertEquals(2, f.size());
+    assertEquals(1009, f.get(0).getPrime());
+    assertEquals(2128319, f.get(1).getPrime());
+  }
+
+  public void testSymmetricSylows() {
+    PermGroup<Integer> s5 = Groups.generateGroup(ImmutableList.copyOf(Groups
+      .symmetric(SET).generators()));
+    SylowSystem<Integer> system = SylowSystem.sylowSystem(s5);
+    assertEquals(ImmutableSet.of(2, 3, 5), system.sylowSubgroups().keySet());
+    assertEquals(8, system.sylowSubgroup(2).size());
+    assertEquals(3, system.sylowSubgroup(3).size());
+    assertEquals(5, system.sylowSubgroup(5).size());
+    assertEquals(15, system.sylowSubgroup(2).index());
+    assertEquals(15, ImmutableSet.copyOf(
+        system.sylowSubgroup(2).asCosets()).size());
+    assertTrue(system.sylowSubgroup(5).isSubgroupOf(s5));
+  }
+
+  public void testSymmetricEight() {
+    PermGroup<Integer> s8 =
+        Groups.symmetric(ImmutableSet.of(1, 2, 3, 4, 5, 6, 7, 8));
+    SylowSystem<Integer> system = SylowSystem.sylowSystem(s8);
+    assertEquals(128, system.sylowSubgroup(2).size());
+    assertEquals(9, system.sylowSubgroup(3).size());
+    assertEquals(5, system.sylowSubgroup(5).size());
+    assertEquals(7, system.sylowSubgroup(7).size());
+    assertEquals(315, system.sylowSubgroup(2).index());
+  }
+
+  @SuppressWarnings("unchecked") public void testHallSubgroup() {
+    // S4 x C5, whose Hall {2, 3}-subgroups are the copies of S4.
+    PermGroup<Integer> g =
+        Groups.generateGroup(Permutations.transposition(1, 2), Permutations
+          .cycle(ImmutableList.of(1, 2, 3, 4)), Permutations.cycle(ImmutableList
+          .of(5, 6, 7, 8, 9)));
+    SylowSystem<Integer> system = SylowSystem.sylowSystem(g);
+    PermGroup<Integer> hall = system.hallSubgroup(ImmutableSet.of(2, 3));
+    assertNotNull(hall);
+    assertEquals(24, hall.size());
+    assertTrue(hall.isSubgroupOf(g));
+  }
+
+  public void testNoHallSubgroup() {
+    // S5 has no subgroup of order 40, and is not solvable
+    SylowSystem<Integer> system =
+        SylowSystem.sylowSystem(Groups.symmetric(SET));
+    assertNull(system.hallSubgroup(ImmutableSet.of(2, 5)));
+  }
+}
@@ -0,0 +1,131 @@
+package math.graphs.canon;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import math.graphs.iso.IntGraph;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+public class CanonizerTest extends TestCase {
+  private static SimpleGraph<Integer, Object> cycle(int n, int step) {
+    SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < n; i++) {
+      Graphs.addEdgeWithVertices(g, (step * i) % n, (step * i + step) % n);
+    }
+    return g;
+  }
+
+  private static SimpleGraph<Integer, Object> prism(int n) {
+    SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < n; i++) {
+      Graphs.addEdgeWithVertices(g, i, (i + 1) % n);
+      Graphs.addEdgeWithVertices(g, n + i, n + (i + 1) % n);
+      g.addEdge(i, n + i);
+    }
+    return g;
+  }
+
+  public void testRelabelled() {
+    // 3 is coprime to 10, so the cycles are the same with different labels
+    CanonicalForm<Integer> form1 = Canonizer.canonicalForm(cycle(10, 1));
+    CanonicalForm<Integer> form2 = Canonizer.canonicalForm(cycle(10, 3));
+    assertEquals(form1.getCertificate(), form2.getCertificate());
+    assertEquals(10, form1.getCertificate().vertexCount());
+    assertEquals(10, form1.getCertificate().edgeCount());
+  }
+
+  public void testNonIsomorphic() {
+    SimpleGraph<Integer, Object> triangles = cycle(3, 1);
+    for (int i = 0; i < 3; i++) {
+      Graphs.addEdgeWithVertices(triangles, 3 + i, 3 + (i + 1) % 3);
+    }
+    assertFalse(Canonizer.canonicalForm(cycle(6, 1)).getCertificate()
+      .equals(Canonizer.canonicalForm(triangles).getCertificate()));
+  }
+
+  public void testCanonicalGraph() {
+    IntGraph g1 = intGraph(cycle(10, 1));
+    IntGraph g2 = intGraph(cycle(10, 3));
+    assertFalse(g1.equals(g2));
+    assertEquals(Canonizer.canonicalGraph(g1), Canonizer.canonicalGraph(g2));
+    IntGraph triangles =
+        IntGraph.fromEdges(6, new int[] {0, 1, 1, 2, 2, 0, 3, 4, 4, 5, 5, 3});
+    assertFalse(Canonizer.canonicalGraph(intGraph(cycle(6, 1))).equals(
+        Canonizer.canonicalGraph(triangles)));
+  }
+
+  private static IntGraph intGraph(SimpleGraph<Integer, Object> g) {
+    List<Integer> vertices = Lists.newArrayList();
+    for (int i = 0; i < g.vertexSet().size(); i++) {
+      vertices.add(i);
+    }
+    return IntGraph.of(g, vertices);
+  }
+
+  public void testPetersen() {
+    SimpleGraph<Integer, Object> petersen =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < 5; i++) {
+      Graphs.addEdgeWithVertices(petersen, i, (i + 1) % 5);
+      Graphs.addEdgeWithVertices(petersen, 5 + i, 5 + (i + 2) % 5);
+      petersen.addEdge(i, 5 + i);
+    }
+    assertEquals(BigInteger.valueOf(120),
+        Canonizer.canonicalForm(petersen).getAutomorphismGroup().order());
+  }
+
+  public void testPrism() {
+    for (int n = 5; n <= 8; n++) {
+      assertEquals(BigInteger.valueOf(4 * n),
+          Canonizer.canonicalForm(prism(n)).getAutomorphismGroup().order());
+    }
+  }
+
+  public void testColored() {
+    Function<Integer, Boolean> inner = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer v) {
+        return v >= 6;
+      }
+    };
+    Function<Integer, Boolean> outer = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer v) {
+        return v < 6;
+      }
+    };
+    CanonicalForm<Integer> form = Canonizer.canonicalForm(prism(6), inner);
+    assertEquals(BigInteger.valueOf(12), form.getAutomorphismGroup().order());
+    // swapping the colors of the two cycles gives an isomorphic graph
+    assertEquals(form.getCertificate(),
+        Canonizer.canonicalForm(prism(6), outer).getCertificate());
+    assertTrue(form.getLabelling().get(0) < form.getLabelling().get(6));
+  }
+
+  public void testVertexCount() {
+    Function<Integer, String> colors = new Function<Integer, String>() {
+      @Override public String apply(Integer v) {
+        return (v < 2) ? "a" : "b";
+      }
+    };
+    // an edge of the second graph is coded like the colors of the first
+    SimpleGraph<Integer, Object> empty =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int v = 0; v < 4; v++) {
+      empty.addVertex(v);
+    }
+    SimpleGraph<Integer, Object> edge =
+        new SimpleGraph<Integer, Object>(Object.class);
+    Graphs.addEdgeWithVertices(edge, 0, 1);
+    edge.addVertex(2);
+    assertFalse(Canonizer.canonicalForm(empty, colors).getCertificate()
+      .equals(Canonizer.canonicalForm(edge, colors).getCertificate()));
+  }
+}
@@ -0,0 +1,76 @@
+package math.graphs.canon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+import math.graphs.iso.IntGraph;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+public class IsomorphismClassesTest extends TestCase {
+  private static SimpleGraph<Integer, Object> cycles(int n, int step,
+      int copies) {
+    SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int c = 0; c < copies; c++) {
+      for (int i = 0; i < n; i++) {
+        Graphs.addEdgeWithVertices(g, c * n + (step * i) % n, c * n
+            + (step * i + step) % n);
+      }
+    }
+    return g;
+  }
+
+  private static SimpleGraph<Integer, Object> path(int n) {
+    SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    g.addVertex(0);
+    for (int i = 1; i < n; i++) {
+      Graphs.addEdgeWithVertices(g, i - 1, i);
+    }
+    return g;
+  }
+
+  public void testClassify() {
+    // C6 and two triangles share every invariant but their certificates
+    List<SimpleGraph<Integer, Object>> graphs =
+        ImmutableList.of(cycles(6, 1, 1), cycles(3, 1, 2), path(6),
+            cycles(6, 5, 1), cycles(3, 2, 2), path(1));
+    for (ForkJoinPool pool : new ForkJoinPool[] {null, new ForkJoinPool()}) {
+      IsomorphismClasses<SimpleGraph<Integer, Object>> classes =
+          IsomorphismClasses.classify(graphs, pool);
+      assertEquals(4, classes.size());
+      assertEquals(ImmutableList.of(graphs.get(0), graphs.get(1),
+          graphs.get(2), graphs.get(5)), classes.representatives());
+      assertEquals(ImmutableList.of(0, 3), classes.members(0));
+      assertEquals(ImmutableList.of(1, 4), classes.members(1));
+      assertEquals(1, classes.classOf(4));
+      assertEquals(3, classes.classOf(5));
+    }
+  }
+
+  public void testClassifyIntGraphs() {
+    // more graphs than fit in one batch: the cycles C5, C6 and two triangles,
+    // relabelled
+    List<IntGraph> graphs = Lists.newArrayList();
+    for (int i = 0; i < 3000; i++) {
+      graphs.add(IntGraph.of(cycles(6, 1, 1), ImmutableList.of(i % 6,
+          (i + 1) % 6, (i + 2) % 6, (i + 3) % 6, (i + 4) % 6, (i + 5) % 6)));
+      graphs.add(IntGraph.of(cycles(3, 1, 2), ImmutableList.of(i % 6,
+          (i + 1) % 6, (i + 2) % 6, (i + 3) % 6, (i + 4) % 6, (i + 5) % 6)));
+      graphs.add(IntGraph.of(cycles(5, 2, 1), ImmutableList.of(i % 5,
+          (i + 1) % 5, (i + 2) % 5, (i + 3) % 5, (i + 4) % 5)));
+    }
+    IsomorphismClasses<IntGraph> classes =
+        IsomorphismClasses.classify(graphs, new ForkJoinPool());
+    assertEquals(3, classes.size());
+    assertSame(graphs.get(1), classes.representatives().get(1));
+    assertEquals(3000, classes.members(2).size());
+    assertEquals(1, classes.classOf(8998));
+  }
+}
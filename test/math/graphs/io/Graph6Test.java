@@ -0,0 +1,116 @@
+package math.graphs.io;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import math.graphs.iso.IntGraph;
+
+public class Graph6Test extends TestCase {
+  private static IntGraph random(Random random, int n, double p) {
+    int[] endpoints = new int[n * (n - 1)];
+    int k = 0;
+    for (int j = 1; j < n; j++) {
+      for (int i = 0; i < j; i++) {
+        if (random.nextDouble() < p) {
+          endpoints[k++] = i;
+          endpoints[k++] = j;
+        }
+      }
+    }
+    return IntGraph.fromEdges(n, Arrays.copyOf(endpoints, k));
+  }
+
+  public void testGraph6() {
+    // the example of the format description
+    IntGraph g = IntGraph.fromEdges(5, new int[] {0, 2, 0, 4, 1, 3, 3, 4});
+    assertEquals("DQc", Graph6.encodeGraph6(g));
+    assertEquals(g, Graph6.decode("DQc"));
+    assertEquals(g, Graph6.decode(">>graph6<<DQc"));
+  }
+
+  public void testSparse6() {
+    // the example of the format description
+    IntGraph g = IntGraph.fromEdges(7, new int[] {0, 1, 0, 2, 1, 2, 5, 6});
+    assertEquals(":Fa@x^", Graph6.encodeSparse6(g));
+    assertEquals(g, Graph6.decode(":Fa@x^"));
+  }
+
+  public void testPetersen() {
+    IntGraph petersen = Graph6.decode("IheA@GUAo");
+    assertEquals(10, petersen.vertexCount());
+    assertEquals(15, petersen.edgeCount());
+    for (int v = 0; v < 10; v++) {
+      assertEquals(3, petersen.degree(v));
+    }
+  }
+
+  public void testRoundTrip() {
+    Random random = new Random(0);
+    for (int n = 0; n <= 70; n++) {
+      for (double p : new double[] {0.05, 0.5}) {
+        IntGraph g = random(random, n, p);
+        assertEquals(g, Graph6.decode(Graph6.encodeGraph6(g)));
+        assertEquals(g, Graph6.decode(Graph6.encodeSparse6(g)));
+      }
+    }
+  }
+
+  public void testSparse6Padding() {
+    // with n = 2^k and the last edge ending at n - 2, plain padding would
+    // decode as an extra edge
+    IntGraph g = IntGraph.fromEdges(4, new int[] {0, 1, 0, 2, 1, 2});
+    assertEquals(g, Graph6.decode(Graph6.encodeSparse6(g)));
+    g = IntGraph.fromEdges(16, new int[] {0, 14, 1, 14, 2, 14, 3, 14});
+    assertEquals(g, Graph6.decode(Graph6.encodeSparse6(g)));
+  }
+
+  public void testInvalid() {
+    try {
+      Graph6.decode("D");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testStreaming() throws IOException {
+    Random random = new Random(1);
+    StringWriter text = new StringWriter();
+    Graph6Writer writer = new Graph6Writer(text);
+    IntGraph[] graphs = new IntGraph[50];
+    for (int i = 0; i < graphs.length; i++) {
+      graphs[i] = random(random, 1 + random.nextInt(100), 0.1);
+      writer.write(graphs[i]);
+    }
+    writer.close();
+
+    File file = File.createTempFile("graphs", ".g6");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(text.toString().replace("\n", "\r\n\n").getBytes("US-ASCII"));
+    out.close();
+
+    // a small window, so that lines run past it
+    Graph6Reader reader =
+        new Graph6Reader(new RandomAccessFile(file, "r").getChannel(), 64);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(graphs[i], reader.next());
+    }
+    List<IntGraph> batch = reader.nextBatch(20);
+    assertEquals(Arrays.asList(graphs).subList(10, 30), batch);
+    assertEquals(Arrays.asList(graphs).subList(30, 50), ImmutableList
+      .copyOf(reader.graphs()));
+    assertNull(reader.next());
+    assertEquals(50, reader.count());
+    reader.close();
+  }
+}
@@ -0,0 +1,229 @@
+package math.graphs.iso;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+import math.algebra.permgroup.PermGroup;
+import math.metrics.CountingMetrics;
+import math.metrics.Metrics;
+import math.metrics.Metrics.Counter;
+import math.metrics.MetricsRegistry;
+import math.structures.permutation.Permutation;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+public class AutomorphismCacheTest extends TestCase {
+  /**
+   * Returns the prism over a {@code k}-cycle, with its vertices numbered
+   * from {@code offset} in steps of {@code step}.
+   */
+  private static SimpleGraph<Integer, Object> prism(int k, int offset,
+      int step) {
+    SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < k; i++) {
+      int a = offset + step * i;
+      Graphs.addEdgeWithVertices(g, a, offset + step * ((i + 1) % k));
+      Graphs.addEdgeWithVertices(g, offset + step * (k + i), offset + step
+          * (k + (i + 1) % k));
+      g.addEdge(a, offset + step * (k + i));
+    }
+    return g;
+  }
+
+  private static void assertAutomorphisms(SimpleGraph<Integer, Object> g,
+      PermGroup<Integer> group) {
+    for (Permutation<Integer> sigma : group.generators()) {
+      for (Object e : g.edgeSet()) {
+        assertTrue(g.containsEdge(sigma.apply(g.getEdgeSource(e)),
+            sigma.apply(g.getEdgeTarget(e))));
+      }
+    }
+  }
+
+  public void testHit() {
+    AutomorphismCache cache = AutomorphismCache.create(16);
+    CountingMetrics metrics = CountingMetrics.create();
+    Metrics previous = MetricsRegistry.install(metrics);
+    try {
+      assertEquals(48, cache.automorphismGroup(prism(4, 0, 1)).size());
+      SimpleGraph<Integer, Object> relabelled = prism(4, 100, 3);
+      PermGroup<Integer> group = cache.automorphismGroup(relabelled);
+      assertEquals(48, group.size());
+      assertAutomorphisms(relabelled, group);
+    } finally {
+      MetricsRegistry.install(previous);
+    }
+    assertEquals(1, metrics.count(Counter.AUTOMORPHISM_CACHE_MISSES));
+    assertEquals(1, metrics.count(Counter.AUTOMORPHISM_CACHE_HITS));
+  }
+
+  public void testColors() {
+    AutomorphismCache cache = AutomorphismCache.create(16);
+    SimpleGraph<Integer, Object> g = prism(4, 0, 1);
+    Function<Integer, Boolean> top = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer v) {
+        return v < 4;
+      }
+    };
+    // the cube, and then the symmetries of its top face
+    assertEquals(48, cache.automorphismGroup(g).size());
+    assertEquals(8, cache.automorphismGroup(g, top).size());
+    assertEquals(48, cache.automorphismGroup(g).size());
+  }
+
+  public void testEviction() {
+    AutomorphismCache cache = AutomorphismCache.create(2);
+    CountingMetrics metrics = CountingMetrics.create();
+    Metrics previous = MetricsRegistry.install(metrics);
+    try {
+      cache.automorphismGroup(prism(4, 0, 1));
+      cache.automorphismGroup(prism(5, 0, 1));
+      cache.automorphismGroup(prism(4, 0, 1));
+      // the third graph evicts the least recently used, the 5-prism
+      cache.automorphismGroup(prism(6, 0, 1));
+      cache.automorphismGroup(prism(4, 0, 1));
+      cache.automorphismGroup(prism(5, 0, 1));
+    } finally {
+      MetricsRegistry.install(previous);
+    }
+    assertEquals(2, metrics.count(Counter.AUTOMORPHISM_CACHE_HITS));
+    assertEquals(4, metrics.count(Counter.AUTOMORPHISM_CACHE_MISSES));
+  }
+
+  public void testPersistent() throws IOException {
+    File directory = File.createTempFile("automorphisms", "");
+    assertTrue(directory.delete());
+    try {
+      AutomorphismCache.create(16, directory).automorphismGroup(
+          prism(5, 0, 1));
+      AutomorphismCache.create(16, directory).automorphismGroup(
+          prism(4, 0, 1));
+      CountingMetrics metrics = CountingMetrics.create();
+      Metrics previous = MetricsRegistry.install(metrics);
+      SimpleGraph<Integer, Object> relabelled = prism(5, 7, 2);
+      AutomorphismCache cache = AutomorphismCache.create(16, directory);
+      PermGroup<Integer> group;
+      try {
+        group = cache.automorphismGroup(relabelled);
+        assertEquals(48, cache.automorphismGroup(prism(4, 3, 5)).size());
+      } finally {
+        MetricsRegistry.install(previous);
+      }
+      assertEquals(2, metrics.count(Counter.AUTOMORPHISM_CACHE_HITS));
+      assertEquals(20, group.size());
+      assertAutomorphisms(relabelled, group);
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  public void testEvictionPersistent() throws IOException {
+    File directory = File.createTempFile("automorphisms", "");
+    assertTrue(directory.delete());
+    try {
+      AutomorphismCache cache = AutomorphismCache.create(1, directory);
+      CountingMetrics metrics = CountingMetrics.create();
+      Metrics previous = MetricsRegistry.install(metrics);
+      try {
+        cache.automorphismGroup(prism(4, 0, 1));
+        cache.automorphismGroup(prism(5, 0, 1));
+        long length = length(directory);
+        // each graph evicts the other, and is read back from its file
+        for (int i = 0; i < 3; i++) {
+          assertEquals(48, cache.automorphismGroup(prism(4, 1, 3)).size());
+          assertEquals(20, cache.automorphismGroup(prism(5, 1, 3)).size());
+        }
+        assertEquals(length, length(directory));
+      } finally {
+        MetricsRegistry.install(previous);
+      }
+      assertEquals(2, metrics.count(Counter.AUTOMORPHISM_CACHE_MISSES));
+      assertEquals(6, metrics.count(Counter.AUTOMORPHISM_CACHE_HITS));
+    } finally {
+      delete(directory);
+    }
+  }
+
+  public void testConcurrentMisses() throws Exception {
+    File directory = File.createTempFile("automorphisms", "");
+    assertTrue(directory.delete());
+    final AutomorphismCache cache = AutomorphismCache.create(1, directory);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    CountingMetrics metrics = CountingMetrics.create();
+    Metrics previous = MetricsRegistry.install(metrics);
+    try {
+      List<Future<PermGroup<Integer>>> futures = Lists.newArrayList();
+      for (int i = 0; i < 8; i++) {
+        final int offset = i;
+        futures.add(executor.submit(new Callable<PermGroup<Integer>>() {
+          @Override public PermGroup<Integer> call() {
+            return cache.automorphismGroup(prism(6, offset, 1));
+          }
+        }));
+      }
+      for (Future<PermGroup<Integer>> future : futures) {
+        assertEquals(24, future.get().size());
+      }
+      assertEquals(1, metrics.count(Counter.AUTOMORPHISM_CACHE_MISSES));
+      assertEquals(1, directory.listFiles().length);
+    } finally {
+      MetricsRegistry.install(previous);
+      executor.shutdown();
+      delete(directory);
+    }
+  }
+
+  private static long length(File directory) {
+    long length = 0;
+    for (File file : directory.listFiles()) {
+      length += file.length();
+    }
+    return length;
+  }
+
+  private static void delete(File directory) {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  public void testHash() {
+    IntGraph g = IntGraph.fromEdges(4, new int[] {0, 1, 1, 2, 2, 3});
+    IntGraph reversed = g.relabel(new int[] {3, 2, 1, 0});
+    IntGraph star = IntGraph.fromEdges(4, new int[] {0, 1, 0, 2, 0, 3});
+    ImmutableList<String> palette = ImmutableList.of("");
+    int[] colors = new int[4];
+    assertEquals(AutomorphismCache.hash(g, palette, colors),
+        AutomorphismCache.hash(reversed, palette, colors));
+    assertFalse(AutomorphismCache.hash(g, palette, colors) == AutomorphismCache
+      .hash(star, palette, colors));
+  }
+
+  public void testHashRegular() {
+    // the triangular prism and K_{3,3} are both cubic on six vertices
+    IntGraph prism = IntGraph.fromEdges(6,
+        new int[] {0, 1, 1, 2, 2, 0, 3, 4, 4, 5, 5, 3, 0, 3, 1, 4, 2, 5});
+    IntGraph k33 = IntGraph.fromEdges(6,
+        new int[] {0, 3, 0, 4, 0, 5, 1, 3, 1, 4, 1, 5, 2, 3, 2, 4, 2, 5});
+    ImmutableList<String> palette = ImmutableList.of("");
+    int[] colors = new int[6];
+    assertFalse(AutomorphismCache.hash(prism, palette, colors)
+        == AutomorphismCache.hash(k33, palette, colors));
+  }
+}
@@ -1,18 +1,27 @@
 package math.graphs.iso;
 
+import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 import math.algebra.permgroup.Groups;
 import math.algebra.permgroup.PermGroup;
+import math.algebra.permgroup.SearchContext;
+import math.structures.Colorings;
 import math.structures.permutation.Permutations;
 
 import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.Pseudograph;
 import org.jgrapht.graph.SimpleGraph;
 
 public class BoundedDegreeTest extends TestCase {
@@ -35,4 +44,229 @@ public class BoundedDegreeTest extends TestCase {
             Permutations.cycle(cyc)));
     assertEquals(dihedral, aut);
   }
+
+  public void testIntGraph() {
+    // the 3-prism, with the colors of one triangle apart
+    IntGraph prism =
+        IntGraph.fromEdges(6, new int[] {0, 1, 1, 2, 2, 0, 3, 4, 4, 5, 5, 3,
+            0, 3, 1, 4, 2, 5});
+    assertEquals(12, BoundedDegree.automorphismGroup(prism).size());
+    int[] colors = {-1, -1, -1, 7, 7, 7};
+    assertEquals(6, BoundedDegree.automorphismGroup(prism, colors).size());
+    int[] images = {4, 5, 3, 1, 2, 0};
+    IntGraph relabelled = prism.relabel(images);
+    int[] iso = BoundedDegree.isomorphism(prism, relabelled);
+    assertNotNull(iso);
+    for (int v = 0; v < 6; v++) {
+      for (int i = 0; i < prism.degree(v); i++) {
+        assertTrue(relabelled.containsEdge(iso[v], iso[prism.neighbor(v, i)]));
+      }
+    }
+    int[] relabelledColors = {7, 7, 7, -1, -1, -1};
+    iso = BoundedDegree.isomorphism(prism, colors, relabelled,
+        relabelledColors);
+    assertNotNull(iso);
+    for (int v = 0; v < 6; v++) {
+      assertEquals(colors[v], relabelledColors[iso[v]]);
+    }
+    assertNull(BoundedDegree.isomorphism(prism, colors, relabelled, new int[] {
+        -1, -1, 7, 7, 7, 7}));
+  }
+
+  public void testColoredIsomorphism() {
+    SimpleGraph<Integer, Object> g1 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    SimpleGraph<Integer, Object> g2 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    int n = 8;
+    for (int i = 0; i < n; i++) {
+      Graphs.addEdgeWithVertices(g1, i, (i + 1) % n);
+      Graphs.addEdgeWithVertices(g2, (3 * i) % n, (3 * i + 3) % n);
+    }
+    Function<Integer, Boolean> zero = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer v) {
+        return v == 0;
+      }
+    };
+    Function<Integer, Boolean> three = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer v) {
+        return v == 3;
+      }
+    };
+    Map<Integer, Integer> iso = BoundedDegree.isomorphism(g1, g2, zero, three);
+    assertEquals(3, (int) iso.get(0));
+    for (int i = 0; i < n; i++) {
+      assertTrue(g2.containsEdge(iso.get(i), iso.get((i + 1) % n)));
+    }
+    g2.removeEdge(0, 3);
+    Graphs.addEdgeWithVertices(g2, 0, 4);
+    assertNull(BoundedDegree.isomorphism(g1, g2, zero, three));
+  }
+
+  public void testAutOrbits() {
+    SimpleGraph<Integer, Object> path =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < 4; i++) {
+      Graphs.addEdgeWithVertices(path, i, i + 1);
+    }
+    assertEquals(ImmutableSet.of(ImmutableSet.of(0, 4), ImmutableSet.of(1, 3),
+        ImmutableSet.of(2)), ImmutableSet.copyOf(BoundedDegree.autOrbits(path,
+        Colorings.NON_COLORING)));
+    Equivalence<Integer> zero = Colorings.coloring(
+        new Function<Integer, Boolean>() {
+          @Override public Boolean apply(Integer v) {
+            return v == 0;
+          }
+        });
+    assertEquals(5, BoundedDegree.autOrbits(path, zero).size());
+  }
+
+  public void testColoredAutomorphisms() {
+    SimpleGraph<Integer, Object> complete =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < i; j++) {
+        Graphs.addEdgeWithVertices(complete, i, j);
+      }
+    }
+    Equivalence<Integer> small = Colorings.coloring(
+        new Function<Integer, Boolean>() {
+          @Override public Boolean apply(Integer v) {
+            return v < 3;
+          }
+        });
+    assertEquals(12, BoundedDegree.automorphismGroup(complete, small).size());
+  }
+
+  public void testDisconnected() {
+    // two triangles and a square
+    SimpleGraph<Integer, Object> g1 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    SimpleGraph<Integer, Object> g2 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    int[][] cycles = {{0, 1, 2}, {3, 4, 5, 6}, {7, 8, 9}};
+    for (int[] cycle : cycles) {
+      for (int i = 0; i < cycle.length; i++) {
+        int v = cycle[i];
+        int w = cycle[(i + 1) % cycle.length];
+        Graphs.addEdgeWithVertices(g1, v, w);
+        Graphs.addEdgeWithVertices(g2, 9 - v, 9 - w);
+      }
+    }
+    assertEquals(6 * 6 * 2 * 8, BoundedDegree.automorphismGroup(g1).size());
+    Map<Integer, Integer> iso = BoundedDegree.isomorphism(g1, g2);
+    for (int[] cycle : cycles) {
+      for (int i = 0; i < cycle.length; i++) {
+        assertTrue(g2.containsEdge(iso.get(cycle[i]),
+            iso.get(cycle[(i + 1) % cycle.length])));
+      }
+    }
+    Function<Object, Integer> blank = Functions.constant(0);
+    assertNotNull(BoundedDegree.isomorphism(g1, g2, blank, blank,
+        new ForkJoinPool(), SearchContext.unbounded()));
+    g2.removeEdge(0, 1);
+    g2.addEdge(0, 3);
+    assertNull(BoundedDegree.isomorphism(g1, g2));
+  }
+
+  public void testParallelCandidates() {
+    // prisms are vertex-transitive, so every edge of g2 is a candidate
+    SimpleGraph<Integer, Object> g1 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    SimpleGraph<Integer, Object> g2 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    int n = 8;
+    for (int i = 0; i < n; i++) {
+      Graphs.addEdgeWithVertices(g1, i, (i + 1) % n);
+      Graphs.addEdgeWithVertices(g1, n + i, n + (i + 1) % n);
+      g1.addEdge(i, n + i);
+      Graphs.addEdgeWithVertices(g2, 2 * n - 1 - (3 * i) % n,
+          2 * n - 1 - (3 * i + 3) % n);
+      Graphs.addEdgeWithVertices(g2, (3 * i) % n, (3 * i + 3) % n);
+      g2.addEdge(2 * n - 1 - (3 * i) % n, (3 * i) % n);
+    }
+    Function<Object, Integer> blank = Functions.constant(0);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Map<Integer, Integer> iso = BoundedDegree.isomorphism(g1, g2, blank,
+          blank, pool, SearchContext.unbounded());
+      for (Object e : g1.edgeSet()) {
+        assertTrue(g2.containsEdge(iso.get(g1.getEdgeSource(e)),
+            iso.get(g1.getEdgeTarget(e))));
+      }
+      // crossing two rungs gives a Moebius ladder, which is not bipartite
+      g2.removeEdge(2 * n - 1, 2 * n - 1 - 3 % n);
+      g2.removeEdge(0, 3);
+      g2.addEdge(2 * n - 1, 3);
+      g2.addEdge(0, 2 * n - 1 - 3 % n);
+      assertNull(BoundedDegree.isomorphism(g1, g2, blank, blank, pool,
+          SearchContext.unbounded()));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testDirected() {
+    DefaultDirectedGraph<Integer, Object> g1 =
+        new DefaultDirectedGraph<Integer, Object>(Object.class);
+    DefaultDirectedGraph<Integer, Object> g2 =
+        new DefaultDirectedGraph<Integer, Object>(Object.class);
+    int n = 10;
+    for (int i = 0; i < n; i++) {
+      Graphs.addEdgeWithVertices(g1, i, (i + 1) % n);
+      Graphs.addEdgeWithVertices(g2, (3 * i + 3) % n, (3 * i) % n);
+    }
+    Function<Object, Integer> blank = Functions.constant(0);
+    // only the rotations preserve the directions
+    assertEquals(n, BoundedDegree.automorphismGroup(g1,
+        Colorings.NON_COLORING, blank).size());
+    Map<Integer, Integer> iso =
+        BoundedDegree.isomorphism(g1, g2, blank, blank, blank, blank);
+    for (int i = 0; i < n; i++) {
+      assertTrue(g2.containsEdge(iso.get(i), iso.get((i + 1) % n)));
+    }
+    g2.removeEdge(0, 7);
+    g2.addEdge(7, 0);
+    assertNull(BoundedDegree.isomorphism(g1, g2, blank, blank, blank, blank));
+  }
+
+  public void testEdgeColors() {
+    final SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < 6; i++) {
+      Graphs.addEdgeWithVertices(g, i, (i + 1) % 6);
+    }
+    // edges alternate in color around the hexagon
+    Function<Object, Boolean> parity = new Function<Object, Boolean>() {
+      @Override public Boolean apply(Object e) {
+        return g.getEdgeSource(e) % 2 == 0;
+      }
+    };
+    assertEquals(6, BoundedDegree.automorphismGroup(g,
+        Colorings.NON_COLORING, parity).size());
+  }
+
+  public void testMultigraph() {
+    Pseudograph<Integer, Object> g1 =
+        new Pseudograph<Integer, Object>(Object.class);
+    Pseudograph<Integer, Object> g2 =
+        new Pseudograph<Integer, Object>(Object.class);
+    for (int i = 0; i < 3; i++) {
+      Graphs.addEdgeWithVertices(g1, i, (i + 1) % 3);
+      Graphs.addEdgeWithVertices(g2, i, (i + 1) % 3);
+    }
+    Function<Object, Integer> blank = Functions.constant(0);
+    g1.addEdge(0, 1);
+    // doubling an edge leaves only the swap of its ends
+    assertEquals(2, BoundedDegree.automorphismGroup(g1,
+        Colorings.NON_COLORING, blank).size());
+    assertNull(BoundedDegree.isomorphism(g1, g2, blank, blank, blank, blank));
+    g2.addEdge(2, 2);
+    assertNull(BoundedDegree.isomorphism(g1, g2, blank, blank, blank, blank));
+    g2.removeEdge(2, 2);
+    g2.addEdge(2, 0);
+    Map<Integer, Integer> iso =
+        BoundedDegree.isomorphism(g1, g2, blank, blank, blank, blank);
+    assertEquals(2, g2.getAllEdges(iso.get(0), iso.get(1)).size());
+  }
 }
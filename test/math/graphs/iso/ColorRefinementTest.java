@@ -0,0 +1,52 @@
+package math.graphs.iso;
+
+import junit.framework.TestCase;
+
+public class ColorRefinementTest extends TestCase {
+  private static IntGraph path(int n) {
+    int[] edges = new int[2 * (n - 1)];
+    for (int i = 0; i + 1 < n; i++) {
+      edges[2 * i] = i;
+      edges[2 * i + 1] = i + 1;
+    }
+    return IntGraph.fromEdges(n, edges);
+  }
+
+  public void testPath() {
+    int[] cells = ColorRefinement.refine(path(5), new int[5]);
+    assertEquals(cells[0], cells[4]);
+    assertEquals(cells[1], cells[3]);
+    assertFalse(cells[0] == cells[1]);
+    assertFalse(cells[0] == cells[2]);
+    assertFalse(cells[1] == cells[2]);
+  }
+
+  public void testRegular() {
+    IntGraph cycle =
+        IntGraph.fromEdges(6, new int[] {0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0});
+    int[] cells = ColorRefinement.refine(cycle, new int[6]);
+    for (int i = 1; i < 6; i++) {
+      assertEquals(cells[0], cells[i]);
+    }
+  }
+
+  public void testInitialColors() {
+    // coloring an end of the path apart breaks its symmetry
+    int[] cells = ColorRefinement.refine(path(5), new int[] {1, 0, 0, 0, 0});
+    for (int i = 0; i < 5; i++) {
+      for (int j = i + 1; j < 5; j++) {
+        assertFalse(cells[i] == cells[j]);
+      }
+    }
+  }
+
+  public void testUnion() {
+    IntGraph star = IntGraph.fromEdges(5, new int[] {0, 1, 0, 2, 0, 3, 0, 4});
+    assertNull(ColorRefinement.refine(path(5), new int[5], star, new int[5]));
+    int[][] cells =
+        ColorRefinement.refine(path(5), new int[5], path(5), new int[5]);
+    assertNotNull(cells);
+    assertEquals(cells[0][0], cells[1][4]);
+    assertEquals(cells[0][2], cells[1][2]);
+  }
+}
@@ -0,0 +1,98 @@
+package math.graphs.iso;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import math.algebra.permgroup.Groups;
+
+public class HypergraphsTest extends TestCase {
+  private static final Set<Integer> SEVEN =
+      ImmutableSet.of(0, 1, 2, 3, 4, 5, 6);
+
+  private static List<Set<Integer>> hyperedges(int[][] sets) {
+    List<Set<Integer>> hyperedges = Lists.newArrayList();
+    for (int[] set : sets) {
+      ImmutableSet.Builder<Integer> builder = ImmutableSet.builder();
+      for (int v : set) {
+        builder.add(v);
+      }
+      hyperedges.add(builder.build());
+    }
+    return hyperedges;
+  }
+
+  private static List<Set<Integer>> fano(int shift) {
+    // the lines {i, i + 1, i + 3} mod 7
+    int[][] lines = new int[7][];
+    for (int i = 0; i < 7; i++) {
+      lines[i] =
+          new int[] {(i + shift) % 7, (i + 1 + shift) % 7, (i + 3 + shift) % 7};
+    }
+    return hyperedges(lines);
+  }
+
+  public void testFanoPlane() {
+    assertEquals(168, Hypergraphs.automorphismGroup(SEVEN, fano(0)).size());
+  }
+
+  public void testRepeatedHyperedges() {
+    List<Set<Integer>> path = hyperedges(new int[][] { {0, 1}, {1, 2}});
+    Set<Integer> three = ImmutableSet.of(0, 1, 2);
+    assertEquals(2, Hypergraphs.automorphismGroup(three, path).size());
+    path.add(ImmutableSet.of(0, 1));
+    assertEquals(1, Hypergraphs.automorphismGroup(three, path).size());
+  }
+
+  public void testEmptyAndIsolated() {
+    // the empty hyperedge is fixed, and the isolated vertices 3 and 4 swap
+    List<Set<Integer>> hyperedges =
+        hyperedges(new int[][] { {}, {0, 1, 2}});
+    assertEquals(12, Hypergraphs.automorphismGroup(
+        ImmutableSet.of(0, 1, 2, 3, 4), hyperedges).size());
+  }
+
+  public void testIsomorphism() {
+    List<Set<Integer>> shifted = fano(3);
+    Map<Integer, Integer> iso =
+        Hypergraphs.isomorphism(SEVEN, fano(0), SEVEN, shifted);
+    assertNotNull(iso);
+    for (Set<Integer> line : fano(0)) {
+      ImmutableSet.Builder<Integer> image = ImmutableSet.builder();
+      for (int v : line) {
+        image.add(iso.get(v));
+      }
+      assertTrue(shifted.contains(image.build()));
+    }
+
+    // the lines {i, i + 1, i + 2} also cover each point three times
+    int[][] consecutive = new int[7][];
+    for (int i = 0; i < 7; i++) {
+      consecutive[i] = new int[] {i, (i + 1) % 7, (i + 2) % 7};
+    }
+    assertNull(Hypergraphs.isomorphism(SEVEN, fano(0), SEVEN,
+        hyperedges(consecutive)));
+  }
+
+  public void testPreservingSubgroup() {
+    List<Set<Integer>> matching = hyperedges(new int[][] { {0, 1}, {2, 3}});
+    assertEquals(8, Hypergraphs.preservingSubgroup(
+        Groups.symmetric(ImmutableSet.of(0, 1, 2, 3)), matching).size());
+    assertEquals(168, Hypergraphs.preservingSubgroup(Groups.symmetric(SEVEN),
+        fano(0)).size());
+  }
+
+  public void testUnknownVertex() {
+    try {
+      Hypergraphs.automorphismGroup(ImmutableSet.of(0, 1),
+          ImmutableList.of(ImmutableSet.of(0, 2)));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package math.graphs.iso;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+public class IntGraphTest extends TestCase {
+  public void testAdapter() {
+    SimpleGraph<String, Object> g =
+        new SimpleGraph<String, Object>(Object.class);
+    Graphs.addEdgeWithVertices(g, "a", "b");
+    Graphs.addEdgeWithVertices(g, "b", "c");
+    g.addVertex("d");
+    List<String> vertices = ImmutableList.of("c", "b", "a", "d");
+    IntGraph graph = IntGraph.of(g, vertices);
+    assertEquals(4, graph.vertexCount());
+    assertEquals(2, graph.edgeCount());
+    assertEquals(2, graph.degree(1));
+    assertEquals(0, graph.neighbor(1, 0));
+    assertEquals(2, graph.neighbor(1, 1));
+    assertEquals(0, graph.degree(3));
+    assertTrue(graph.containsEdge(2, 1));
+    assertFalse(graph.containsEdge(0, 2));
+    assertTrue(Arrays.equals(new int[] {0, 1, 1, 2}, graph.endpoints()));
+  }
+
+  public void testDisjointUnion() {
+    IntGraph path = IntGraph.fromEdges(3, new int[] {0, 1, 1, 2});
+    IntGraph union =
+        path.disjointUnion(IntGraph.fromEdges(2, new int[] {1, 0}));
+    assertEquals(5, union.vertexCount());
+    assertTrue(Arrays.equals(new int[] {0, 1, 1, 2, 3, 4}, union.endpoints()));
+  }
+
+  public void testRelabel() {
+    IntGraph path = IntGraph.fromEdges(3, new int[] {0, 1, 1, 2});
+    IntGraph relabelled = path.relabel(new int[] {1, 2, 0});
+    assertTrue(Arrays.equals(new int[] {0, 1, 1, 2},
+        relabelled.relabel(new int[] {2, 0, 1}).endpoints()));
+    assertTrue(Arrays.equals(new int[] {0, 2, 1, 2}, relabelled.endpoints()));
+    assertFalse(path.equals(relabelled));
+    assertEquals(path, IntGraph.fromEdges(3, new int[] {2, 1, 1, 0}));
+  }
+
+  public void testLabels() {
+    // a directed path 0 -> 1 -> 2, labelled 1 at the tail and 2 at the head
+    IntGraph path =
+        IntGraph.fromEdges(3, new int[] {1, 2, 0, 1}, new int[] {1, 2, 1, 2});
+    assertTrue(path.isLabelled());
+    assertEquals(1, path.labelTo(0, 1));
+    assertEquals(2, path.labelTo(1, 0));
+    assertEquals(-1, path.labelTo(0, 2));
+    assertTrue(Arrays.equals(new int[] {1, 2, 1, 2}, path.endpointLabels()));
+    IntGraph reversed = path.relabel(new int[] {2, 1, 0});
+    assertEquals(1, reversed.labelTo(2, 1));
+    assertEquals(2, reversed.labelTo(0, 1));
+    assertFalse(path.equals(reversed));
+    assertEquals(1, path.inducedSubgraph(new int[] {2, 1}).labelTo(1, 0));
+  }
+
+  public void testRepeatedEdge() {
+    try {
+      IntGraph.fromEdges(2, new int[] {0, 1, 1, 0});
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
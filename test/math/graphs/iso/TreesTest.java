@@ -0,0 +1,67 @@
+package math.graphs.iso;
+
+import com.google.common.base.Function;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+import math.structures.Colorings;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+public class TreesTest extends TestCase {
+  public void testIsForest() {
+    assertTrue(Trees.isForest(IntGraph.fromEdges(0, new int[0])));
+    assertTrue(Trees.isForest(IntGraph.fromEdges(5, new int[] {0, 1, 3, 4})));
+    assertFalse(Trees.isForest(IntGraph.fromEdges(4, new int[] {0, 1, 1, 2,
+        2, 0})));
+  }
+
+  public void testStar() {
+    SimpleGraph<Integer, Object> star =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 1; i <= 4; i++) {
+      Graphs.addEdgeWithVertices(star, 0, i);
+    }
+    assertEquals(24, BoundedDegree.automorphismGroup(star).size());
+  }
+
+  public void testForest() {
+    // two paths of length 3 and an edge, whose parts can all be swapped
+    SimpleGraph<Integer, Object> forest =
+        new SimpleGraph<Integer, Object>(Object.class);
+    int[] edges = {0, 1, 1, 2, 3, 4, 4, 5, 6, 7};
+    for (int i = 0; i < edges.length; i += 2) {
+      Graphs.addEdgeWithVertices(forest, edges[i], edges[i + 1]);
+    }
+    assertEquals(16, BoundedDegree.automorphismGroup(forest).size());
+    Function<Integer, Boolean> end = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer v) {
+        return v == 0;
+      }
+    };
+    assertEquals(4, BoundedDegree.automorphismGroup(forest,
+        Colorings.coloring(end)).size());
+  }
+
+  public void testIsomorphism() {
+    SimpleGraph<Integer, Object> g1 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    SimpleGraph<Integer, Object> g2 =
+        new SimpleGraph<Integer, Object>(Object.class);
+    // a spider with legs of length 1, 2 and 3, labelled two ways
+    int[] edges1 = {0, 1, 0, 2, 2, 3, 0, 4, 4, 5, 5, 6};
+    int[] edges2 = {6, 5, 6, 4, 4, 3, 6, 2, 2, 1, 1, 0};
+    for (int i = 0; i < edges1.length; i += 2) {
+      Graphs.addEdgeWithVertices(g1, edges1[i], edges1[i + 1]);
+      Graphs.addEdgeWithVertices(g2, edges2[i], edges2[i + 1]);
+    }
+    Map<Integer, Integer> iso = BoundedDegree.isomorphism(g1, g2);
+    assertEquals(6, (int) iso.get(0));
+    assertEquals(0, (int) iso.get(6));
+    g2.removeEdge(1, 0);
+    Graphs.addEdgeWithVertices(g2, 5, 0);
+    assertNull(BoundedDegree.isomorphism(g1, g2));
+  }
+}
@@ -0,0 +1,106 @@
+package math.graphs.iso;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import junit.framework.TestCase;
+import math.structures.Colorings;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+public class VertexInvariantsTest extends TestCase {
+  private static final List<VertexInvariant> BOTH = ImmutableList.of(
+      VertexInvariants.TRIANGLES, VertexInvariants.DISTANCES);
+
+  private static SimpleGraph<Integer, Object> graph(int[] edges) {
+    SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < edges.length; i += 2) {
+      Graphs.addEdgeWithVertices(g, edges[i], edges[i + 1]);
+    }
+    return g;
+  }
+
+  public void testTriangles() {
+    // a triangle with a pendant edge
+    IntGraph g = IntGraph.fromEdges(4, new int[] {0, 1, 1, 2, 2, 0, 2, 3});
+    assertEquals(1, VertexInvariants.TRIANGLES.invariant(g, 0));
+    assertEquals(1, VertexInvariants.TRIANGLES.invariant(g, 2));
+    assertEquals(0, VertexInvariants.TRIANGLES.invariant(g, 3));
+  }
+
+  public void testDistances() {
+    IntGraph path = IntGraph.fromEdges(4, new int[] {0, 1, 1, 2, 2, 3});
+    assertEquals(VertexInvariants.DISTANCES.invariant(path, 0),
+        VertexInvariants.DISTANCES.invariant(path, 3));
+    assertFalse(VertexInvariants.DISTANCES.invariant(path, 0)
+        == VertexInvariants.DISTANCES.invariant(path, 1));
+  }
+
+  public void testIsomorphism() {
+    // the triangular prism and K_{3,3} are both cubic on six vertices
+    SimpleGraph<Integer, Object> prism =
+        graph(new int[] {0, 1, 1, 2, 2, 0, 3, 4, 4, 5, 5, 3, 0, 3, 1, 4, 2, 5});
+    SimpleGraph<Integer, Object> k33 =
+        graph(new int[] {0, 3, 0, 4, 0, 5, 1, 3, 1, 4, 1, 5, 2, 3, 2, 4, 2, 5});
+    Function<Object, Object> blank = Functions.constant(null);
+    assertNull(BoundedDegree.isomorphism(prism, k33, blank, blank, BOTH));
+    SimpleGraph<Integer, Object> relabelled =
+        graph(new int[] {5, 4, 4, 3, 3, 5, 2, 1, 1, 0, 0, 2, 5, 2, 4, 1, 3, 0});
+    assertNotNull(BoundedDegree.isomorphism(prism, relabelled, blank, blank,
+        BOTH));
+  }
+
+  public void testAutomorphismGroup() {
+    // a triangle and a square joined by an edge, whose invariants differ
+    SimpleGraph<Integer, Object> g =
+        graph(new int[] {0, 1, 1, 2, 2, 0, 3, 4, 4, 5, 5, 6, 6, 3, 0, 3});
+    assertEquals(BoundedDegree.automorphismGroup(g).size(), BoundedDegree
+      .automorphismGroup(g, Colorings.NON_COLORING, BOTH).size());
+    assertEquals(ImmutableSet.copyOf(BoundedDegree.autOrbits(g,
+        Colorings.NON_COLORING)), ImmutableSet.copyOf(BoundedDegree.autOrbits(
+        g, Colorings.NON_COLORING, BOTH)));
+  }
+
+  public void testParallel() {
+    // a long ladder with some rungs removed, so the invariants vary
+    int n = 500;
+    int[] edges = new int[6 * n];
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      edges[m++] = i;
+      edges[m++] = (i + 1) % n;
+      edges[m++] = n + i;
+      edges[m++] = n + (i + 1) % n;
+      if (i % 7 != 0) {
+        edges[m++] = i;
+        edges[m++] = n + i;
+      }
+    }
+    final IntGraph g = IntGraph.fromEdges(2 * n, Arrays.copyOf(edges, m));
+    final int[] colors = new int[2 * n];
+    int[] sequential = VertexInvariants.refine(g, colors, BOTH,
+        Maps.<List<Long>, Integer> newHashMap());
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      int[] parallel = pool.invoke(new RecursiveTask<int[]>() {
+        @Override protected int[] compute() {
+          return VertexInvariants.refine(g, colors, BOTH,
+              Maps.<List<Long>, Integer> newHashMap());
+        }
+      });
+      assertTrue(Arrays.equals(sequential, parallel));
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package math.metrics;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import math.algebra.permgroup.ColorPreserving;
+import math.algebra.permgroup.Groups;
+import math.algebra.permgroup.PermGroup;
+import math.graphs.iso.BoundedDegree;
+import math.metrics.Metrics.Counter;
+import math.metrics.Metrics.Timer;
+import math.structures.Colorings;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+public class CountingMetricsTest extends TestCase {
+  private static final Set<Integer> SET = ImmutableSet.of(1, 2, 3, 4, 5, 6);
+  private static final Equivalence<Integer> PARITY = Colorings
+    .coloring(new Function<Integer, Integer>() {
+      @Override public Integer apply(Integer input) {
+        return input % 2;
+      }
+    });
+
+  public void testColorPreserving() {
+    CountingMetrics metrics = CountingMetrics.create();
+    Metrics previous = MetricsRegistry.install(metrics);
+    try {
+      PermGroup<Integer> g = Groups.symmetric(SET);
+      ColorPreserving.colorPreserving(g, SET, PARITY);
+    } finally {
+      MetricsRegistry.install(previous);
+    }
+    assertTrue(metrics.count(Counter.COMPOSITIONS) > 0);
+    assertTrue(metrics.count(Counter.SIFTS) > 0);
+    assertTrue(metrics.count(Counter.TABLES_CREATED) > 0);
+    assertTrue(metrics.count(Counter.COLOR_PRESERVING_CALLS) > 0);
+    assertTrue(metrics.count(Counter.COLOR_PRESERVING_BRANCHES) > 0);
+    assertTrue(metrics.count(Counter.BLOCK_REFINEMENTS) > 0);
+    assertTrue(metrics.maxDepth() > 0);
+    assertEquals(0, metrics.count(Timer.AUTOMORPHISM_LAYER));
+  }
+
+  public void testAutomorphismLayers() {
+    SimpleGraph<Integer, Object> g =
+        new SimpleGraph<Integer, Object>(Object.class);
+    for (int i = 0; i < 6; i++) {
+      Graphs.addEdgeWithVertices(g, i, (i + 1) % 6);
+    }
+    CountingMetrics metrics = CountingMetrics.create();
+    Metrics previous = MetricsRegistry.install(metrics);
+    try {
+      BoundedDegree.automorphismGroup(g);
+    } finally {
+      MetricsRegistry.install(previous);
+    }
+    assertTrue(metrics.count(Timer.AUTOMORPHISM_LAYER) > 0);
+    assertTrue(metrics.maxTime(Timer.AUTOMORPHISM_LAYER, TimeUnit.NANOSECONDS)
+        <= metrics.totalTime(Timer.AUTOMORPHISM_LAYER, TimeUnit.NANOSECONDS));
+  }
+}
@@ -0,0 +1,60 @@
+package math.structures;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class IntColoringTest extends TestCase {
+  private static final List<Integer> POINTS =
+      ImmutableList.of(0, 1, 2, 3, 4, 5, 6);
+
+  /**
+   * Colors by residue mod 3, with a hash that puts every class in the same
+   * bucket.
+   */
+  private static final Equivalence<Integer> MOD_3 = new Equivalence<Integer>() {
+    @Override public boolean equivalent(Integer a, Integer b) {
+      return a % 3 == b % 3;
+    }
+
+    @Override public int hash(Integer a) {
+      return 0;
+    }
+  };
+
+  public void testEquivalence() {
+    IntColoring<Integer> coloring = IntColoring.of(POINTS, MOD_3);
+    assertEquals(3, coloring.colorCount());
+    assertEquals(0, coloring.color(3));
+    assertEquals(1, coloring.color(4));
+    assertEquals(2, coloring.color(5));
+    assertEquals(-1, coloring.color(7));
+    assertEquals(ImmutableList.of(ImmutableSet.of(0, 3, 6), ImmutableSet.of(
+        1, 4), ImmutableSet.of(2, 5)), coloring.colors());
+  }
+
+  public void testSharedPalette() {
+    Function<Integer, Boolean> even = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer input) {
+        return input % 2 == 0;
+      }
+    };
+    Function<Integer, Boolean> odd = new Function<Integer, Boolean>() {
+      @Override public Boolean apply(Integer input) {
+        return input % 2 == 1;
+      }
+    };
+    Map<Object, Integer> palette = Maps.newHashMap();
+    IntColoring<Integer> evenColoring = IntColoring.of(POINTS, even, palette);
+    IntColoring<Integer> oddColoring = IntColoring.of(POINTS, odd, palette);
+    assertEquals(evenColoring.color(0), oddColoring.color(1));
+    assertEquals(evenColoring.color(1), oddColoring.color(2));
+  }
+}